@@ -0,0 +1,137 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.nio.file.Files.exists;
+import static name.remal.gradle_plugins.load_content.http.CacheDirResourceFactory.RESOURCES_DIR_NAME;
+
+import java.nio.file.Path;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
+import org.apache.hc.client5.http.cache.HttpCacheStorageEntry;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.impl.cache.HttpByteArrayCacheEntrySerializer;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.message.HeaderGroup;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Serializes {@link CacheDirResource} bodies as a reference to the resource file instead of inlining them.
+ *
+ * <p>The reference is stored in response headers, so the same headers sent by the server are always removed,
+ * and only files in the resources dir can be referenced.
+ */
+class CacheDirHttpCacheEntrySerializer implements HttpCacheEntrySerializer<byte[]> {
+
+    static final String RESOURCE_PATH_HEADER = "X-Load-Content-Resource-Path";
+    static final String RESOURCE_LENGTH_HEADER = "X-Load-Content-Resource-Length";
+
+    private final Path rootDir;
+
+    private final Path resourcesDir;
+
+    CacheDirHttpCacheEntrySerializer(Path rootDir) {
+        this.rootDir = rootDir;
+        this.resourcesDir = rootDir.resolve(RESOURCES_DIR_NAME).normalize();
+    }
+
+    @Override
+    public byte[] serialize(HttpCacheStorageEntry storageEntry) throws ResourceIOException {
+        var entry = storageEntry.getContent();
+        if (entry.getResource() instanceof CacheDirResource resource) {
+            var responseHeaders = copyResponseHeaders(entry);
+            var relativePath = rootDir.relativize(resource.getFile().toPath().toAbsolutePath().normalize());
+            responseHeaders.addHeader(new BasicHeader(RESOURCE_PATH_HEADER, relativePath.toString()));
+            responseHeaders.addHeader(new BasicHeader(RESOURCE_LENGTH_HEADER, resource.length()));
+            entry = withResource(entry, responseHeaders, null);
+            storageEntry = new HttpCacheStorageEntry(storageEntry.getKey(), entry);
+
+        } else if (entry.containsHeader(RESOURCE_PATH_HEADER) || entry.containsHeader(RESOURCE_LENGTH_HEADER)) {
+            entry = withResource(entry, copyResponseHeaders(entry), entry.getResource());
+            storageEntry = new HttpCacheStorageEntry(storageEntry.getKey(), entry);
+        }
+
+        return HttpByteArrayCacheEntrySerializer.INSTANCE.serialize(storageEntry);
+    }
+
+    @Override
+    public HttpCacheStorageEntry deserialize(byte[] serializedObject) throws ResourceIOException {
+        var storageEntry = HttpByteArrayCacheEntrySerializer.INSTANCE.deserialize(serializedObject);
+        var entry = storageEntry.getContent();
+        var pathHeader = entry.getFirstHeader(RESOURCE_PATH_HEADER);
+        var lengthHeader = entry.getFirstHeader(RESOURCE_LENGTH_HEADER);
+        if (pathHeader == null || lengthHeader == null) {
+            return storageEntry;
+        }
+
+        var file = resolveResourceFile(pathHeader.getValue());
+        if (!exists(file)) {
+            throw new ResourceIOException("Resource file doesn't exist: " + file);
+        }
+
+        final long length;
+        try {
+            length = Long.parseLong(lengthHeader.getValue());
+        } catch (NumberFormatException e) {
+            throw new ResourceIOException("Invalid resource length: " + lengthHeader.getValue(), e);
+        }
+
+        var responseHeaders = copyResponseHeaders(entry);
+        entry = withResource(entry, responseHeaders, new CacheDirResource(file.toFile(), length));
+        return new HttpCacheStorageEntry(storageEntry.getKey(), entry);
+    }
+
+    /**
+     * Returns the resource file referenced by the serialized entry, without checking that it exists.
+     */
+    @Nullable
+    public Path getResourceFile(byte[] serializedObject) throws ResourceIOException {
+        var storageEntry = HttpByteArrayCacheEntrySerializer.INSTANCE.deserialize(serializedObject);
+        var pathHeader = storageEntry.getContent().getFirstHeader(RESOURCE_PATH_HEADER);
+        if (pathHeader == null) {
+            return null;
+        }
+
+        return resolveResourceFile(pathHeader.getValue());
+    }
+
+    private Path resolveResourceFile(String relativePath) throws ResourceIOException {
+        var file = rootDir.resolve(relativePath).normalize();
+        if (!file.startsWith(resourcesDir) || file.equals(resourcesDir)) {
+            throw new ResourceIOException("Resource file is outside of the resources dir: " + file);
+        }
+        return file;
+    }
+
+    /**
+     * Returns response headers without the resource reference.
+     */
+    private static HeaderGroup copyResponseHeaders(HttpCacheEntry entry) {
+        var responseHeaders = new HeaderGroup();
+        entry.responseHeaders().headerIterator().forEachRemaining(responseHeaders::addHeader);
+        responseHeaders.removeHeaders(RESOURCE_PATH_HEADER);
+        responseHeaders.removeHeaders(RESOURCE_LENGTH_HEADER);
+        return responseHeaders;
+    }
+
+    private static HttpCacheEntry withResource(
+        HttpCacheEntry entry,
+        HeaderGroup responseHeaders,
+        @Nullable Resource resource
+    ) {
+        var requestHeaders = new HeaderGroup();
+        entry.requestHeaders().headerIterator().forEachRemaining(requestHeaders::addHeader);
+
+        return new HttpCacheEntry(
+            entry.getRequestInstant(),
+            entry.getResponseInstant(),
+            entry.getRequestMethod(),
+            entry.getRequestURI(),
+            requestHeaders,
+            entry.getStatus(),
+            responseHeaders,
+            resource,
+            entry.getVariants()
+        );
+    }
+
+}
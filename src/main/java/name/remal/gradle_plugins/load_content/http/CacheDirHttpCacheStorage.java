@@ -4,36 +4,142 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.Files.createDirectories;
 import static java.nio.file.Files.deleteIfExists;
 import static java.nio.file.Files.exists;
+import static java.nio.file.Files.getLastModifiedTime;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.newDirectoryStream;
 import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.setLastModifiedTime;
+import static java.nio.file.Files.size;
+import static java.util.Comparator.comparing;
 import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toSet;
+import static name.remal.gradle_plugins.load_content.http.CacheDirResourceFactory.RESOURCES_DIR_NAME;
 import static name.remal.gradle_plugins.load_content.internal.Constants.HTTP_CLIENT_CACHE_VERSION;
 import static name.remal.gradle_plugins.toolkit.PathUtils.normalizePath;
 import static name.remal.gradle_plugins.toolkit.PathUtils.withShortExclusiveLock;
 import static name.remal.gradle_plugins.toolkit.PathUtils.writeAtomically;
 import static org.apache.hc.client5.http.utils.Hex.encodeHexString;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
 import lombok.Builder;
+import lombok.CustomLog;
 import lombok.SneakyThrows;
 import lombok.Value;
+import org.apache.hc.client5.http.cache.HttpCacheStorageEntry;
+import org.apache.hc.client5.http.cache.ResourceFactory;
+import org.apache.hc.client5.http.cache.ResourceIOException;
 import org.apache.hc.client5.http.impl.cache.AbstractBinaryCacheStorage;
-import org.apache.hc.client5.http.impl.cache.HttpByteArrayCacheEntrySerializer;
 import org.jspecify.annotations.Nullable;
 
+@CustomLog
 public class CacheDirHttpCacheStorage
-    extends AbstractBinaryCacheStorage<CacheDirHttpCacheStorage.CasValue> {
+    extends AbstractBinaryCacheStorage<CacheDirHttpCacheStorage.CasValue>
+    implements CleanableHttpCacheStorage {
+
+    static final long DEFAULT_SPOOL_THRESHOLD_BYTES = 256 * 1024;
+
+    private static final String BIN_FILE_SUFFIX = ".bin";
+
+    private static final int MAX_OPTIMISTIC_READ_ATTEMPTS = 8;
+
+    /**
+     * Touching the access time is a metadata write, so it's done at most once per this interval for every entry.
+     * The cleanup runs once per day, so this resolution is enough for it.
+     */
+    static final Duration ACCESS_TIME_RESOLUTION = Duration.ofHours(1);
+
+    /**
+     * {@code .version} and {@code .lock} files of deleted entries are kept for this time,
+     * much longer than an optimistic read or a CAS update can take, and then deleted by the cleanup.
+     */
+    static final Duration TOMBSTONE_RETENTION = Duration.ofHours(1);
+
+    private static final String VERSION_FILE_SUFFIX = ".version";
+
+    private static final String LOCK_FILE_SUFFIX = ".lock";
+
+    private static final Pattern KEY_PREFIX_DIR_NAME = Pattern.compile("[0-9a-f]{2}");
+
 
     private final Path rootDir;
 
-    @SneakyThrows
+    private final CacheDirResourceFactory resourceFactory;
+
+    @Nullable
+    private final WTinyLfuCache<String, HttpCacheStorageEntry> memoryCache;
+
     public CacheDirHttpCacheStorage(Path cacheRootDir, int maxUpdateRetries) {
-        super(maxUpdateRetries, HttpByteArrayCacheEntrySerializer.INSTANCE);
-        this.rootDir = normalizePath(cacheRootDir.resolve(HTTP_CLIENT_CACHE_VERSION));
+        this(cacheRootDir, maxUpdateRetries, DEFAULT_SPOOL_THRESHOLD_BYTES);
+    }
+
+    /**
+     * @param spoolThresholdBytes bodies of this size or larger are stored as separate files
+     *     and are not inlined into cache entries
+     */
+    public CacheDirHttpCacheStorage(Path cacheRootDir, int maxUpdateRetries, long spoolThresholdBytes) {
+        this(cacheRootDir, maxUpdateRetries, spoolThresholdBytes, 0);
+    }
+
+    /**
+     * @param memoryCacheMaxBytes the max estimated size of deserialized entries kept in memory,
+     *     zero or a negative value disables the in-memory tier
+     * @see MemoryCachedHttpCacheStorage
+     */
+    public CacheDirHttpCacheStorage(
+        Path cacheRootDir,
+        int maxUpdateRetries,
+        long spoolThresholdBytes,
+        long memoryCacheMaxBytes
+    ) {
+        super(maxUpdateRetries, new CacheDirHttpCacheEntrySerializer(getRootDir(cacheRootDir)));
+        this.rootDir = getRootDir(cacheRootDir);
+        this.resourceFactory = new CacheDirResourceFactory(rootDir.resolve(RESOURCES_DIR_NAME), spoolThresholdBytes);
+        this.memoryCache = memoryCacheMaxBytes > 0 ? new WTinyLfuCache<>(memoryCacheMaxBytes) : null;
+    }
+
+    static Path getRootDir(Path cacheRootDir) {
+        return normalizePath(cacheRootDir.resolve(HTTP_CLIENT_CACHE_VERSION));
+    }
+
+    /**
+     * The resource factory that should be used by HTTP clients storing entries in this storage.
+     */
+    public ResourceFactory getResourceFactory() {
+        return resourceFactory;
+    }
+
+    /**
+     * The in-memory tier, keyed by storage keys. It's invalidated by every write to this storage.
+     */
+    @Nullable
+    WTinyLfuCache<String, HttpCacheStorageEntry> getMemoryCache() {
+        return memoryCache;
+    }
+
+    /**
+     * Returns {@code null} if the in-memory tier is disabled.
+     */
+    @Nullable
+    public MemoryCacheStatistics getMemoryCacheStatistics() {
+        return memoryCache != null ? memoryCache.getStatistics() : null;
     }
 
     @Override
@@ -48,41 +154,73 @@ public class CacheDirHttpCacheStorage
     @SneakyThrows
     protected void store(String storageKey, byte[] storageObject) {
         var paths = pathsFor(storageKey);
-        withShortExclusiveLock(paths.getLockPath(), () -> {
+        withEntryLock(paths, () -> {
             createDirectories(paths.getDir());
 
-            var newVersion = 1L;
+            // the version is never reset, so optimistic readers can't confuse the new entry with a previous one:
+            var newVersion = exists(paths.getVersionPath())
+                ? decodeVersion(readAllBytes(paths.getVersionPath())) + 1
+                : 1L;
             writeAtomically(paths.getBinPath(), storageObject);
             writeAtomically(paths.getVersionPath(), encodeVersion(newVersion));
+            invalidateMemoryCache(storageKey);
+            markAccessed(paths);
 
             return null;
         });
     }
 
     @Override
-    @SneakyThrows
     protected byte @Nullable [] restore(String storageKey) {
-        var paths = pathsFor(storageKey);
-        return withShortExclusiveLock(paths.getLockPath(), () -> {
-            if (!exists(paths.getBinPath()) || !exists(paths.getVersionPath())) {
-                return null;
-            }
-
-            return readAllBytes(paths.getBinPath());
-        });
+        var cas = read(pathsFor(storageKey));
+        return cas != null ? cas.getBytes() : null;
     }
 
     @Override
-    @SneakyThrows
     protected @Nullable CasValue getForUpdateCAS(String storageKey) {
-        var paths = pathsFor(storageKey);
-        return withShortExclusiveLock(paths.getLockPath(), () -> {
+        return read(pathsFor(storageKey));
+    }
+
+    /**
+     * Reads the entry without taking the lock.
+     *
+     * <p>Writers hold the lock, replace files atomically, and write {@code .version} after {@code .bin}.
+     * So if {@code .version} is the same before and after reading {@code .bin}, the read {@code .bin}
+     * is at least as new as the version, and a CAS update with this version fails if it's newer.
+     *
+     * <p>If the version keeps changing, the entry is read under the lock.
+     */
+    @Nullable
+    @SneakyThrows
+    private CasValue read(PathsForKey paths) {
+        for (var attempt = 1; attempt <= MAX_OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+            try {
+                var versionBefore = readAllBytes(paths.getVersionPath());
+                var bytes = readAllBytes(paths.getBinPath());
+                var versionAfter = readAllBytes(paths.getVersionPath());
+                if (Arrays.equals(versionBefore, versionAfter)) {
+                    markAccessed(paths);
+                    return CasValue.builder()
+                        .version(decodeVersion(versionAfter))
+                        .bytes(bytes)
+                        .build();
+                }
+
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+
+            Thread.onSpinWait();
+        }
+
+        return withEntryLock(paths, () -> {
             if (!exists(paths.getBinPath()) || !exists(paths.getVersionPath())) {
                 return null;
             }
 
             var version = decodeVersion(readAllBytes(paths.getVersionPath()));
             var bytes = readAllBytes(paths.getBinPath());
+            markAccessed(paths);
             return CasValue.builder()
                 .version(version)
                 .bytes(bytes)
@@ -99,7 +237,7 @@ public class CacheDirHttpCacheStorage
     @SneakyThrows
     protected boolean updateCAS(String storageKey, @Nullable CasValue cas, byte[] storageObject) {
         var paths = pathsFor(storageKey);
-        return requireNonNull(withShortExclusiveLock(paths.getLockPath(), () -> {
+        return requireNonNull(withEntryLock(paths, () -> {
             if (!exists(paths.getBinPath()) || !exists(paths.getVersionPath())) {
                 return false;
             }
@@ -112,6 +250,8 @@ public class CacheDirHttpCacheStorage
             var newVersion = currentVersion + 1;
             writeAtomically(paths.getBinPath(), storageObject);
             writeAtomically(paths.getVersionPath(), encodeVersion(newVersion));
+            invalidateMemoryCache(storageKey);
+            markAccessed(paths);
             return true;
         }));
     }
@@ -120,9 +260,10 @@ public class CacheDirHttpCacheStorage
     @SneakyThrows
     protected void delete(String storageKey) {
         var paths = pathsFor(storageKey);
-        withShortExclusiveLock(paths.getLockPath(), () -> {
+        withEntryLock(paths, () -> {
+            // the version is kept, so optimistic readers can't confuse an entry stored later with the deleted one:
             deleteIfExists(paths.getBinPath());
-            deleteIfExists(paths.getVersionPath());
+            invalidateMemoryCache(storageKey);
             return null;
         });
     }
@@ -140,6 +281,246 @@ public class CacheDirHttpCacheStorage
         return result;
     }
 
+    /**
+     * Deletes the least recently accessed entries until the total size of entries and their resource files
+     * fits {@code maxSizeBytes}, then deletes resource files that are not referenced by any entry.
+     *
+     * <p>Entries are deleted under their lock files, and only if their access time didn't change since the scan.
+     * Unreferenced resource files are deleted only if they are older than {@code minResourceAge},
+     * as they can be referenced by entries that are being stored.
+     *
+     * <p>Then {@code .version} and {@code .lock} files of entries deleted more than {@link #TOMBSTONE_RETENTION} ago
+     * are deleted.
+     *
+     * @param maxSizeBytes zero or a negative value means unlimited
+     */
+    @Override
+    @SneakyThrows
+    public void cleanup(long maxSizeBytes, Duration minResourceAge) {
+        var serializer = new CacheDirHttpCacheEntrySerializer(rootDir);
+        var entries = new ArrayList<CleanupEntry>();
+        var resourceReferences = new HashMap<Path, Integer>();
+        var resourceSizes = new HashMap<Path, Long>();
+        for (var binPath : listBinFiles()) {
+            var fileName = binPath.getFileName().toString();
+            var storageKey = fileName.substring(0, fileName.length() - BIN_FILE_SUFFIX.length());
+            var paths = pathsFor(storageKey);
+            try {
+                var accessTime = getAccessTime(paths);
+                var bytes = readAllBytes(binPath);
+                @Nullable Path resourceFile = null;
+                try {
+                    resourceFile = serializer.getResourceFile(bytes);
+                } catch (ResourceIOException e) {
+                    logger.debug("Can't read HTTP cache entry: {}", binPath, e);
+                }
+                if (resourceFile != null) {
+                    resourceReferences.merge(resourceFile, 1, Integer::sum);
+                    if (!resourceSizes.containsKey(resourceFile)) {
+                        resourceSizes.put(resourceFile, exists(resourceFile) ? size(resourceFile) : 0);
+                    }
+                }
+
+                entries.add(new CleanupEntry(storageKey, accessTime, bytes.length, resourceFile));
+
+            } catch (NoSuchFileException e) {
+                // deleted concurrently
+            }
+        }
+
+        if (maxSizeBytes > 0) {
+            entries.sort(comparing(CleanupEntry::getAccessTime));
+            // a resource file shared by several entries is counted once, and freed with the last of them:
+            var totalSize = entries.stream().mapToLong(CleanupEntry::getSize).sum()
+                + resourceSizes.values().stream().mapToLong(Long::longValue).sum();
+            for (var entry : entries) {
+                if (totalSize <= maxSizeBytes) {
+                    break;
+                }
+
+                if (deleteIfNotAccessedSince(entry.getStorageKey(), entry.getAccessTime())) {
+                    totalSize -= entry.getSize();
+                    var resourceFile = entry.getResourceFile();
+                    if (resourceFile != null && resourceReferences.merge(resourceFile, -1, Integer::sum) <= 0) {
+                        totalSize -= resourceSizes.getOrDefault(resourceFile, 0L);
+                    }
+                }
+            }
+        }
+
+        var referencedResourceFiles = resourceReferences.entrySet().stream()
+            .filter(reference -> reference.getValue() > 0)
+            .map(Map.Entry::getKey)
+            .collect(toSet());
+        resourceFactory.deleteUnreferencedFiles(referencedResourceFiles, minResourceAge);
+
+        deleteTombstones();
+    }
+
+    @SneakyThrows
+    private void deleteTombstones() {
+        var maxLastModified = Instant.now().minus(TOMBSTONE_RETENTION);
+        for (var dir : listKeyDirs()) {
+            var storageKeys = new LinkedHashSet<String>();
+            try (var paths = newDirectoryStream(dir, "*{" + VERSION_FILE_SUFFIX + "," + LOCK_FILE_SUFFIX + "}")) {
+                for (var path : paths) {
+                    var fileName = path.getFileName().toString();
+                    storageKeys.add(fileName.substring(0, fileName.lastIndexOf('.')));
+                }
+            }
+
+            for (var storageKey : storageKeys) {
+                deleteTombstoneIfNotModifiedSince(pathsFor(storageKey), maxLastModified);
+            }
+        }
+    }
+
+    @SneakyThrows
+    private static void deleteTombstoneIfNotModifiedSince(PathsForKey paths, Instant maxLastModified) {
+        if (!isTombstoneNotModifiedSince(paths, maxLastModified)) {
+            return;
+        }
+
+        withShortExclusiveLock(paths.getLockPath(), () -> {
+            if (!isTombstoneNotModifiedSince(paths, maxLastModified)) {
+                return null;
+            }
+
+            deleteIfExists(paths.getVersionPath());
+            try {
+                // writers that were waiting for this lock file check that it still exists, see withEntryLock():
+                deleteIfExists(paths.getLockPath());
+            } catch (IOException e) {
+                // a locked file can't be deleted on some platforms, it will be deleted by the next cleanup
+                logger.debug("Can't delete lock file: {}", paths.getLockPath(), e);
+            }
+            return null;
+        });
+    }
+
+    private static boolean isTombstoneNotModifiedSince(PathsForKey paths, Instant maxLastModified) throws IOException {
+        return !exists(paths.getBinPath())
+            && !isModifiedAfter(paths.getVersionPath(), maxLastModified)
+            && !isModifiedAfter(paths.getLockPath(), maxLastModified);
+    }
+
+    private static boolean isModifiedAfter(Path path, Instant instant) throws IOException {
+        try {
+            return getLastModifiedTime(path).toInstant().isAfter(instant);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs the action under the entry's lock file.
+     *
+     * <p>The cleanup deletes lock files of deleted entries, so if the lock file was deleted
+     * while this thread was waiting for it, the lock is taken again on a new lock file.
+     */
+    private static <T> @Nullable T withEntryLock(PathsForKey paths, Callable<T> action) throws Exception {
+        while (true) {
+            var isLocked = new AtomicBoolean();
+            var result = withShortExclusiveLock(paths.getLockPath(), () -> {
+                if (!exists(paths.getLockPath())) {
+                    return null;
+                }
+
+                isLocked.set(true);
+                return action.call();
+            });
+            if (isLocked.get()) {
+                return result;
+            }
+        }
+    }
+
+    @SneakyThrows
+    private boolean deleteIfNotAccessedSince(String storageKey, FileTime accessTime) {
+        var paths = pathsFor(storageKey);
+        return requireNonNull(withEntryLock(paths, () -> {
+            try {
+                if (!getAccessTime(paths).equals(accessTime)) {
+                    return false;
+                }
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+
+            // the version is kept, so optimistic readers can't confuse an entry stored later with the deleted one:
+            deleteIfExists(paths.getBinPath());
+            invalidateMemoryCache(storageKey);
+            return true;
+        }));
+    }
+
+    @SneakyThrows
+    private List<Path> listBinFiles() {
+        var result = new ArrayList<Path>();
+        for (var dir : listKeyDirs()) {
+            try (var binPaths = newDirectoryStream(dir, "*" + BIN_FILE_SUFFIX)) {
+                binPaths.forEach(result::add);
+            }
+        }
+        return result;
+    }
+
+    @SneakyThrows
+    private List<Path> listKeyDirs() {
+        var result = new ArrayList<Path>();
+        if (!exists(rootDir)) {
+            return result;
+        }
+
+        try (var dirs1 = newDirectoryStream(rootDir, CacheDirHttpCacheStorage::isKeyPrefixDir)) {
+            for (var dir1 : dirs1) {
+                try (var dirs2 = newDirectoryStream(dir1, CacheDirHttpCacheStorage::isKeyPrefixDir)) {
+                    dirs2.forEach(result::add);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isKeyPrefixDir(Path path) {
+        return KEY_PREFIX_DIR_NAME.matcher(path.getFileName().toString()).matches() && isDirectory(path);
+    }
+
+    /**
+     * The lock file is touched on reads and writes, so its modification time is the entry's access time,
+     * with {@link #ACCESS_TIME_RESOLUTION} resolution.
+     */
+    private static FileTime getAccessTime(PathsForKey paths) throws IOException {
+        try {
+            return getLastModifiedTime(paths.getLockPath());
+        } catch (NoSuchFileException e) {
+            return getLastModifiedTime(paths.getBinPath());
+        }
+    }
+
+    private static void markAccessed(PathsForKey paths) throws IOException {
+        var now = Instant.now();
+        try {
+            var accessTime = getLastModifiedTime(paths.getLockPath()).toInstant();
+            if (accessTime.isAfter(now.minus(ACCESS_TIME_RESOLUTION))) {
+                return;
+            }
+
+            setLastModifiedTime(paths.getLockPath(), FileTime.from(now));
+        } catch (NoSuchFileException e) {
+            // the access time falls back to the entry's modification time
+        }
+    }
+
+    /**
+     * Must be called after the entry is written, so a concurrent reader can't cache the previous entry.
+     */
+    private void invalidateMemoryCache(String storageKey) {
+        if (memoryCache != null) {
+            memoryCache.invalidate(storageKey);
+        }
+    }
+
     private static byte[] encodeVersion(long v) {
         return ByteBuffer.allocate(Long.BYTES).putLong(v).array();
     }
@@ -158,9 +539,9 @@ public class CacheDirHttpCacheStorage
         var dir = rootDir.resolve(p1).resolve(p2);
         return PathsForKey.builder()
             .dir(dir)
-            .binPath(dir.resolve(storageKey + ".bin"))
-            .versionPath(dir.resolve(storageKey + ".version"))
-            .lockPath(dir.resolve(storageKey + ".lock"))
+            .binPath(dir.resolve(storageKey + BIN_FILE_SUFFIX))
+            .versionPath(dir.resolve(storageKey + VERSION_FILE_SUFFIX))
+            .lockPath(dir.resolve(storageKey + LOCK_FILE_SUFFIX))
             .build();
     }
 
@@ -172,6 +553,14 @@ public class CacheDirHttpCacheStorage
         byte @Nullable [] bytes;
     }
 
+    @Value
+    private static class CleanupEntry {
+        String storageKey;
+        FileTime accessTime;
+        long size;
+        @Nullable Path resourceFile;
+    }
+
     @Value
     @Builder
     private static class PathsForKey {
@@ -0,0 +1,79 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.readAllBytes;
+
+import com.google.errorprone.annotations.MustBeClosed;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serial;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+
+/**
+ * A {@link Resource} stored as a file in the {@link CacheDirHttpCacheStorage} directory.
+ *
+ * <p>The file is owned by the cache storage, so {@link #dispose()} doesn't delete it.
+ */
+class CacheDirResource extends Resource {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+
+    private final File file;
+
+    private final long length;
+
+    private volatile boolean disposed;
+
+    public CacheDirResource(File file, long length) {
+        super();
+        this.file = file;
+        this.length = length;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+
+    @Override
+    @MustBeClosed
+    public InputStream getInputStream() throws ResourceIOException {
+        if (disposed) {
+            throw new ResourceIOException("Resource already disposed");
+        }
+
+        try {
+            return newInputStream(file.toPath());
+        } catch (IOException e) {
+            throw new ResourceIOException("Resource file can't be read: " + file, e);
+        }
+    }
+
+    @Override
+    public byte[] get() throws ResourceIOException {
+        if (disposed) {
+            throw new ResourceIOException("Resource already disposed");
+        }
+
+        try {
+            return readAllBytes(file.toPath());
+        } catch (IOException e) {
+            throw new ResourceIOException("Resource file can't be read: " + file, e);
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+    }
+
+}
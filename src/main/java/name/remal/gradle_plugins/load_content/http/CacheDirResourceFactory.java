@@ -0,0 +1,197 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.getLastModifiedTime;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.Files.setLastModifiedTime;
+import static java.nio.file.Files.walk;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.UUID.randomUUID;
+import static org.apache.hc.client5.http.utils.Hex.encodeHexString;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceFactory;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.impl.cache.HeapResource;
+
+/**
+ * Creates {@link CacheDirResource} for bodies larger than {@link #spoolThresholdBytes},
+ * and {@link HeapResource} for smaller ones.
+ *
+ * <p>Resource files are named by the SHA-256 digest of their content, so identical bodies of different entries
+ * are stored once. Unreferenced files are deleted by {@link #deleteUnreferencedFiles(Set, Duration)}.
+ */
+@RequiredArgsConstructor
+class CacheDirResourceFactory implements ResourceFactory {
+
+    static final String RESOURCES_DIR_NAME = "resources";
+
+    static final String RESOURCE_FILE_SUFFIX = ".body";
+
+    static final String TEMP_FILE_SUFFIX = ".temp";
+
+    static final String DELETED_FILE_SUFFIX = ".deleted";
+
+
+    private final Path resourcesDir;
+
+    private final long spoolThresholdBytes;
+
+    @Override
+    public Resource generate(String requestId, byte[] content) throws ResourceIOException {
+        return generate(requestId, content, 0, content.length);
+    }
+
+    @Override
+    public Resource generate(String requestId, byte[] content, int off, int len) throws ResourceIOException {
+        if (len < spoolThresholdBytes) {
+            return new HeapResource(Arrays.copyOfRange(content, off, off + len));
+        }
+
+        var digest = digest(content, off, len);
+        var filePath = resourcesDir.resolve(digest.substring(0, 2)).resolve(digest + RESOURCE_FILE_SUFFIX);
+        try {
+            if (!touch(filePath)) {
+                var tempFilePath = filePath.resolveSibling(digest + '.' + randomUUID() + TEMP_FILE_SUFFIX);
+                createDirectories(filePath.getParent());
+                try (var out = newOutputStream(tempFilePath)) {
+                    out.write(content, off, len);
+                }
+                move(tempFilePath, filePath, ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            throw new ResourceIOException("Resource file can't be written: " + filePath, e);
+        }
+
+        return new CacheDirResource(filePath.toFile(), len);
+    }
+
+    /**
+     * Touches an existing resource file, so the cleanup doesn't consider it unreferenced.
+     *
+     * @return {@code false} if the file doesn't exist
+     */
+    private static boolean touch(Path filePath) throws IOException {
+        try {
+            setLastModifiedTime(filePath, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Deletes resource files that are not referenced by any entry and are older than {@code minAge},
+     * as they can be referenced by entries that are being stored.
+     *
+     * <p>Temp files of crashed writes and moved away files of interrupted cleanups are deleted too,
+     * unless a moved away file is referenced by an entry. Such a file is moved back.
+     */
+    @SneakyThrows
+    void deleteUnreferencedFiles(Set<Path> referencedFiles, Duration minAge) {
+        if (!exists(resourcesDir)) {
+            return;
+        }
+
+        List<Path> files;
+        try (var paths = walk(resourcesDir)) {
+            files = paths.filter(path -> isRegularFile(path)).toList();
+        }
+
+        var maxLastModified = Instant.now().minus(minAge);
+        for (var file : files) {
+            if (referencedFiles.contains(file)) {
+                continue;
+            }
+
+            try {
+                var fileName = file.getFileName().toString();
+                if (fileName.endsWith(DELETED_FILE_SUFFIX)) {
+                    var originalFile = file.resolveSibling(
+                        fileName.substring(0, fileName.length() - DELETED_FILE_SUFFIX.length())
+                    );
+                    if (referencedFiles.contains(originalFile)) {
+                        restoreDeletedFile(file, originalFile);
+                        continue;
+                    }
+                }
+
+                if (getLastModifiedTime(file).toInstant().isBefore(maxLastModified)) {
+                    deleteFileIfNotTouched(file, maxLastModified);
+                }
+            } catch (NoSuchFileException e) {
+                // deleted concurrently
+            }
+        }
+    }
+
+    /**
+     * Resource files are content-addressed, so a new entry can reuse an unreferenced file at any moment.
+     * Reusing touches the file, so the file is moved away first, and deleted only if it wasn't touched before that.
+     */
+    private static void deleteFileIfNotTouched(Path file, Instant maxLastModified) throws IOException {
+        var fileName = file.getFileName().toString();
+        if (fileName.endsWith(TEMP_FILE_SUFFIX) || fileName.endsWith(DELETED_FILE_SUFFIX)) {
+            // left by a crashed write or by an interrupted cleanup
+            deleteIfExists(file);
+            return;
+        }
+
+        if (!fileName.endsWith(RESOURCE_FILE_SUFFIX)) {
+            return;
+        }
+
+        var movedFile = file.resolveSibling(fileName + DELETED_FILE_SUFFIX);
+        move(file, movedFile, ATOMIC_MOVE);
+        if (getLastModifiedTime(movedFile).toInstant().isBefore(maxLastModified)) {
+            deleteIfExists(movedFile);
+            return;
+        }
+
+        try {
+            // the file could have been written again in the meantime, with the same content:
+            move(movedFile, file, ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            deleteIfExists(movedFile);
+        }
+    }
+
+    private static void restoreDeletedFile(Path deletedFile, Path originalFile) throws IOException {
+        try {
+            move(deletedFile, originalFile, ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            deleteIfExists(deletedFile);
+        }
+    }
+
+    @SneakyThrows
+    private static String digest(byte[] content, int off, int len) {
+        var md = MessageDigest.getInstance("SHA-256");
+        md.update(content, off, len);
+        return encodeHexString(md.digest());
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public Resource copy(String requestId, Resource resource) {
+        return resource;
+    }
+
+}
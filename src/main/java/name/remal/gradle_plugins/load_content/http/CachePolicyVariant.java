@@ -0,0 +1,72 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.util.stream.Collectors.joining;
+import static lombok.AccessLevel.PRIVATE;
+import static name.remal.gradle_plugins.load_content.http.NegativeCache.NEGATIVE_CACHE_CTX_ATTR;
+import static name.remal.gradle_plugins.load_content.http.StaleWhileRevalidate.STALE_WHILE_REVALIDATE_CTX_ATTR;
+import static org.apache.hc.core5.http.HttpHeaders.VARY;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import lombok.NoArgsConstructor;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Responses changed by {@link NegativeCache} or {@link StaleWhileRevalidate} are stored in the shared HTTP cache
+ * as a separate variant, so they are served only to loaders with the same cache policy.
+ *
+ * <p>The policy is sent in {@link #CACHE_POLICY_HEADER}, and {@code Vary} of changed responses includes it.
+ */
+@NoArgsConstructor(access = PRIVATE)
+abstract class CachePolicyVariant {
+
+    static final String CACHE_POLICY_HEADER = "X-Load-Content-Cache-Policy";
+
+
+    static void setCachePolicy(
+        HttpRequest request,
+        HttpContext context,
+        NegativeCache.@Nullable Policy negativeCache,
+        @Nullable Duration staleWhileRevalidate
+    ) {
+        var directives = new ArrayList<String>();
+
+        if (negativeCache != null && negativeCache.getDuration().toSeconds() > 0) {
+            context.setAttribute(NEGATIVE_CACHE_CTX_ATTR, negativeCache);
+            directives.add("negative-cache=" + negativeCache.getDuration().toSeconds()
+                + negativeCache.getStatusCodes().stream()
+                .sorted()
+                .map(String::valueOf)
+                .collect(joining(";", ";", ""))
+            );
+        }
+
+        if (staleWhileRevalidate != null && staleWhileRevalidate.toSeconds() > 0) {
+            context.setAttribute(STALE_WHILE_REVALIDATE_CTX_ATTR, staleWhileRevalidate);
+            directives.add("stale-while-revalidate=" + staleWhileRevalidate.toSeconds());
+        }
+
+        if (!directives.isEmpty()) {
+            request.setHeader(CACHE_POLICY_HEADER, String.join(", ", directives));
+        }
+    }
+
+    /**
+     * Must be called by interceptors that change caching headers of a response.
+     */
+    static void addVary(HttpResponse response) {
+        for (var header : response.getHeaders(VARY)) {
+            for (var value : header.getValue().split(",")) {
+                if (value.trim().equalsIgnoreCase(CACHE_POLICY_HEADER)) {
+                    return;
+                }
+            }
+        }
+
+        response.addHeader(VARY, CACHE_POLICY_HEADER);
+    }
+
+}
@@ -0,0 +1,106 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import lombok.CustomLog;
+import lombok.Value;
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Caches successfully resolved addresses for the JVM's {@code networkaddress.cache.ttl},
+ * so address changes, like DNS failovers, are still picked up.
+ */
+@CustomLog
+final class CachingDnsResolver implements DnsResolver {
+
+    /**
+     * The same as the JVM's default, if {@code networkaddress.cache.ttl} isn't set.
+     */
+    static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+
+
+    private final DnsResolver delegate;
+
+    /**
+     * A negative value means forever.
+     */
+    private final long ttlNanos;
+
+    private final LongSupplier nanoTime;
+
+    private final ConcurrentMap<String, CachedAddresses> addresses = new ConcurrentHashMap<>();
+
+    CachingDnsResolver() {
+        this(SystemDefaultDnsResolver.INSTANCE, getSystemTtl(), System::nanoTime);
+    }
+
+    /**
+     * @param ttl {@code null} means forever
+     */
+    @VisibleForTesting
+    CachingDnsResolver(DnsResolver delegate, @Nullable Duration ttl, LongSupplier nanoTime) {
+        this.delegate = delegate;
+        this.ttlNanos = ttl != null ? ttl.toNanos() : -1;
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        if (ttlNanos == 0) {
+            return delegate.resolve(host);
+        }
+
+        var key = host.toLowerCase(Locale.ROOT);
+        var now = nanoTime.getAsLong();
+        var cached = addresses.get(key);
+        if (cached == null || (ttlNanos > 0 && now - cached.getResolvedAtNanos() >= ttlNanos)) {
+            cached = new CachedAddresses(delegate.resolve(host), now);
+            addresses.put(key, cached);
+        }
+        return cached.getAddresses().clone();
+    }
+
+    @Override
+    public String resolveCanonicalHostname(String host) throws UnknownHostException {
+        return delegate.resolveCanonicalHostname(host);
+    }
+
+
+    /**
+     * @return {@code null} if addresses are cached forever
+     */
+    @Nullable
+    private static Duration getSystemTtl() {
+        var value = Security.getProperty("networkaddress.cache.ttl");
+        if (value == null) {
+            value = System.getProperty("sun.net.inetaddr.ttl");
+        }
+        if (value == null || value.isBlank()) {
+            return DEFAULT_TTL;
+        }
+
+        try {
+            var seconds = Long.parseLong(value.trim());
+            return seconds >= 0 ? Duration.ofSeconds(seconds) : null;
+        } catch (NumberFormatException e) {
+            logger.debug("Invalid DNS cache TTL: {}", value, e);
+            return DEFAULT_TTL;
+        }
+    }
+
+    @Value
+    private static class CachedAddresses {
+        InetAddress[] addresses;
+        long resolvedAtNanos;
+    }
+
+}
@@ -0,0 +1,47 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import lombok.Builder;
+import lombok.Value;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.ResourceFactory;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.routing.HttpRoutePlanner;
+import org.apache.hc.core5.io.CloseMode;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The classic HTTP client with the state it owns, including its HTTP cache storage.
+ */
+@Value
+@Builder
+class ClassicHttpClient implements AutoCloseable {
+
+    CloseableHttpClient client;
+
+    PoolingHttpClientConnectionManager connectionManager;
+
+    CachingDnsResolver dnsResolver;
+
+    HttpRoutePlanner routePlanner;
+
+    ConnectionReuseStatistics connectionStatistics;
+
+    HttpCacheStorage cacheStorage;
+
+    ResourceFactory resourceFactory;
+
+    @Nullable
+    MemoryCacheStatistics memoryCacheStatistics;
+
+    /**
+     * Starts the background cleanup of the cache storage, if it's needed.
+     */
+    Runnable cacheCleanup;
+
+    @Override
+    public void close() {
+        client.close(CloseMode.GRACEFUL);
+    }
+
+}
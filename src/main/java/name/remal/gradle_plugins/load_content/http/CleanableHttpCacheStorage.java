@@ -0,0 +1,21 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import java.time.Duration;
+
+/**
+ * An HTTP cache storage that can be limited in size by {@link HttpCacheCleanup}.
+ */
+interface CleanableHttpCacheStorage {
+
+    /**
+     * Deletes entries until the total size of entries and their resource files fits {@code maxSizeBytes},
+     * then deletes resource files that are not referenced by any entry.
+     *
+     * <p>Unreferenced resource files are deleted only if they are older than {@code minResourceAge},
+     * as they can be referenced by entries that are being stored.
+     *
+     * @param maxSizeBytes zero or a negative value means unlimited
+     */
+    void cleanup(long maxSizeBytes, Duration minResourceAge);
+
+}
@@ -0,0 +1,74 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpResponseInterceptor;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Counts requests that were actually sent over the network and how many of them opened a new connection.
+ *
+ * <p>A connection is considered new if the request is the first one sent over it.
+ * Responses served from the cache are not counted.
+ */
+public class ConnectionReuseStatistics implements HttpResponseInterceptor {
+
+    private final AtomicLong leases = new AtomicLong();
+
+    private final AtomicLong newConnections = new AtomicLong();
+
+    @Override
+    public void process(HttpResponse response, @Nullable EntityDetails entity, @Nullable HttpContext context) {
+        if (context == null) {
+            return;
+        }
+
+        var endpointDetails = HttpCoreContext.cast(context).getEndpointDetails();
+        if (endpointDetails == null) {
+            return;
+        }
+
+        leases.incrementAndGet();
+        if (endpointDetails.getRequestCount() <= 1) {
+            newConnections.incrementAndGet();
+        }
+    }
+
+    public long getLeases() {
+        return leases.get();
+    }
+
+    public long getNewConnections() {
+        return newConnections.get();
+    }
+
+    public long getReusedConnections() {
+        return Math.max(getLeases() - getNewConnections(), 0);
+    }
+
+    /**
+     * Returns a value between 0 and 1, or 0 if there were no requests.
+     */
+    public double getReuseRatio() {
+        var currentLeases = getLeases();
+        if (currentLeases <= 0) {
+            return 0;
+        }
+
+        return (double) getReusedConnections() / currentLeases;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "leases=%d, new connections=%d, reuse ratio=%.2f",
+            getLeases(),
+            getNewConnections(),
+            getReuseRatio()
+        );
+    }
+
+}
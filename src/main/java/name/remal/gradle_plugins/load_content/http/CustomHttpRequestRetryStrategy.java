@@ -1,29 +1,146 @@
 package name.remal.gradle_plugins.load_content.http;
 
+import static name.remal.gradle_plugins.load_content.http.HostRateLimiterFeedback.HOST_RATE_LIMITER_CTX_ATTR;
+import static name.remal.gradle_plugins.load_content.http.LoadDeadlineTracker.LOAD_DEADLINE_CTX_ATTR;
+import static org.apache.hc.core5.http.HttpHeaders.RETRY_AFTER;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import name.remal.gradle_plugins.load_content.http.LoadDeadline.Phase;
+import name.remal.gradle_plugins.load_content.internal.HostRateLimiter;
 import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy;
+import org.apache.hc.core5.http.HttpRequest;
 import org.apache.hc.core5.http.HttpResponse;
 import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
 import org.apache.hc.core5.util.TimeValue;
 import org.jspecify.annotations.Nullable;
 
+/**
+ * Retries with exponential backoff and full jitter: the interval is a random value
+ * between zero and {@code initialInterval * 2^(execCount - 1)}, capped at {@code maxInterval}.
+ * {@code Retry-After} sent by the server takes precedence, capped at {@code maxInterval} too.
+ *
+ * <p>If the context has a {@link HostRateLimiter}, retries are limited by its per-host retry budget.
+ * If the context has a {@link LoadDeadline}, there are no retries after the deadline.
+ */
 class CustomHttpRequestRetryStrategy extends DefaultHttpRequestRetryStrategy {
 
-    private static final TimeValue DEFAULT_RETRY_INTERVAL = TimeValue.ofSeconds(5);
-    private static final TimeValue MAX_RETRY_INTERVAL = TimeValue.ofMinutes(1);
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final Duration DEFAULT_INITIAL_INTERVAL = Duration.ofSeconds(1);
+    public static final Duration DEFAULT_MAX_INTERVAL = Duration.ofMinutes(1);
+
+    private final long initialIntervalMillis;
+    private final long maxIntervalMillis;
+
+    CustomHttpRequestRetryStrategy(int maxRetries, Duration initialInterval, Duration maxInterval) {
+        super(maxRetries, TimeValue.of(initialInterval));
+        this.initialIntervalMillis = Math.max(initialInterval.toMillis(), 0);
+        this.maxIntervalMillis = Math.max(maxInterval.toMillis(), 0);
+    }
 
-    public static final CustomHttpRequestRetryStrategy INSTANCE = new CustomHttpRequestRetryStrategy();
+    @Override
+    public boolean retryRequest(
+        HttpRequest request,
+        IOException exception,
+        int execCount,
+        @Nullable HttpContext context
+    ) {
+        return super.retryRequest(request, exception, execCount, context)
+            && !isDeadlineExpired(context)
+            && tryAcquireRetry(getHost(request), context);
+    }
 
-    private CustomHttpRequestRetryStrategy() {
-        super(3, DEFAULT_RETRY_INTERVAL);
+    @Override
+    public boolean retryRequest(HttpResponse response, int execCount, @Nullable HttpContext context) {
+        return super.retryRequest(response, execCount, context)
+            && !isDeadlineExpired(context)
+            && tryAcquireRetry(getHost(context), context);
     }
 
     @Override
     public TimeValue getRetryInterval(HttpResponse response, int execCount, @Nullable HttpContext context) {
-        var interval = super.getRetryInterval(response, execCount, context);
-        if (interval.compareTo(MAX_RETRY_INTERVAL) > 0) {
-            interval = MAX_RETRY_INTERVAL;
+        if (response.containsHeader(RETRY_AFTER)) {
+            var interval = super.getRetryInterval(response, execCount, context);
+            if (interval.toMilliseconds() > maxIntervalMillis) {
+                interval = TimeValue.ofMilliseconds(maxIntervalMillis);
+            }
+            return onRetry(interval, context);
+        }
+
+        return onRetry(getBackoffInterval(execCount), context);
+    }
+
+    @Override
+    public TimeValue getRetryInterval(
+        HttpRequest request,
+        IOException exception,
+        int execCount,
+        @Nullable HttpContext context
+    ) {
+        return onRetry(getBackoffInterval(execCount), context);
+    }
+
+    TimeValue getBackoffInterval(int execCount) {
+        var shift = Math.clamp(execCount - 1, 0, 30);
+        var ceilingMillis = initialIntervalMillis > (maxIntervalMillis >> shift)
+            ? maxIntervalMillis
+            : initialIntervalMillis << shift;
+        if (ceilingMillis <= 0) {
+            return TimeValue.ZERO_MILLISECONDS;
+        }
+        return TimeValue.ofMilliseconds(ThreadLocalRandom.current().nextLong(ceilingMillis + 1));
+    }
+
+
+    private static boolean isDeadlineExpired(@Nullable HttpContext context) {
+        return context != null
+            && context.getAttribute(LOAD_DEADLINE_CTX_ATTR) instanceof LoadDeadline deadline
+            && deadline.isExpired();
+    }
+
+    /**
+     * The retry delay is tracked by the load deadline, and it doesn't last beyond the deadline.
+     */
+    private static TimeValue onRetry(TimeValue interval, @Nullable HttpContext context) {
+        if (context == null || !(context.getAttribute(LOAD_DEADLINE_CTX_ATTR) instanceof LoadDeadline deadline)) {
+            return interval;
+        }
+
+        deadline.enterPhase(Phase.RETRY_DELAY);
+        var remaining = deadline.getRemaining();
+        if (remaining != null && interval.toMilliseconds() > remaining.toMillis()) {
+            return TimeValue.ofMilliseconds(remaining.toMillis());
         }
         return interval;
     }
 
+    private static boolean tryAcquireRetry(@Nullable String host, @Nullable HttpContext context) {
+        if (host == null
+            || context == null
+            || !(context.getAttribute(HOST_RATE_LIMITER_CTX_ATTR) instanceof HostRateLimiter hostRateLimiter)
+        ) {
+            return true;
+        }
+
+        return hostRateLimiter.tryAcquireRetry(host);
+    }
+
+    @Nullable
+    private static String getHost(@Nullable HttpContext context) {
+        if (context == null) {
+            return null;
+        }
+        var request = HttpCoreContext.castOrCreate(context).getRequest();
+        return request != null ? getHost(request) : null;
+    }
+
+    @Nullable
+    private static String getHost(HttpRequest request) {
+        var authority = request.getAuthority();
+        return authority != null ? authority.getHostName().toLowerCase(Locale.ROOT) : null;
+    }
+
 }
@@ -0,0 +1,128 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.util.concurrent.CompletableFuture.delayedExecutor;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import lombok.CustomLog;
+import lombok.NoArgsConstructor;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Keeps {@link ClassicHttpClient}s between builds executed by the same Gradle daemon,
+ * so pooled keep-alive connections and TLS sessions are reused by consecutive builds.
+ *
+ * <p>The clients are stored in a static field, so they are scoped to the plugin's class loader,
+ * the same as the name of {@link HttpClientService}.
+ * A client owns everything it uses, including the HTTP cache storage,
+ * so builds sharing the client share the same state.
+ *
+ * <p>A client that isn't used by any build is closed after its idle timeout.
+ * The close is scheduled via the JDK's shared delayer, so no thread is kept per plugin class loader,
+ * and nothing references the class loader after all its clients are closed.
+ */
+@CustomLog
+@NoArgsConstructor(access = PRIVATE)
+abstract class DaemonScopedHttpClients {
+
+    private static final Map<Object, Entry> ENTRIES = new HashMap<>();
+
+    /**
+     * Returns a lease for the client with the {@code key}. The client is created by {@code factory}, if needed.
+     *
+     * <p>The lease must be closed when the build doesn't need the client anymore.
+     */
+    public static synchronized Lease acquire(Object key, Duration idleTimeout, Supplier<ClassicHttpClient> factory) {
+        var entry = ENTRIES.get(key);
+        if (entry == null) {
+            entry = new Entry(factory.get(), idleTimeout);
+            ENTRIES.put(key, entry);
+        }
+
+        entry.leases++;
+        return new Lease(key, entry);
+    }
+
+    private static synchronized void release(Object key, Entry entry) {
+        entry.leases--;
+        if (entry.leases > 0) {
+            return;
+        }
+
+        var release = ++entry.releases;
+        CompletableFuture.runAsync(
+            () -> closeIfIdle(key, entry, release),
+            delayedExecutor(entry.idleTimeout.toNanos(), NANOSECONDS)
+        );
+    }
+
+    /**
+     * @param release the entry is closed only if it wasn't acquired and released again since this release
+     */
+    private static void closeIfIdle(Object key, Entry entry, long release) {
+        synchronized (DaemonScopedHttpClients.class) {
+            if (entry.leases > 0 || entry.releases != release || ENTRIES.get(key) != entry) {
+                return;
+            }
+            ENTRIES.remove(key);
+        }
+
+        logger.debug("Closing idle daemon-scoped HTTP client: {}", entry.client.getConnectionStatistics());
+        entry.client.close();
+    }
+
+
+    private static final class Entry {
+
+        final ClassicHttpClient client;
+
+        final Duration idleTimeout;
+
+        int leases;
+
+        long releases;
+
+        Entry(ClassicHttpClient client, Duration idleTimeout) {
+            this.client = client;
+            this.idleTimeout = idleTimeout;
+        }
+
+    }
+
+    public static final class Lease implements AutoCloseable {
+
+        private final Object key;
+
+        @Nullable
+        private Entry entry;
+
+        private Lease(Object key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+
+        public synchronized ClassicHttpClient getClient() {
+            var currentEntry = entry;
+            if (currentEntry == null) {
+                throw new IllegalStateException("The lease is closed");
+            }
+            return currentEntry.client;
+        }
+
+        @Override
+        public synchronized void close() {
+            var currentEntry = entry;
+            entry = null;
+            if (currentEntry != null) {
+                release(key, currentEntry);
+            }
+        }
+
+    }
+
+}
@@ -8,6 +8,7 @@ import java.io.InputStream;
 import java.io.Serial;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import lombok.Value;
 import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.client5.http.cache.ResourceIOException;
@@ -22,12 +23,43 @@ class GzippedHeapResource extends Resource {
     private final AtomicReference<@Nullable GZippedContent> gzippedContent = new AtomicReference<>();
 
     public GzippedHeapResource(long contentLength, byte @Nullable [] gzippedContent) {
+        this(contentLength, gzippedContent, true);
+    }
+
+    /**
+     * @param isGzipped {@code false} if the content is stored as-is, for example if it's already compressed
+     */
+    public GzippedHeapResource(long contentLength, byte @Nullable [] content, boolean isGzipped) {
         super();
-        if (gzippedContent != null) {
-            this.gzippedContent.set(new GZippedContent(contentLength, gzippedContent));
+        if (content != null) {
+            this.gzippedContent.set(new GZippedContent(contentLength, content, isGzipped));
+        }
+    }
+
+
+    /**
+     * GZips the content if it's stored as-is.
+     */
+    public void gzip() throws ResourceIOException {
+        var content = this.gzippedContent.get();
+        if (content == null || content.isGzipped()) {
+            return;
         }
+
+        var bytesOut = new ByteArrayOutputStream();
+        try (var gzipOut = new GZIPOutputStream(bytesOut)) {
+            gzipOut.write(content.getGzippedContent());
+        } catch (IOException e) {
+            throw new ResourceIOException("GZipping exception", e);
+        }
+        var gzipped = new GZippedContent(content.getContentLength(), bytesOut.toByteArray(), true);
+        this.gzippedContent.compareAndSet(content, gzipped);
     }
 
+    public boolean isGzipped() {
+        var content = this.gzippedContent.get();
+        return content != null && content.isGzipped();
+    }
 
     @Override
     @MustBeClosed
@@ -38,6 +70,10 @@ class GzippedHeapResource extends Resource {
         }
 
         var bytesIn = new ByteArrayInputStream(gzippedContent.getGzippedContent());
+        if (!gzippedContent.isGzipped()) {
+            return bytesIn;
+        }
+
         try {
             return new GZIPInputStream(bytesIn);
         } catch (IOException e) {
@@ -73,6 +109,7 @@ class GzippedHeapResource extends Resource {
     private static class GZippedContent {
         long contentLength;
         byte[] gzippedContent;
+        boolean gzipped;
     }
 
 }
@@ -2,39 +2,28 @@ package name.remal.gradle_plugins.load_content.http;
 
 import static lombok.AccessLevel.PRIVATE;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.zip.GZIPOutputStream;
+import java.util.Arrays;
 import lombok.NoArgsConstructor;
 import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.client5.http.cache.ResourceFactory;
-import org.apache.hc.client5.http.cache.ResourceIOException;
 
+/**
+ * Resources are created as-is, and {@link GzippingHttpCacheStorage} gzips them when they are stored,
+ * as only the stored response tells if the content is already compressed.
+ */
 @NoArgsConstructor(access = PRIVATE)
 class GzippedHeapResourceFactory implements ResourceFactory {
 
     public static final GzippedHeapResourceFactory INSTANCE = new GzippedHeapResourceFactory();
 
     @Override
-    public Resource generate(String requestId, byte[] content) throws ResourceIOException {
-        var bytesOut = new ByteArrayOutputStream();
-        try (var gzipOut = new GZIPOutputStream(bytesOut)) {
-            gzipOut.write(content);
-        } catch (IOException e) {
-            throw new ResourceIOException("GZipping exception", e);
-        }
-        return new GzippedHeapResource(content.length, bytesOut.toByteArray());
+    public Resource generate(String requestId, byte[] content) {
+        return generate(requestId, content, 0, content.length);
     }
 
     @Override
-    public Resource generate(String requestId, byte[] content, int off, int len) throws ResourceIOException {
-        var bytesOut = new ByteArrayOutputStream();
-        try (var gzipOut = new GZIPOutputStream(bytesOut)) {
-            gzipOut.write(content, off, len);
-        } catch (IOException e) {
-            throw new ResourceIOException("GZipping exception", e);
-        }
-        return new GzippedHeapResource(content.length, bytesOut.toByteArray());
+    public Resource generate(String requestId, byte[] content, int off, int len) {
+        return new GzippedHeapResource(len, Arrays.copyOfRange(content, off, off + len), false);
     }
 
     @Override
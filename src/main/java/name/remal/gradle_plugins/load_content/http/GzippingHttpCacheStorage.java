@@ -0,0 +1,113 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static org.apache.hc.core5.http.HttpHeaders.CONTENT_ENCODING;
+import static org.apache.hc.core5.http.HttpHeaders.CONTENT_TYPE;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.http.ContentType;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * GZips {@link GzippedHeapResource}s of stored entries,
+ * unless the stored response's {@code Content-Encoding} or {@code Content-Type} says it's already compressed.
+ */
+@RequiredArgsConstructor
+class GzippingHttpCacheStorage implements HttpCacheStorage {
+
+    private static final Set<String> COMPRESSED_MIME_TYPES = Set.of(
+        "application/gzip",
+        "application/java-archive",
+        "application/vnd.rar",
+        "application/x-7z-compressed",
+        "application/x-bzip2",
+        "application/x-gzip",
+        "application/x-rar-compressed",
+        "application/x-xz",
+        "application/zip",
+        "application/zstd",
+        "font/woff",
+        "font/woff2"
+    );
+
+    private static final Set<String> COMPRESSED_MIME_TYPE_SUFFIXES = Set.of("+zip", "+gzip", "+zstd");
+
+    private static final Set<String> COMPRESSED_MIME_TYPE_PREFIXES = Set.of("image/", "audio/", "video/");
+
+    private static final Set<String> UNCOMPRESSED_MEDIA_MIME_TYPES = Set.of("image/svg+xml", "image/bmp");
+
+
+    private final HttpCacheStorage delegate;
+
+    private static void gzipIfUseful(@Nullable HttpCacheEntry entry) throws ResourceIOException {
+        if (entry != null
+            && entry.getResource() instanceof GzippedHeapResource resource
+            && !isAlreadyCompressed(entry)
+        ) {
+            resource.gzip();
+        }
+    }
+
+    static boolean isAlreadyCompressed(HttpCacheEntry entry) {
+        var contentEncoding = entry.getFirstHeader(CONTENT_ENCODING);
+        if (contentEncoding != null && !contentEncoding.getValue().trim().equalsIgnoreCase("identity")) {
+            return true;
+        }
+
+        var contentTypeHeader = entry.getFirstHeader(CONTENT_TYPE);
+        var contentType = contentTypeHeader != null ? ContentType.parseLenient(contentTypeHeader.getValue()) : null;
+        if (contentType == null) {
+            return false;
+        }
+
+        var mimeType = contentType.getMimeType().toLowerCase(Locale.ROOT);
+        return COMPRESSED_MIME_TYPES.contains(mimeType)
+            || COMPRESSED_MIME_TYPE_SUFFIXES.stream().anyMatch(mimeType::endsWith)
+            || (COMPRESSED_MIME_TYPE_PREFIXES.stream().anyMatch(mimeType::startsWith)
+            && !UNCOMPRESSED_MEDIA_MIME_TYPES.contains(mimeType));
+    }
+
+
+    @Override
+    public void putEntry(String key, HttpCacheEntry entry) throws ResourceIOException {
+        gzipIfUseful(entry);
+        delegate.putEntry(key, entry);
+    }
+
+    @Override
+    @Nullable
+    public HttpCacheEntry getEntry(String key) throws ResourceIOException {
+        return delegate.getEntry(key);
+    }
+
+    @Override
+    public void removeEntry(String key) throws ResourceIOException {
+        delegate.removeEntry(key);
+    }
+
+    @Override
+    public void updateEntry(
+        String key,
+        HttpCacheCASOperation casOperation
+    ) throws ResourceIOException, HttpCacheUpdateException {
+        delegate.updateEntry(key, existing -> {
+            var entry = casOperation.execute(existing);
+            gzipIfUseful(entry);
+            return entry;
+        });
+    }
+
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(Collection<String> keys) throws ResourceIOException {
+        return delegate.getEntries(keys);
+    }
+
+}
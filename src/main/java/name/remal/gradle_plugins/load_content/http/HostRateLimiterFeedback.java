@@ -0,0 +1,62 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.lang.System.nanoTime;
+import static org.apache.hc.core5.http.HttpHeaders.RETRY_AFTER;
+
+import java.util.Locale;
+import name.remal.gradle_plugins.load_content.internal.HostRateLimiter;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpRequestInterceptor;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpResponseInterceptor;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Reports network responses to the {@link HostRateLimiter} stored in {@link #HOST_RATE_LIMITER_CTX_ATTR}.
+ */
+enum HostRateLimiterFeedback implements HttpRequestInterceptor, HttpResponseInterceptor {
+
+    INSTANCE;
+
+
+    public static final String HOST_RATE_LIMITER_CTX_ATTR = HostRateLimiterFeedback.class.getName();
+
+    private static final String REQUEST_SENT_NANOS_CTX_ATTR = HostRateLimiterFeedback.class.getName() + ".sent";
+    private static final String REQUEST_HOST_CTX_ATTR = HostRateLimiterFeedback.class.getName() + ".host";
+
+    @Override
+    public void process(HttpRequest request, @Nullable EntityDetails entity, @Nullable HttpContext context) {
+        if (context == null || !(context.getAttribute(HOST_RATE_LIMITER_CTX_ATTR) instanceof HostRateLimiter)) {
+            return;
+        }
+
+        var authority = request.getAuthority();
+        if (authority == null) {
+            return;
+        }
+
+        context.setAttribute(REQUEST_HOST_CTX_ATTR, authority.getHostName().toLowerCase(Locale.ROOT));
+        context.setAttribute(REQUEST_SENT_NANOS_CTX_ATTR, nanoTime());
+    }
+
+    @Override
+    public void process(HttpResponse response, @Nullable EntityDetails entity, @Nullable HttpContext context) {
+        if (context == null
+            || !(context.getAttribute(HOST_RATE_LIMITER_CTX_ATTR) instanceof HostRateLimiter hostRateLimiter)
+            || !(context.getAttribute(REQUEST_HOST_CTX_ATTR) instanceof String host)
+            || !(context.getAttribute(REQUEST_SENT_NANOS_CTX_ATTR) instanceof Long sentNanos)
+        ) {
+            return;
+        }
+
+        hostRateLimiter.onResponse(
+            host,
+            response.getCode(),
+            nanoTime() - sentNanos,
+            response.containsHeader(RETRY_AFTER)
+        );
+    }
+
+}
@@ -0,0 +1,153 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.getLastModifiedTime;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.newDirectoryStream;
+import static java.nio.file.Files.setLastModifiedTime;
+import static java.nio.file.Files.walk;
+import static java.nio.file.Files.write;
+import static lombok.AccessLevel.PRIVATE;
+import static name.remal.gradle_plugins.load_content.http.CacheDirHttpCacheStorage.getRootDir;
+import static name.remal.gradle_plugins.toolkit.PathUtils.deleteRecursively;
+import static name.remal.gradle_plugins.toolkit.PathUtils.withShortExclusiveLock;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import lombok.CustomLog;
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Cleans up the HTTP cache dir at most once per {@link #CLEANUP_INTERVAL}, the same way as Gradle cleans up
+ * its own caches.
+ *
+ * <p>Directories of previous cache versions are deleted if they weren't used for {@link #OLD_VERSION_RETENTION}.
+ * Entries of the current version are evicted by {@link CleanableHttpCacheStorage#cleanup(long, Duration)}.
+ */
+@CustomLog
+@NoArgsConstructor(access = PRIVATE)
+abstract class HttpCacheCleanup {
+
+    static final Duration CLEANUP_INTERVAL = Duration.ofDays(1);
+
+    static final Duration OLD_VERSION_RETENTION = Duration.ofDays(7);
+
+    static final Duration MIN_RESOURCE_AGE = Duration.ofHours(1);
+
+    private static final String MARKER_FILE_NAME = "cleanup.marker";
+
+    private static final String LOCK_FILE_NAME = "cleanup.lock";
+
+
+    /**
+     * @param storage the storage of the current cache version, {@code null} if its entries can't be evicted
+     * @param maxSizeBytes zero or a negative value means unlimited
+     */
+    public static void cleanupInBackgroundIfNeeded(
+        Path cacheRootDir,
+        @Nullable CleanableHttpCacheStorage storage,
+        long maxSizeBytes
+    ) {
+        Thread.ofVirtual().name(HttpCacheCleanup.class.getSimpleName()).start(() -> {
+            try {
+                cleanupIfNeeded(cacheRootDir, storage, maxSizeBytes);
+            } catch (Throwable e) {
+                logger.warn("Failed to clean up HTTP cache dir " + cacheRootDir, e);
+            }
+        });
+    }
+
+    /**
+     * @return {@code false} if the cleanup was skipped, because it was done recently
+     */
+    @VisibleForTesting
+    @SneakyThrows
+    static boolean cleanupIfNeeded(
+        Path cacheRootDir,
+        @Nullable CleanableHttpCacheStorage storage,
+        long maxSizeBytes
+    ) {
+        var rootDir = getRootDir(cacheRootDir);
+        createDirectories(rootDir);
+        // the modification time of the current version dir tells other versions of the plugin that it's in use:
+        setLastModifiedTime(rootDir, FileTime.from(Instant.now()));
+
+        if (!tryStartCleanup(cacheRootDir)) {
+            return false;
+        }
+
+        logger.debug("Cleaning up HTTP cache dir {}", cacheRootDir);
+        deleteOldVersionDirs(cacheRootDir, rootDir);
+        if (storage != null) {
+            storage.cleanup(maxSizeBytes, MIN_RESOURCE_AGE);
+        }
+        return true;
+    }
+
+    /**
+     * Touches the marker file, unless it was touched less than {@link #CLEANUP_INTERVAL} ago.
+     */
+    @SneakyThrows
+    private static boolean tryStartCleanup(Path cacheRootDir) {
+        var markerPath = cacheRootDir.resolve(MARKER_FILE_NAME);
+        return Boolean.TRUE.equals(withShortExclusiveLock(cacheRootDir.resolve(LOCK_FILE_NAME), () -> {
+            var now = Instant.now();
+            if (exists(markerPath)
+                && getLastModifiedTime(markerPath).toInstant().isAfter(now.minus(CLEANUP_INTERVAL))
+            ) {
+                return false;
+            }
+
+            write(markerPath, new byte[0]);
+            setLastModifiedTime(markerPath, FileTime.from(now));
+            return true;
+        }));
+    }
+
+    @SneakyThrows
+    private static void deleteOldVersionDirs(Path cacheRootDir, Path currentRootDir) {
+        var maxLastModified = Instant.now().minus(OLD_VERSION_RETENTION);
+        try (var dirs = newDirectoryStream(cacheRootDir)) {
+            for (var dir : dirs) {
+                if (dir.getFileName().equals(currentRootDir.getFileName()) || !isDirectory(dir)) {
+                    continue;
+                }
+
+                if (!isModifiedAfter(dir, maxLastModified)) {
+                    logger.debug("Deleting HTTP cache dir of a previous version: {}", dir);
+                    deleteRecursively(dir);
+                }
+            }
+        }
+    }
+
+    /**
+     * Previous versions of the plugin don't necessarily touch their version dir, but they change files inside it,
+     * so the whole dir is checked.
+     */
+    @SneakyThrows
+    private static boolean isModifiedAfter(Path dir, Instant instant) {
+        try (var paths = walk(dir)) {
+            return paths.anyMatch(path -> {
+                try {
+                    return getLastModifiedTime(path).toInstant().isAfter(instant);
+                } catch (IOException e) {
+                    // deleted concurrently, so the dir is in use
+                    return true;
+                }
+            });
+        } catch (UncheckedIOException e) {
+            logger.debug("Can't walk HTTP cache dir {}", dir, e);
+            return true;
+        }
+    }
+
+}
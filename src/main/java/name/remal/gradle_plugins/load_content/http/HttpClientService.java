@@ -5,22 +5,50 @@ import static java.lang.System.identityHashCode;
 import static java.util.Objects.requireNonNull;
 import static lombok.AccessLevel.PUBLIC;
 import static name.remal.gradle_plugins.load_content.internal.Constants.PLUGIN_ID;
+import static name.remal.gradle_plugins.load_content.internal.HostRateLimiter.getHostRateLimiterFor;
 
 import java.io.File;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.inject.Inject;
 import lombok.CustomLog;
 import lombok.NoArgsConstructor;
+import lombok.Value;
 import name.remal.gradle_plugins.load_content.internal.ContentLoaderBuildService;
+import name.remal.gradle_plugins.load_content.internal.HostRateLimiter;
+import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.ResourceFactory;
 import org.apache.hc.client5.http.classic.HttpClient;
 import org.apache.hc.client5.http.config.ConnectionConfig;
 import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.entity.BrotliInputStreamFactory;
+import org.apache.hc.client5.http.entity.DeflateInputStreamFactory;
+import org.apache.hc.client5.http.entity.GZIPInputStreamFactory;
+import org.apache.hc.client5.http.entity.InputStreamFactory;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
 import org.apache.hc.client5.http.impl.cache.BasicHttpCacheStorage;
 import org.apache.hc.client5.http.impl.cache.CacheConfig;
+import org.apache.hc.client5.http.impl.cache.CachingHttpAsyncClients;
 import org.apache.hc.client5.http.impl.cache.CachingHttpClients;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.routing.SystemDefaultRoutePlanner;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.routing.RoutingSupport;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
 import org.apache.hc.core5.util.Timeout;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.invocation.Gradle;
@@ -32,18 +60,20 @@ import org.jspecify.annotations.Nullable;
 
 @CustomLog
 @NoArgsConstructor(access = PUBLIC, onConstructor_ = {@Inject})
-abstract class HttpClientService implements ContentLoaderBuildService<HttpClientService.Parameters> {
+abstract class HttpClientService implements ContentLoaderBuildService<HttpClientService.Parameters>, AutoCloseable {
+
+    private static final String SERVICE_NAME = join(
+        "|",
+        HttpClientService.class.getName(),
+        String.valueOf(identityHashCode(HttpClientService.class)),
+        Optional.ofNullable(HttpClientService.class.getClassLoader())
+            .map(System::identityHashCode)
+            .map(Object::toString)
+            .orElse("")
+    );
 
     public static Provider<HttpClientService> getHttpClientServiceProvider(Gradle gradle) {
-        var serviceName = join(
-            "|",
-            HttpClientService.class.getName(),
-            String.valueOf(identityHashCode(HttpClientService.class)),
-            Optional.ofNullable(HttpClientService.class.getClassLoader())
-                .map(System::identityHashCode)
-                .map(Object::toString)
-                .orElse("")
-        );
+        var serviceName = SERVICE_NAME;
         var serviceProvider = gradle.getSharedServices().registerIfAbsent(
             serviceName,
             HttpClientService.class,
@@ -52,6 +82,33 @@ abstract class HttpClientService implements ContentLoaderBuildService<HttpClient
                 var cacheDir = new File(gradleUserHomeDir, PLUGIN_ID + "/cache/http");
                 spec.getParameters().getCacheDir().fileValue(cacheDir);
                 spec.getParameters().getOnlyIfCached().set(gradle.getStartParameter().isOffline());
+                spec.getParameters().getMaxCacheObjectSizeMb().convention(DEFAULT_MAX_CACHE_OBJECT_SIZE_MB);
+                spec.getParameters().getSegmentedCacheStorage().convention(false);
+                spec.getParameters().getMaxCacheSizeMb().convention(DEFAULT_MAX_CACHE_SIZE_MB);
+                spec.getParameters().getMemoryCacheSizeMb().convention(DEFAULT_MEMORY_CACHE_SIZE_MB);
+                spec.getParameters().getRevalidationWorkers().convention(DEFAULT_REVALIDATION_WORKERS);
+
+                var hostRateLimiter = getHostRateLimiterFor(gradle);
+                spec.getParameters().getMaxConnectionsPerHost().convention(
+                    hostRateLimiter.getMaxParallelRequestPerHost()
+                );
+                spec.getParameters().getMaxConnectionsTotal().convention(DEFAULT_MAX_CONNECTIONS_TOTAL);
+                spec.getParameters().getConnectionKeepAlive().convention(DEFAULT_CONNECTION_KEEP_ALIVE);
+                spec.getParameters().getConnectionIdleEviction().convention(DEFAULT_CONNECTION_IDLE_EVICTION);
+                spec.getParameters().getConnectionValidateAfterInactivity().convention(
+                    DEFAULT_CONNECTION_VALIDATE_AFTER_INACTIVITY
+                );
+                spec.getParameters().getMaxRetries().convention(CustomHttpRequestRetryStrategy.DEFAULT_MAX_RETRIES);
+                spec.getParameters().getRetryInitialInterval().convention(
+                    CustomHttpRequestRetryStrategy.DEFAULT_INITIAL_INTERVAL
+                );
+                spec.getParameters().getMaxRetryInterval().convention(
+                    CustomHttpRequestRetryStrategy.DEFAULT_MAX_INTERVAL
+                );
+                spec.getParameters().getDaemonScopedClient().convention(false);
+                spec.getParameters().getDaemonScopedClientIdleTimeout().convention(
+                    DEFAULT_DAEMON_SCOPED_CLIENT_IDLE_TIMEOUT
+                );
             }
         );
         return serviceProvider;
@@ -68,78 +125,597 @@ abstract class HttpClientService implements ContentLoaderBuildService<HttpClient
         @org.gradle.api.tasks.Optional
         Property<Boolean> getOnlyIfCached();
 
+        /**
+         * Responses larger than this size are not cached. Zero or a negative value means 10 MB.
+         * The value can't be greater than 10 MB.
+         *
+         * <p>When {@link #getCacheDir()} is set, large bodies are stored as separate files in the cache dir.
+         * However, the HTTP cache still buffers the whole body of a cached response in memory, both when it's stored
+         * and on every cache hit, so this size bounds the heap used per cached response.
+         * Larger resources should be loaded with a build cache file, which streams the body to disk.
+         */
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Long> getMaxCacheObjectSizeMb();
+
+        /**
+         * If enabled, cache entries in {@link #getCacheDir()} are packed into memory-mapped append-only segments,
+         * instead of being stored as several files per entry.
+         *
+         * @see SegmentedLogHttpCacheStorage
+         */
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Boolean> getSegmentedCacheStorage();
+
+        /**
+         * Max size of {@link #getCacheDir()}. Least recently used entries are deleted above it
+         * by a background cleanup, which runs at most once per day.
+         * Zero or a negative value means unlimited.
+         *
+         * <p>Entries of {@link #getSegmentedCacheStorage()} are deleted in the order they were written,
+         * as reads don't change the segments.
+         */
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Long> getMaxCacheSizeMb();
+
+        /**
+         * Max estimated size of deserialized cache entries kept in memory in front of {@link #getCacheDir()}.
+         * Zero or a negative value disables the in-memory tier.
+         *
+         * <p>It's not used if {@link #getSegmentedCacheStorage()} is enabled.
+         */
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Long> getMemoryCacheSizeMb();
+
+        /**
+         * Number of background workers revalidating stale cache entries,
+         * which are served while {@code stale-while-revalidate} allows it.
+         * Zero disables background revalidation.
+         *
+         * @see HttpLoadParams#getStaleWhileRevalidate()
+         */
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Integer> getRevalidationWorkers();
+
+        /**
+         * By default, equals to {@link HostRateLimiter.Parameters#getMaxParallelRequestPerHost()},
+         * so every host permit maps to a pooled connection.
+         */
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Integer> getMaxConnectionsPerHost();
+
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Integer> getMaxConnectionsTotal();
+
+        /**
+         * Max time an idle connection is kept alive. Shorter keep-alive sent by the server takes precedence.
+         */
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Duration> getConnectionKeepAlive();
+
+        /**
+         * Idle connections are closed in the background after this time.
+         */
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Duration> getConnectionIdleEviction();
+
+        /**
+         * Pooled connections that were idle for longer than this time are validated before being reused.
+         */
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Duration> getConnectionValidateAfterInactivity();
+
+        /**
+         * Max number of retries of a failed request.
+         * Retries are also limited by {@link HostRateLimiter.Parameters#getRetryBudgetRatio()}.
+         */
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Integer> getMaxRetries();
+
+        /**
+         * The upper bound of the first retry's random delay. It's doubled for every next retry.
+         */
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Duration> getRetryInitialInterval();
+
+        /**
+         * The upper bound of retry delays, including delays requested by {@code Retry-After} header.
+         */
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Duration> getMaxRetryInterval();
+
+        /**
+         * If enabled, the classic HTTP client with its connection pool, DNS cache, and TLS sessions
+         * is kept by the Gradle daemon between builds, so consecutive builds skip connection handshakes.
+         *
+         * <p>Idle connections are still evicted according to {@link #getConnectionKeepAlive()}
+         * and {@link #getConnectionIdleEviction()}.
+         */
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Boolean> getDaemonScopedClient();
+
+        /**
+         * A daemon-scoped client that isn't used by any build is closed after this time.
+         */
+        @Internal
+        @org.gradle.api.tasks.Optional
+        Property<Duration> getDaemonScopedClientIdleTimeout();
+
     }
 
 
-    private static final long MAX_CACHE_OBJECT_SIZE_MB = 10;
+    private static final long DEFAULT_MAX_CACHE_OBJECT_SIZE_MB = 10;
 
+    /**
+     * Cached bodies are read into byte arrays, so they can't be much larger than this.
+     */
+    private static final long MAX_MAX_CACHE_OBJECT_SIZE_MB = DEFAULT_MAX_CACHE_OBJECT_SIZE_MB;
 
-    @Nullable
-    private transient volatile CloseableHttpClient client;
+    private static final long DEFAULT_MAX_CACHE_SIZE_MB = 1024;
 
-    public HttpClient getClient() {
-        if (client == null) {
-            synchronized (this) {
-                if (client == null) {
-                    var builder = CachingHttpClients.custom();
-                    builder.useSystemProperties();
-                    builder.disableCookieManagement();
-                    builder.setUserAgent(PLUGIN_ID);
+    private static final long DEFAULT_MEMORY_CACHE_SIZE_MB = 32;
+
+    private static final int DEFAULT_REVALIDATION_WORKERS = 2;
+
+    private static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 100;
 
-                    builder.setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
-                        .setDefaultConnectionConfig(ConnectionConfig.custom()
-                            .setConnectTimeout(Timeout.ofSeconds(10))
-                            .build()
-                        )
-                        .setMaxConnTotal(0)
-                        .setMaxConnPerRoute(0)
-                        .build()
-                    );
+    private static final Duration DEFAULT_CONNECTION_KEEP_ALIVE = Duration.ofMinutes(1);
 
-                    builder.setDefaultRequestConfig(RequestConfig.custom()
-                        .setConnectionRequestTimeout(Timeout.ofSeconds(10))
-                        .build()
-                    );
+    private static final Duration DEFAULT_CONNECTION_IDLE_EVICTION = Duration.ofSeconds(30);
 
-                    builder.setRetryStrategy(CustomHttpRequestRetryStrategy.INSTANCE);
+    private static final Duration DEFAULT_CONNECTION_VALIDATE_AFTER_INACTIVITY = Duration.ofSeconds(2);
 
-                    var cacheConfig = CacheConfig.custom()
+    private static final Duration DEFAULT_DAEMON_SCOPED_CLIENT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+
+    public ConnectionReuseStatistics getConnectionStatistics() {
+        return getClassicClient().getConnectionStatistics();
+    }
+
+
+    @Nullable
+    private transient volatile CacheConfig cacheConfig;
+
+    private CacheConfig getCacheConfig() {
+        if (cacheConfig == null) {
+            synchronized (this) {
+                if (cacheConfig == null) {
+                    cacheConfig = CacheConfig.custom()
                         .setSharedCache(false)
-                        .setMaxObjectSize(MAX_CACHE_OBJECT_SIZE_MB * 1024 * 1024)
+                        .setMaxObjectSize(getMaxCacheObjectSizeBytes())
                         .setMaxCacheEntries(250)
                         .setMaxUpdateRetries(3)
                         .setHeuristicCachingEnabled(false)
-                        .setAsynchronousWorkers(0)
+                        .setAsynchronousWorkers(Math.max(getParameters().getRevalidationWorkers().getOrElse(0), 0))
                         .build();
-                    builder.setCacheConfig(cacheConfig);
-
-                    HttpCacheStorage cacheStorage;
-                    var cacheDir = getParameters().getCacheDir().getAsFile().getOrNull();
-                    if (cacheDir != null) {
-                        cacheStorage = new CacheDirHttpCacheStorage(
-                            cacheDir.toPath(),
-                            cacheConfig.getMaxUpdateRetries()
-                        );
+                }
+            }
+        }
+
+        return requireNonNull(cacheConfig);
+    }
+
+    private long getMaxCacheObjectSizeBytes() {
+        var maxCacheObjectSizeMb = getParameters().getMaxCacheObjectSizeMb()
+            .getOrElse(DEFAULT_MAX_CACHE_OBJECT_SIZE_MB);
+        if (maxCacheObjectSizeMb <= 0) {
+            maxCacheObjectSizeMb = DEFAULT_MAX_CACHE_OBJECT_SIZE_MB;
+        }
+        return Math.min(maxCacheObjectSizeMb, MAX_MAX_CACHE_OBJECT_SIZE_MB) * 1024 * 1024;
+    }
+
+    /**
+     * Creates the cache storage for a new classic client. It's created together with the client,
+     * so a daemon-scoped client and all builds using it share the same storage.
+     */
+    private CacheStorage createCacheStorage() {
+        HttpCacheStorage storage;
+        ResourceFactory resourceFactory;
+        @Nullable MemoryCacheStatistics memoryCacheStatistics = null;
+        Runnable cleanup = () -> { };
+        var cacheDir = getParameters().getCacheDir().getAsFile().getOrNull();
+        if (cacheDir != null && getParameters().getSegmentedCacheStorage().getOrElse(false)) {
+            var segmentedStorage = new SegmentedLogHttpCacheStorage(
+                cacheDir.toPath(),
+                getCacheConfig().getMaxUpdateRetries()
+            );
+            resourceFactory = segmentedStorage.getResourceFactory();
+            storage = segmentedStorage;
+            var maxCacheSizeBytes = getMaxCacheSizeBytes();
+            cleanup = () -> HttpCacheCleanup.cleanupInBackgroundIfNeeded(
+                cacheDir.toPath(),
+                segmentedStorage,
+                maxCacheSizeBytes
+            );
+
+        } else if (cacheDir != null) {
+            var memoryCacheSizeMb = getParameters().getMemoryCacheSizeMb().getOrElse(0L);
+            var cacheDirStorage = new CacheDirHttpCacheStorage(
+                cacheDir.toPath(),
+                getCacheConfig().getMaxUpdateRetries(),
+                CacheDirHttpCacheStorage.DEFAULT_SPOOL_THRESHOLD_BYTES,
+                memoryCacheSizeMb * 1024 * 1024
+            );
+            resourceFactory = cacheDirStorage.getResourceFactory();
+            memoryCacheStatistics = cacheDirStorage.getMemoryCacheStatistics();
+            var maxCacheSizeBytes = getMaxCacheSizeBytes();
+            cleanup = () -> HttpCacheCleanup.cleanupInBackgroundIfNeeded(
+                cacheDir.toPath(),
+                cacheDirStorage,
+                maxCacheSizeBytes
+            );
+            storage = memoryCacheStatistics != null
+                ? new MemoryCachedHttpCacheStorage(cacheDirStorage)
+                : cacheDirStorage;
+
+        } else {
+            resourceFactory = GzippedHeapResourceFactory.INSTANCE;
+            storage = new GzippingHttpCacheStorage(new BasicHttpCacheStorage(getCacheConfig()));
+        }
+
+        var isOfflineOnly = getParameters().getOnlyIfCached().getOrElse(false);
+        if (isOfflineOnly) {
+            storage = new OfflineOnlyHttpCacheStorage(storage);
+        }
+
+        return new CacheStorage(storage, resourceFactory, memoryCacheStatistics, cleanup);
+    }
+
+    private long getMaxCacheSizeBytes() {
+        return getParameters().getMaxCacheSizeMb().getOrElse(0L) * 1024 * 1024;
+    }
+
+    @Value
+    private static class CacheStorage {
+        HttpCacheStorage storage;
+        ResourceFactory resourceFactory;
+        @Nullable MemoryCacheStatistics memoryCacheStatistics;
+        Runnable cleanup;
+    }
+
+    /**
+     * Returns {@code null} if the in-memory tier of the HTTP cache is disabled.
+     */
+    @Nullable
+    public MemoryCacheStatistics getMemoryCacheStatistics() {
+        return getClassicClient().getMemoryCacheStatistics();
+    }
+
 
+    @Nullable
+    private transient volatile ClassicHttpClient classicClient;
+
+    @Nullable
+    private transient DaemonScopedHttpClients.Lease classicClientLease;
+
+    private ClassicHttpClient getClassicClient() {
+        if (classicClient == null) {
+            synchronized (this) {
+                if (classicClient == null) {
+                    ClassicHttpClient client;
+                    if (getParameters().getDaemonScopedClient().getOrElse(false)) {
+                        var lease = DaemonScopedHttpClients.acquire(
+                            getDaemonScopedClientKey(),
+                            getParameters().getDaemonScopedClientIdleTimeout().get(),
+                            this::createClassicClient
+                        );
+                        classicClientLease = lease;
+                        client = lease.getClient();
                     } else {
-                        builder.setResourceFactory(GzippedHeapResourceFactory.INSTANCE);
-                        cacheStorage = new BasicHttpCacheStorage(cacheConfig);
+                        client = createClassicClient();
                     }
-                    var isOfflineOnly = getParameters().getOnlyIfCached().getOrElse(false);
-                    if (isOfflineOnly) {
-                        cacheStorage = new OfflineOnlyHttpCacheStorage(cacheStorage);
-                    }
-                    builder.setHttpCacheStorage(cacheStorage);
+                    // a daemon-scoped client can live for days, so the cleanup is started by every build:
+                    client.getCacheCleanup().run();
+                    classicClient = client;
+                }
+            }
+        }
+
+        return requireNonNull(classicClient);
+    }
+
+    public HttpClient getClient() {
+        return getClassicClient().getClient();
+    }
+
+    /**
+     * Daemon-scoped clients are shared only by services with the same class loader and the same parameters,
+     * including all cache parameters, as the client owns its cache storage.
+     */
+    private Object getDaemonScopedClientKey() {
+        var params = getParameters();
+        return Arrays.asList(
+            SERVICE_NAME,
+            params.getCacheDir().getAsFile().map(File::getAbsolutePath).getOrNull(),
+            params.getOnlyIfCached().getOrNull(),
+            params.getMaxCacheObjectSizeMb().getOrNull(),
+            params.getSegmentedCacheStorage().getOrNull(),
+            params.getMaxCacheSizeMb().getOrNull(),
+            params.getMemoryCacheSizeMb().getOrNull(),
+            params.getRevalidationWorkers().getOrNull(),
+            params.getMaxConnectionsPerHost().getOrNull(),
+            params.getMaxConnectionsTotal().getOrNull(),
+            params.getConnectionKeepAlive().getOrNull(),
+            params.getConnectionIdleEviction().getOrNull(),
+            params.getConnectionValidateAfterInactivity().getOrNull(),
+            params.getMaxRetries().getOrNull(),
+            params.getRetryInitialInterval().getOrNull(),
+            params.getMaxRetryInterval().getOrNull()
+        );
+    }
+
+    /**
+     * The created client must not reference this service, as it can outlive it.
+     */
+    private ClassicHttpClient createClassicClient() {
+        var cacheStorage = createCacheStorage();
+
+        var dnsResolver = new CachingDnsResolver();
+        var connectionStatistics = new ConnectionReuseStatistics();
+        // the same route planner as the builder creates for system properties, but available for warm-ups:
+        var routePlanner = new SystemDefaultRoutePlanner(
+            DefaultSchemePortResolver.INSTANCE,
+            ProxySelector.getDefault()
+        );
+
+        var builder = CachingHttpClients.custom();
+        builder.useSystemProperties();
+        builder.disableCookieManagement();
+        builder.setUserAgent(PLUGIN_ID);
+
+        var maxConnectionsPerHost = getParameters().getMaxConnectionsPerHost().get();
+        var connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setDefaultConnectionConfig(createConnectionConfig())
+            .setMaxConnTotal(Math.max(
+                getParameters().getMaxConnectionsTotal().get(),
+                maxConnectionsPerHost
+            ))
+            .setMaxConnPerRoute(maxConnectionsPerHost)
+            .setDnsResolver(dnsResolver)
+            .build();
+        builder.setConnectionManager(connectionManager);
+        builder.setRoutePlanner(routePlanner);
+
+        var maxKeepAlive = TimeValue.of(getParameters().getConnectionKeepAlive().get());
+        builder.setKeepAliveStrategy((response, context) -> getKeepAliveDuration(response, context, maxKeepAlive));
+        builder.evictExpiredConnections();
+        builder.evictIdleConnections(TimeValue.of(getParameters().getConnectionIdleEviction().get()));
+
+        builder.setDefaultRequestConfig(createRequestConfig());
+
+        builder.setRetryStrategy(createRetryStrategy());
+
+        builder.setContentDecoderRegistry(createContentDecoders());
+
+        builder.setCacheConfig(getCacheConfig());
+        builder.setResourceFactory(cacheStorage.getResourceFactory());
+        builder.setHttpCacheStorage(cacheStorage.getStorage());
+
+        builder.addResponseInterceptorFirst(EtagHidesExpiration.INSTANCE);
+        builder.addResponseInterceptorFirst(ForceCache.INSTANCE);
+        builder.addResponseInterceptorLast(NegativeCache.INSTANCE);
+        builder.addResponseInterceptorLast(StaleWhileRevalidate.INSTANCE);
+        builder.addResponseInterceptorLast(connectionStatistics);
+        builder.addRequestInterceptorLast(HostRateLimiterFeedback.INSTANCE);
+        builder.addRequestInterceptorLast(LoadDeadlineTracker.INSTANCE);
+        builder.addResponseInterceptorLast(HostRateLimiterFeedback.INSTANCE);
+
+        return ClassicHttpClient.builder()
+            .client(builder.build())
+            .connectionManager(connectionManager)
+            .dnsResolver(dnsResolver)
+            .routePlanner(routePlanner)
+            .connectionStatistics(connectionStatistics)
+            .cacheStorage(cacheStorage.getStorage())
+            .resourceFactory(cacheStorage.getResourceFactory())
+            .memoryCacheStatistics(cacheStorage.getMemoryCacheStatistics())
+            .cacheCleanup(cacheStorage.getCleanup())
+            .build();
+    }
+
+
+    private final transient Set<HttpRoute> warmedUpRoutes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Resolves and connects to the hosts of the {@code uris} in the background,
+     * so the first requests to them find pooled connections.
+     *
+     * <p>Routes are determined by the client's route planner. Routes via a proxy are not warmed up,
+     * as the proxy resolves the target host, and a tunnel can only be established by a real request.
+     *
+     * <p>Every host is warmed up only once.
+     */
+    public void warmUp(Collection<URI> uris) {
+        if (getParameters().getOnlyIfCached().getOrElse(false)) {
+            return;
+        }
+
+        var currentClassicClient = getClassicClient();
+
+        for (var uri : uris) {
+            HttpRoute route;
+            try {
+                var target = RoutingSupport.normalize(HttpHost.create(uri), DefaultSchemePortResolver.INSTANCE);
+                route = currentClassicClient.getRoutePlanner().determineRoute(target, HttpClientContext.create());
+            } catch (Exception e) {
+                logger.debug("Can't warm up connection to {}", uri, e);
+                continue;
+            }
+
+            if (route.getProxyHost() != null) {
+                logger.debug("Not warming up connection via proxy: {}", route);
+                continue;
+            }
+
+            if (warmedUpRoutes.add(route)) {
+                Thread.startVirtualThread(() -> warmUp(currentClassicClient, route));
+            }
+        }
+    }
+
+    private void warmUp(ClassicHttpClient classicClient, HttpRoute route) {
+        try {
+            classicClient.getDnsResolver().resolve(route.getTargetHost().getHostName());
+
+            var connectionManager = classicClient.getConnectionManager();
+            var leaseRequest = connectionManager.lease(WARM_UP_LEASE_ID, route, WARM_UP_LEASE_TIMEOUT, null);
+            var endpoint = leaseRequest.get(WARM_UP_LEASE_TIMEOUT);
+            try {
+                if (!endpoint.isConnected()) {
+                    connectionManager.connect(endpoint, null, HttpClientContext.create());
+                }
+                connectionManager.release(endpoint, null, TimeValue.of(getParameters().getConnectionKeepAlive().get()));
+            } catch (Throwable e) {
+                connectionManager.release(endpoint, null, TimeValue.ZERO_MILLISECONDS);
+                throw e;
+            }
+
+        } catch (Throwable e) {
+            // the real request will report the failure
+            logger.debug("Can't warm up connection to {}", route, e);
+        }
+    }
+
+    private static final String WARM_UP_LEASE_ID = HttpClientService.class.getSimpleName() + "-warm-up";
+
+    private static final Timeout WARM_UP_LEASE_TIMEOUT = Timeout.ofSeconds(1);
+
+
+    @Nullable
+    private transient volatile CloseableHttpAsyncClient asyncClient;
+
+    /**
+     * Returns an HTTP/2-only async client. All requests to the same host are multiplexed over a single connection.
+     *
+     * <p>The client shares the cache storage with {@link #getClient()}.
+     */
+    public CloseableHttpAsyncClient getAsyncClient() {
+        if (asyncClient == null) {
+            synchronized (this) {
+                if (asyncClient == null) {
+                    var builder = CachingHttpAsyncClients.customHttp2();
+                    builder.useSystemProperties();
+                    builder.disableCookieManagement();
+                    builder.setUserAgent(PLUGIN_ID);
+
+                    builder.setDefaultConnectionConfig(createConnectionConfig());
+                    builder.setDnsResolver(getClassicClient().getDnsResolver());
+
+                    builder.setDefaultRequestConfig(createRequestConfig());
+
+                    builder.setRetryStrategy(createRetryStrategy());
+
+                    builder.setCacheConfig(getCacheConfig());
+                    builder.setResourceFactory(getClassicClient().getResourceFactory());
+                    builder.setHttpCacheStorage(getClassicClient().getCacheStorage());
 
                     builder.addResponseInterceptorFirst(EtagHidesExpiration.INSTANCE);
                     builder.addResponseInterceptorFirst(ForceCache.INSTANCE);
+                    builder.addResponseInterceptorLast(NegativeCache.INSTANCE);
+                    builder.addResponseInterceptorLast(StaleWhileRevalidate.INSTANCE);
+                    builder.addResponseInterceptorLast(getClassicClient().getConnectionStatistics());
+                    builder.addRequestInterceptorLast(HostRateLimiterFeedback.INSTANCE);
+                    builder.addRequestInterceptorLast(LoadDeadlineTracker.INSTANCE);
+                    builder.addResponseInterceptorLast(HostRateLimiterFeedback.INSTANCE);
 
-                    client = builder.build();
+                    var newAsyncClient = builder.build();
+                    newAsyncClient.start();
+                    asyncClient = newAsyncClient;
                 }
             }
         }
 
-        return requireNonNull(client);
+        return requireNonNull(asyncClient);
+    }
+
+
+    /**
+     * Content decoders in the order of preference. The keys are advertised in {@code Accept-Encoding} header.
+     *
+     * <p>Decoding is done by the client's content compression exec, which is executed before the caching exec.
+     * So, encoded bodies are stored in the cache as-is and are decoded lazily, while being read.
+     */
+    private static LinkedHashMap<String, InputStreamFactory> createContentDecoders() {
+        var decoders = new LinkedHashMap<String, InputStreamFactory>();
+        decoders.put("zstd", ZstdInputStreamFactory.INSTANCE);
+        decoders.put("br", BrotliInputStreamFactory.getInstance());
+        decoders.put("gzip", GZIPInputStreamFactory.getInstance());
+        decoders.put("x-gzip", GZIPInputStreamFactory.getInstance());
+        decoders.put("deflate", DeflateInputStreamFactory.getInstance());
+        return decoders;
+    }
+
+    private CustomHttpRequestRetryStrategy createRetryStrategy() {
+        return new CustomHttpRequestRetryStrategy(
+            getParameters().getMaxRetries().get(),
+            getParameters().getRetryInitialInterval().get(),
+            getParameters().getMaxRetryInterval().get()
+        );
+    }
+
+    private ConnectionConfig createConnectionConfig() {
+        return ConnectionConfig.custom()
+            .setConnectTimeout(Timeout.ofSeconds(10))
+            .setValidateAfterInactivity(TimeValue.of(getParameters().getConnectionValidateAfterInactivity().get()))
+            .build();
+    }
+
+    private static TimeValue getKeepAliveDuration(HttpResponse response, HttpContext context, TimeValue maxKeepAlive) {
+        var serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+        if (TimeValue.isPositive(serverKeepAlive) && serverKeepAlive.compareTo(maxKeepAlive) < 0) {
+            return serverKeepAlive;
+        }
+        return maxKeepAlive;
+    }
+
+    private static RequestConfig createRequestConfig() {
+        return RequestConfig.custom()
+            .setConnectionRequestTimeout(Timeout.ofSeconds(10))
+            .build();
+    }
+
+
+    @Override
+    public synchronized void close() {
+        var currentAsyncClient = asyncClient;
+        asyncClient = null;
+        if (currentAsyncClient != null) {
+            currentAsyncClient.close(CloseMode.GRACEFUL);
+        }
+
+        var currentClassicClient = classicClient;
+        classicClient = null;
+        if (currentClassicClient != null) {
+            logger.debug("HTTP connection statistics: {}", currentClassicClient.getConnectionStatistics());
+        }
+
+        var currentMemoryCacheStatistics = currentClassicClient != null
+            ? currentClassicClient.getMemoryCacheStatistics()
+            : null;
+        if (currentMemoryCacheStatistics != null) {
+            logger.debug("HTTP memory cache statistics: {}", currentMemoryCacheStatistics);
+        }
+
+        var currentClassicClientLease = classicClientLease;
+        classicClientLease = null;
+        if (currentClassicClientLease != null) {
+            currentClassicClientLease.close();
+        } else if (currentClassicClient != null) {
+            currentClassicClient.close();
+        }
     }
 
 }
@@ -2,8 +2,27 @@ package name.remal.gradle_plugins.load_content.http;
 
 public class HttpLoadException extends RuntimeException {
 
+    private final int statusCode;
+
     HttpLoadException(String message) {
+        this(message, 0);
+    }
+
+    HttpLoadException(String message, int statusCode) {
         super(message);
+        this.statusCode = statusCode;
+    }
+
+    HttpLoadException(String message, Throwable cause) {
+        super(message, cause);
+        this.statusCode = 0;
+    }
+
+    /**
+     * Returns the received HTTP status code, or {@code 0} if the load failed for another reason.
+     */
+    public int getStatusCode() {
+        return statusCode;
     }
 
 }
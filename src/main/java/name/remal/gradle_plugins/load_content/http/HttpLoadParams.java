@@ -5,6 +5,8 @@ import static java.lang.String.format;
 import static name.remal.gradle_plugins.toolkit.FileUtils.normalizeFile;
 import static name.remal.gradle_plugins.toolkit.ObjectUtils.unwrapProviders;
 import static org.apache.hc.client5.http.auth.StandardAuthScheme.BEARER;
+import static org.apache.hc.core5.http.HttpStatus.SC_GONE;
+import static org.apache.hc.core5.http.HttpStatus.SC_NOT_FOUND;
 
 import com.google.errorprone.annotations.OverridingMethodsMustInvokeSuper;
 import java.io.File;
@@ -13,6 +15,7 @@ import java.net.URL;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
@@ -29,6 +32,7 @@ import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
+import org.gradle.api.provider.SetProperty;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Nested;
@@ -127,11 +131,148 @@ public abstract class HttpLoadParams extends HasConfigurableValues {
     @org.gradle.api.tasks.Optional
     public abstract Property<Duration> getResponseTimeout();
 
+    /**
+     * The end-to-end timeout of the load: waiting for a host permit, connecting, retries, and reading the body.
+     * If it's exceeded, the load is cancelled, and {@link HttpLoadTimeoutException} is thrown.
+     *
+     * <p>If not set, {@link HttpLoader#getDefaultTimeout()} is used.
+     */
+    @Internal
+    @org.gradle.api.tasks.Optional
+    public abstract Property<Duration> getTimeout();
+
 
     @Internal
     @org.gradle.api.tasks.Optional
     public abstract Property<Duration> getForcedCacheDuration();
 
+    /**
+     * If set, responses with {@link #getNegativeCacheStatusCodes()} are cached for this time,
+     * so repeated loads of an absent resource don't hit the network.
+     * Such cached responses are used only by loads with the same negative cache settings.
+     *
+     * @see HttpLoader#loadIfExists(Action)
+     */
+    @Internal
+    @org.gradle.api.tasks.Optional
+    public abstract Property<Duration> getNegativeCacheDuration();
+
+    @Internal
+    public abstract SetProperty<Integer> getNegativeCacheStatusCodes();
+
+    {
+        getNegativeCacheStatusCodes().convention(List.of(SC_NOT_FOUND, SC_GONE));
+    }
+
+    /**
+     * If set, a stale cached response is returned immediately for up to this time after it became stale,
+     * while the cache entry is revalidated in the background.
+     *
+     * <p>It's applied only if the server doesn't send {@code stale-while-revalidate} directive itself.
+     * Responses it's applied to are used from the cache only by loads with the same setting.
+     */
+    @Internal
+    @org.gradle.api.tasks.Optional
+    public abstract Property<Duration> getStaleWhileRevalidate();
+
+
+    /**
+     * Load via the async HTTP/2-only transport,
+     * which multiplexes all requests to the same host over a single connection.
+     *
+     * <p>The target host must support HTTP/2 (via ALPN for {@code https} or prior knowledge for {@code http}).
+     */
+    @Internal
+    @org.gradle.api.tasks.Optional
+    public abstract Property<Boolean> getMultiplexedHttp2();
+
+
+    /**
+     * If set to a value greater than 1, and {@link #getBuildCacheFile()} is set,
+     * the resource is downloaded as this number of byte ranges in parallel,
+     * if the server supports range requests and the resource is large enough.
+     */
+    @Internal
+    @org.gradle.api.tasks.Optional
+    public abstract Property<Integer> getParallelSegments();
+
+
+    /**
+     * If enabled, and no response headers were received within the hedging delay,
+     * a second identical request is sent over another connection.
+     * The first successful response wins, and the other request is cancelled.
+     *
+     * <p>The hedged request needs its own per-host permit, so hedging can't overload the host.
+     */
+    @Internal
+    @org.gradle.api.tasks.Optional
+    public abstract Property<Boolean> getHedging();
+
+    {
+        getHedging().convention(false);
+    }
+
+    /**
+     * The hedging delay is this percentile (between 0 and 100) of the host's recent response latencies.
+     */
+    @Internal
+    @org.gradle.api.tasks.Optional
+    public abstract Property<Double> getHedgingDelayPercentile();
+
+    {
+        getHedgingDelayPercentile().convention(95.0);
+    }
+
+    /**
+     * The lower bound of the hedging delay.
+     * It's also used as the hedging delay until there are enough latency samples for the host.
+     */
+    @Internal
+    @org.gradle.api.tasks.Optional
+    public abstract Property<Duration> getHedgingMinDelay();
+
+    {
+        getHedgingMinDelay().convention(Duration.ofMillis(500));
+    }
+
+
+    /**
+     * For {@link HttpLoader#loadPages(Action)}: a JSON pointer to the next page URI in the page body.
+     * If not set, {@code Link} header with {@code rel="next"} is used.
+     */
+    @Internal
+    @org.gradle.api.tasks.Optional
+    public abstract Property<String> getNextPageJsonPointer();
+
+    /**
+     * For {@link HttpLoader#loadPages(Action)}: a JSON pointer to the items array in the page body.
+     * If not set, the page body itself is expected to be an array of items.
+     */
+    @Internal
+    @org.gradle.api.tasks.Optional
+    public abstract Property<String> getPageItemsJsonPointer();
+
+    /**
+     * For {@link HttpLoader#loadPages(Action)}: the load fails if there are more pages than this number.
+     */
+    @Internal
+    public abstract Property<Integer> getMaxPages();
+
+    {
+        getMaxPages().convention(1_000);
+    }
+
+    /**
+     * For {@link HttpLoader#loadPages(Action)}: if the next page URI is known before the current page is parsed,
+     * the next page is loaded in the background.
+     */
+    @Internal
+    public abstract Property<Boolean> getPrefetchNextPage();
+
+    {
+        getPrefetchNextPage().convention(true);
+    }
+
 
     @Internal
     @org.gradle.api.tasks.Optional
@@ -167,7 +308,20 @@ public abstract class HttpLoadParams extends HasConfigurableValues {
             getTokenType(),
             getHeaders(),
             getResponseTimeout(),
+            getTimeout(),
             getForcedCacheDuration(),
+            getNegativeCacheDuration(),
+            getNegativeCacheStatusCodes(),
+            getStaleWhileRevalidate(),
+            getMultiplexedHttp2(),
+            getParallelSegments(),
+            getHedging(),
+            getHedgingDelayPercentile(),
+            getHedgingMinDelay(),
+            getNextPageJsonPointer(),
+            getPageItemsJsonPointer(),
+            getMaxPages(),
+            getPrefetchNextPage(),
             getBuildCacheFile(),
             getBuildCacheMetadataFile()
         );
@@ -208,10 +362,73 @@ public abstract class HttpLoadParams extends HasConfigurableValues {
             getTokenType().get();
         }
 
+        // ranges:
+        validateNotNegative(getTimeout(), "Timeout");
+        validateNotNegative(getNegativeCacheDuration(), "Negative cache duration");
+        validateNotNegative(getStaleWhileRevalidate(), "Stale-while-revalidate");
+        validateNotNegative(getHedgingMinDelay(), "Hedging min delay");
+
+        var hedgingDelayPercentile = getHedgingDelayPercentile().getOrNull();
+        if (hedgingDelayPercentile != null && !(hedgingDelayPercentile > 0 && hedgingDelayPercentile < 100)) {
+            throw new IllegalStateException("Hedging delay percentile must be greater than 0 and less than 100");
+        }
+
+        var parallelSegments = getParallelSegments().getOrNull();
+        if (parallelSegments != null && parallelSegments < 1) {
+            throw new IllegalStateException("Parallel segments must be greater than or equal to 1");
+        }
+
+        var maxPages = getMaxPages().getOrNull();
+        if (maxPages != null && maxPages <= 0) {
+            throw new IllegalStateException("Max pages must be greater than 0");
+        }
+
         // recursive validation:
         getHeaders().get().forEach(HttpHeader::validate);
     }
 
+    private static void validateNotNegative(Property<Duration> property, String name) {
+        var duration = property.getOrNull();
+        if (duration != null && duration.isNegative()) {
+            throw new IllegalStateException(name + " must not be negative");
+        }
+    }
+
+    /**
+     * Returns a copy with all values resolved, so it can be used without calculating the original providers.
+     */
+    protected HttpLoadParams snapshot() {
+        var snapshot = getObjects().newInstance(HttpLoadParams.class);
+        snapshot.getUri().set(getUri().getOrNull());
+        snapshot.getAuthorizationHeader().set(getAuthorizationHeader().getOrNull());
+        snapshot.getUsername().set(getUsername().getOrNull());
+        snapshot.getPassword().set(getPassword().getOrNull());
+        snapshot.getToken().set(getToken().getOrNull());
+        snapshot.getTokenType().set(getTokenType().getOrNull());
+        getHeaders().get().forEach(header -> snapshot.header(it -> {
+            it.getName().set(header.getName().getOrNull());
+            it.getValue().set(header.getValue().getOrNull());
+        }));
+        snapshot.getResponseTimeout().set(getResponseTimeout().getOrNull());
+        snapshot.getTimeout().set(getTimeout().getOrNull());
+        snapshot.getForcedCacheDuration().set(getForcedCacheDuration().getOrNull());
+        snapshot.getNegativeCacheDuration().set(getNegativeCacheDuration().getOrNull());
+        snapshot.getNegativeCacheStatusCodes().set(getNegativeCacheStatusCodes().getOrNull());
+        snapshot.getStaleWhileRevalidate().set(getStaleWhileRevalidate().getOrNull());
+        snapshot.getMultiplexedHttp2().set(getMultiplexedHttp2().getOrNull());
+        snapshot.getParallelSegments().set(getParallelSegments().getOrNull());
+        snapshot.getHedging().set(getHedging().getOrNull());
+        snapshot.getHedgingDelayPercentile().set(getHedgingDelayPercentile().getOrNull());
+        snapshot.getHedgingMinDelay().set(getHedgingMinDelay().getOrNull());
+        snapshot.getNextPageJsonPointer().set(getNextPageJsonPointer().getOrNull());
+        snapshot.getPageItemsJsonPointer().set(getPageItemsJsonPointer().getOrNull());
+        snapshot.getMaxPages().set(getMaxPages().getOrNull());
+        snapshot.getPrefetchNextPage().set(getPrefetchNextPage().getOrNull());
+        snapshot.getBuildCacheFile().set(getBuildCacheFile().getAsFile().getOrNull());
+        snapshot.getBuildCacheMetadataFile().set(getBuildCacheMetadataFile().getAsFile().getOrNull());
+        return snapshot;
+    }
+
     protected Map<String, @Nullable Object> toMap() {
         var map = new LinkedHashMap<String, @Nullable Object>();
         map.put("uri", getUriNormalized());
@@ -0,0 +1,12 @@
+package name.remal.gradle_plugins.load_content.http;
+
+/**
+ * Thrown if a load isn't completed within {@link HttpLoadParams#getTimeout()}.
+ */
+public class HttpLoadTimeoutException extends HttpLoadException {
+
+    HttpLoadTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
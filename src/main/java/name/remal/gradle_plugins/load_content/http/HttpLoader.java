@@ -1,47 +1,103 @@
 package name.remal.gradle_plugins.load_content.http;
 
+import static java.lang.String.format;
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.nio.file.Files.copy;
+import static java.nio.file.Files.deleteIfExists;
 import static java.nio.file.Files.exists;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.Files.size;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.function.Predicate.not;
+import static name.remal.gradle_plugins.load_content.http.CachePolicyVariant.setCachePolicy;
 import static name.remal.gradle_plugins.load_content.http.ForceCache.FORCE_CACHE_CTX_ATTR;
+import static name.remal.gradle_plugins.load_content.http.HostRateLimiterFeedback.HOST_RATE_LIMITER_CTX_ATTR;
 import static name.remal.gradle_plugins.load_content.http.HttpClientService.getHttpClientServiceProvider;
+import static name.remal.gradle_plugins.load_content.http.LoadDeadlineTracker.LOAD_DEADLINE_CTX_ATTR;
 import static name.remal.gradle_plugins.load_content.internal.ContentBuildCache.getContentBuildCacheFor;
+import static name.remal.gradle_plugins.load_content.internal.ContentPrefetcher.getContentPrefetcherFor;
 import static name.remal.gradle_plugins.load_content.internal.HostRateLimiter.getHostRateLimiterFor;
 import static name.remal.gradle_plugins.load_content.internal.LockUtils.getLockFilePath;
 import static name.remal.gradle_plugins.toolkit.PathUtils.createParentDirectories;
 import static name.remal.gradle_plugins.toolkit.PathUtils.withShortExclusiveLock;
+import static name.remal.gradle_plugins.toolkit.PropertiesUtils.loadProperties;
 import static name.remal.gradle_plugins.toolkit.PropertiesUtils.storeProperties;
 import static name.remal.gradle_plugins.toolkit.ProxyUtils.toDynamicInterface;
 import static name.remal.gradle_plugins.toolkit.SneakyThrowUtils.sneakyThrowsPredicate;
+import static org.apache.hc.core5.http.HttpHeaders.ACCEPT_ENCODING;
 import static org.apache.hc.core5.http.HttpHeaders.CACHE_CONTROL;
+import static org.apache.hc.core5.http.HttpHeaders.CONTENT_ENCODING;
+import static org.apache.hc.core5.http.HttpHeaders.CONTENT_RANGE;
+import static org.apache.hc.core5.http.HttpHeaders.ETAG;
+import static org.apache.hc.core5.http.HttpHeaders.IF_RANGE;
+import static org.apache.hc.core5.http.HttpHeaders.RANGE;
+import static org.apache.hc.core5.http.HttpStatus.SC_GATEWAY_TIMEOUT;
+import static org.apache.hc.core5.http.HttpStatus.SC_PARTIAL_CONTENT;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.Serializable;
+import java.net.SocketException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import javax.inject.Inject;
 import lombok.SneakyThrows;
+import lombok.Value;
+import name.remal.gradle_plugins.load_content.http.LoadDeadline.Phase;
+import name.remal.gradle_plugins.load_content.internal.ContentBuildCache;
+import name.remal.gradle_plugins.load_content.internal.ContentPrefetcher;
 import name.remal.gradle_plugins.load_content.internal.FileContent;
 import name.remal.gradle_plugins.load_content.internal.HostRateLimiter;
+import name.remal.gradle_plugins.load_content.internal.HostUnavailableException;
 import name.remal.gradle_plugins.load_content.internal.StreamingContent;
 import name.remal.gradle_plugins.load_content.old.content.Content;
 import name.remal.gradle_plugins.toolkit.PathUtils;
 import name.remal.gradle_plugins.toolkit.PropertiesUtils;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
 import org.apache.hc.client5.http.auth.UsernamePasswordCredentials;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.auth.BasicScheme;
+import org.apache.hc.client5.http.impl.cache.CacheKeyGenerator;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.ConnectionClosedException;
 import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpResponse;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.net.URIBuilder;
 import org.apache.hc.core5.util.Timeout;
@@ -52,6 +108,7 @@ import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
 import org.gradle.api.tasks.Internal;
+import org.jetbrains.annotations.VisibleForTesting;
 import org.jspecify.annotations.Nullable;
 
 @SuppressWarnings("try")
@@ -59,9 +116,12 @@ public abstract class HttpLoader implements Serializable {
 
     public static final Duration DEFAULT_RESPONSE_TIMEOUT = Duration.ofMinutes(1);
 
+    public static final int DEFAULT_MAX_PARALLEL_LOADS = 32;
+
 
     private final transient HostRateLimiter hostRateLimiter = getHostRateLimiterFor(getGradle());
     private final transient ContentBuildCache contentBuildCache = getContentBuildCacheFor(getGradle());
+    private final transient ContentPrefetcher contentPrefetcher = getContentPrefetcherFor(getGradle());
 
     private final transient Provider<HttpClientService> httpClientServiceProvider =
         getHttpClientServiceProvider(getGradle());
@@ -75,11 +135,69 @@ public abstract class HttpLoader implements Serializable {
         getDefaultResponseTimeout().convention(DEFAULT_RESPONSE_TIMEOUT);
     }
 
+    /**
+     * The default of {@link HttpLoadParams#getTimeout()}. There is no end-to-end timeout if it's not set.
+     */
+    @Internal
+    @org.gradle.api.tasks.Optional
+    public abstract Property<Duration> getDefaultTimeout();
+
+    @Internal
+    @org.gradle.api.tasks.Optional
+    public abstract Property<Boolean> getDefaultMultiplexedHttp2();
+
+    {
+        getDefaultMultiplexedHttp2().convention(false);
+    }
+
+    /**
+     * If enabled, loads are registered when their providers are created,
+     * and all of them are started in parallel in the background after all projects are evaluated.
+     * Querying a provider later waits for the in-flight load.
+     *
+     * <p>This property and load params are read after all projects are evaluated, before the prefetch starts.
+     * Loads created after that are not prefetched.
+     *
+     * <p>A failed prefetch is ignored, and the content is loaded again when the provider is queried.
+     */
+    @Internal
+    public abstract Property<Boolean> getPrefetch();
+
+    {
+        getPrefetch().convention(false);
+    }
+
+    /**
+     * If enabled, hosts of the loaded URIs are resolved and connected to in the background
+     * after all projects are evaluated, so the first requests find pooled connections.
+     *
+     * <p>This property is read after all projects are evaluated.
+     */
+    @Internal
+    public abstract Property<Boolean> getWarmUp();
+
+    {
+        getWarmUp().convention(false);
+    }
+
+    /**
+     * Max number of loads executed in parallel by {@link #loadAll(Map)}.
+     * Per-host limits of the host rate limiter are applied in addition.
+     */
+    @Internal
+    public abstract Property<Integer> getMaxParallelLoads();
+
+    {
+        getMaxParallelLoads().convention(DEFAULT_MAX_PARALLEL_LOADS);
+    }
+
 
     public Provider<Content> load(Action<? super HttpLoadParams> paramsConfigurer) {
         var params = getObjects().newInstance(HttpLoadParams.class);
         paramsConfigurer.execute(params);
 
+        registerPrefetch(params, snapshot -> load(snapshot, true));
+
         var provider = getObjects().property(Content.class);
         provider.value(getProviders().provider(() ->
             load(params)
@@ -88,16 +206,290 @@ public abstract class HttpLoader implements Serializable {
         return provider;
     }
 
+    private final transient List<RegisteredPrefetch> registeredPrefetches = new ArrayList<>();
+
+    private transient boolean isPrefetchStartRegistered;
+
+    private transient boolean isPrefetchStarted;
+
+    /**
+     * Loads are registered regardless of {@link #getPrefetch()} and {@link #getWarmUp()},
+     * as these properties are read when the prefetch starts.
+     */
+    private synchronized void registerPrefetch(HttpLoadParams params, Function<HttpLoadParams, ?> load) {
+        var gradle = getGradle();
+        if (isPrefetchStarted || gradle.getStartParameter().isOffline()) {
+            return;
+        }
+
+        if (!isPrefetchStartRegistered) {
+            if (isTaskGraphReady(gradle)) {
+                // all projects have already been evaluated, the prefetch would never start:
+                isPrefetchStarted = true;
+                return;
+            }
+
+            isPrefetchStartRegistered = true;
+            gradle.projectsEvaluated(__ -> startPrefetch());
+        }
+
+        registeredPrefetches.add(new RegisteredPrefetch(params, load));
+    }
+
+    private static boolean isTaskGraphReady(Gradle gradle) {
+        try {
+            gradle.getTaskGraph().getAllTasks();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    @VisibleForTesting
+    synchronized int getRegisteredPrefetchesCount() {
+        return registeredPrefetches.size();
+    }
+
+    /**
+     * Executed on the Gradle thread. Background loads get snapshots of the params,
+     * so user's providers are never calculated concurrently with the build.
+     */
+    @VisibleForTesting
+    void startPrefetch() {
+        List<RegisteredPrefetch> prefetches;
+        synchronized (this) {
+            isPrefetchStarted = true;
+            prefetches = List.copyOf(registeredPrefetches);
+            registeredPrefetches.clear();
+        }
+
+        var isWarmUp = getWarmUp().get();
+        var isPrefetch = getPrefetch().get();
+        if (!isWarmUp && !isPrefetch) {
+            return;
+        }
+
+        var uris = new LinkedHashSet<URI>();
+        var loads = new ArrayList<Callable<?>>();
+        for (var prefetch : prefetches) {
+            HttpLoadParams snapshot;
+            try {
+                snapshot = snapshot(prefetch.getParams());
+            } catch (Exception ignored) {
+                // the params can't be calculated yet, the error is reported when the content is loaded
+                continue;
+            }
+
+            if (isWarmUp) {
+                uris.add(snapshot.getUri().get());
+            }
+
+            if (isPrefetch) {
+                var load = prefetch.getLoad();
+                loads.add(() -> load.apply(snapshot));
+            }
+        }
+
+        if (uris.isEmpty() && loads.isEmpty()) {
+            return;
+        }
+
+        var httpClientService = httpClientServiceProvider.get();
+        if (!uris.isEmpty()) {
+            httpClientService.warmUp(uris);
+        }
+
+        loads.forEach(contentPrefetcher::register);
+        contentPrefetcher.start();
+    }
+
+    /**
+     * Returns finalized params with all values resolved, including the defaults of this loader.
+     */
+    private HttpLoadParams snapshot(HttpLoadParams params) {
+        var snapshot = params.snapshot();
+        snapshot.getResponseTimeout().set(params.getResponseTimeout().orElse(getDefaultResponseTimeout()).getOrNull());
+        snapshot.getTimeout().set(params.getTimeout().orElse(getDefaultTimeout()).getOrNull());
+        snapshot.getMultiplexedHttp2().set(
+            params.getMultiplexedHttp2().orElse(getDefaultMultiplexedHttp2()).getOrNull()
+        );
+        snapshot.finalizeValue();
+        snapshot.validate();
+        return snapshot;
+    }
+
+    @Value
+    private static class RegisteredPrefetch {
+        HttpLoadParams params;
+        Function<HttpLoadParams, ?> load;
+    }
+
+    /**
+     * Loads multiple resources in parallel.
+     * The returned map has the same keys as {@code paramsConfigurers}, in the same order.
+     *
+     * <p>All loads are started when the provider is queried for the first time.
+     * Identical params are loaded only once.
+     *
+     * @see #getMaxParallelLoads()
+     */
+    public Provider<Map<String, Content>> loadAll(
+        Map<String, ? extends Action<? super HttpLoadParams>> paramsConfigurers
+    ) {
+        var paramsByKey = new LinkedHashMap<String, HttpLoadParams>();
+        paramsConfigurers.forEach((key, paramsConfigurer) -> {
+            var params = getObjects().newInstance(HttpLoadParams.class);
+            paramsConfigurer.execute(params);
+            paramsByKey.put(key, params);
+        });
+
+        var provider = getObjects().mapProperty(String.class, Content.class);
+        provider.value(getProviders().provider(() ->
+            loadAll(paramsByKey)
+        ));
+        provider.finalizeValueOnRead();
+        return provider;
+    }
+
+    @SneakyThrows
+    private Map<String, Content> loadAll(Map<String, HttpLoadParams> paramsByKey) {
+        var result = new LinkedHashMap<String, Content>();
+        if (paramsByKey.isEmpty()) {
+            return result;
+        }
+
+        var threads = Math.clamp(paramsByKey.size(), 1, Math.max(getMaxParallelLoads().get(), 1));
+        var threadFactory = Thread.ofVirtual().name(HttpLoader.class.getSimpleName() + "-loadAll-", 0).factory();
+        try (var executor = newFixedThreadPool(threads, threadFactory)) {
+            var futures = new LinkedHashMap<String, Future<Content>>();
+            paramsByKey.forEach((key, params) ->
+                futures.put(key, executor.submit(() -> load(params)))
+            );
+
+            try {
+                for (var entry : futures.entrySet()) {
+                    result.put(entry.getKey(), entry.getValue().get());
+                }
+            } catch (ExecutionException e) {
+                futures.values().forEach(future -> future.cancel(true));
+                throw requireNonNull(e.getCause());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Loads all pages of a paginated JSON resource, starting from {@link HttpLoadParams#getUri()},
+     * and merges their items into a single JSON array.
+     *
+     * <p>The next page URI is taken from {@code Link} header with {@code rel="next"},
+     * or from {@link HttpLoadParams#getNextPageJsonPointer()} if it's set.
+     * Every page is loaded via the HTTP cache, with a per-host permit.
+     *
+     * <p>{@link HttpLoadParams#getBuildCacheFile()} is not supported for paginated loads.
+     */
+    public Provider<Content> loadPages(Action<? super HttpLoadParams> paramsConfigurer) {
+        var params = getObjects().newInstance(HttpLoadParams.class);
+        paramsConfigurer.execute(params);
+
+        registerPrefetch(params, snapshot -> loadPages(snapshot, true));
+
+        var provider = getObjects().property(Content.class);
+        provider.value(getProviders().provider(() ->
+            loadPages(params)
+        ));
+        provider.finalizeValueOnRead();
+        return provider;
+    }
+
+    private Content loadPages(HttpLoadParams params) {
+        return loadPages(params, false);
+    }
+
+    @SneakyThrows
+    private Content loadPages(HttpLoadParams params, boolean isPrefetch) {
+        params.finalizeValue();
+        params.validate();
+
+        var key = getContentKey(params);
+        key.put("nextPageJsonPointer", params.getNextPageJsonPointer().getOrNull());
+        key.put("pageItemsJsonPointer", params.getPageItemsJsonPointer().getOrNull());
+        key.put("maxPages", params.getMaxPages().get());
+
+        var untypedContent = withDeadline(params, deadline ->
+            getOrLoadContent(key, isPrefetch, deadline, () -> new PaginatedContent(
+                params.getUriNormalized(),
+                pageUri -> requireNonNull(withPermit(pageUri, deadline, () ->
+                    loadImplCached(params, CacheKeyGenerator.normalize(pageUri), null, false, deadline)
+                )),
+                params.getNextPageJsonPointer().getOrNull(),
+                params.getPageItemsJsonPointer().getOrNull(),
+                params.getMaxPages().get(),
+                params.getPrefetchNextPage().get()
+            ))
+        );
+        var content = untypedContent instanceof Content typedContent
+            ? typedContent
+            : toDynamicInterface(untypedContent, Content.class);
+        return content;
+    }
+
+    /**
+     * The same as {@link #load(Action)}, but the returned provider has no value
+     * if the server responds with one of {@link HttpLoadParams#getNegativeCacheStatusCodes()}.
+     *
+     * <p>Use {@link HttpLoadParams#getNegativeCacheDuration()} to avoid a network round trip for absent resources.
+     */
+    public Provider<Content> loadIfExists(Action<? super HttpLoadParams> paramsConfigurer) {
+        var params = getObjects().newInstance(HttpLoadParams.class);
+        paramsConfigurer.execute(params);
+
+        registerPrefetch(params, snapshot -> loadIfExists(snapshot, true));
+
+        var provider = getObjects().property(Content.class);
+        provider.value(getProviders().provider(() ->
+            loadIfExists(params)
+        ));
+        provider.finalizeValueOnRead();
+        return provider;
+    }
+
+    @Nullable
+    private Content loadIfExists(HttpLoadParams params) {
+        return loadIfExists(params, false);
+    }
+
+    @Nullable
+    private Content loadIfExists(HttpLoadParams params, boolean isPrefetch) {
+        try {
+            return load(params, isPrefetch);
+        } catch (HttpLoadException e) {
+            if (params.getNegativeCacheStatusCodes().get().contains(e.getStatusCode())) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
     private Content load(HttpLoadParams params) {
+        return load(params, false);
+    }
+
+    private Content load(HttpLoadParams params, boolean isPrefetch) {
         params.finalizeValue();
         params.validate();
 
+        return withDeadline(params, deadline -> load(params, isPrefetch, deadline));
+    }
+
+    private Content load(HttpLoadParams params, boolean isPrefetch, LoadDeadline deadline) {
         final var buildCacheFilePath = params.getBuildCacheFile().getAsFile()
             .map(File::toPath)
             .map(PathUtils::normalizePath)
             .getOrNull();
         if (buildCacheFilePath == null) {
-            return loadImpl(params);
+            return loadImpl(params, isPrefetch, deadline);
         }
 
         final var buildCacheMetadataFilePath = params.getBuildCacheMetadataFile().getAsFile()
@@ -126,7 +518,7 @@ public abstract class HttpLoader implements Serializable {
             }
 
 
-            var loadedContent = loadImpl(params);
+            var loadedContent = loadResumable(params, buildCacheFilePath, deadline);
 
 
             if (buildCacheMetadataFilePath != null) {
@@ -139,38 +531,580 @@ public abstract class HttpLoader implements Serializable {
                 storeProperties(metadata, buildCacheMetadataFilePath);
             }
 
-            createParentDirectories(buildCacheFilePath);
-            try (var in = loadedContent.openInputStream()) {
-                copy(in, buildCacheFilePath);
+            return loadedContent;
+        }));
+    }
+
+    /**
+     * Loads the content into {@code targetFilePath}.
+     *
+     * <p>The body is streamed into a {@code .partial} file first. If the load fails mid-stream,
+     * the partial body is kept together with the response's strong ETag,
+     * and the next load continues from where it stopped using {@code Range} and {@code If-Range} headers.
+     */
+    @SneakyThrows
+    private FileContent loadResumable(HttpLoadParams params, Path targetFilePath, LoadDeadline deadline) {
+        var partialFilePath = targetFilePath.resolveSibling(targetFilePath.getFileName() + ".partial");
+        var partialMetadataFilePath = targetFilePath.resolveSibling(
+            targetFilePath.getFileName() + ".partial.properties"
+        );
+
+        @Nullable RangeRequest resumeFrom = null;
+        if (!getGradle().getStartParameter().isOffline()
+            && exists(partialFilePath)
+            && exists(partialMetadataFilePath)
+        ) {
+            var etag = Optional.ofNullable(loadProperties(partialMetadataFilePath).getProperty("etag"))
+                .map(String::trim)
+                .filter(not(String::isEmpty))
+                .orElse(null);
+            var offset = size(partialFilePath);
+            if (etag != null && offset > 0) {
+                resumeFrom = new RangeRequest(offset, null, etag);
             }
+        }
 
-            return new FileContent(
-                loadedContent.getSource(),
-                buildCacheFilePath,
-                loadedContent.getCharset()
+        if (resumeFrom == null) {
+            var segmentedContent = loadSegmented(
+                params,
+                targetFilePath,
+                partialFilePath,
+                partialMetadataFilePath,
+                deadline
             );
+            if (segmentedContent != null) {
+                return segmentedContent;
+            }
+        }
+
+        final var finalResumeFrom = resumeFrom;
+        return requireNonNull(withPermit(params.getUri().get(), deadline, () -> {
+            if (finalResumeFrom != null) {
+                try {
+                    return loadResumableImpl(
+                        params,
+                        targetFilePath,
+                        partialFilePath,
+                        partialMetadataFilePath,
+                        finalResumeFrom,
+                        deadline
+                    );
+                } catch (HttpLoadException e) {
+                    if (deadline.isExpired()) {
+                        // keep the partial file, so the next load can resume it
+                        throw e;
+                    }
+                    // the range can't be served, start from scratch
+                    deleteIfExists(partialFilePath);
+                    deleteIfExists(partialMetadataFilePath);
+                }
+            }
+
+            return loadResumableImpl(params, targetFilePath, partialFilePath, partialMetadataFilePath, null, deadline);
         }));
     }
 
     @SneakyThrows
-    private Content loadImpl(HttpLoadParams params) {
-        var untypedContent = contentBuildCache.getOrLoadContent(params.toMap(), () -> {
-            var contentRef = new AtomicReference<@Nullable StreamingContent>();
-            hostRateLimiter.withPermit(params.getUri().get(), () -> {
-                var content = loadImplCached(params);
-                contentRef.set(content);
-            });
-            return requireNonNull(contentRef.get());
+    private FileContent loadResumableImpl(
+        HttpLoadParams params,
+        Path targetFilePath,
+        Path partialFilePath,
+        Path partialMetadataFilePath,
+        @Nullable RangeRequest resumeFrom,
+        LoadDeadline deadline
+    ) {
+        try (var content = loadImplCached(params, resumeFrom, deadline)) {
+            var isResumed = false;
+            if (resumeFrom != null && content.getStatusCode() == SC_PARTIAL_CONTENT) {
+                isResumed = true;
+                var contentRangeStart = parseContentRangeStart(content.getHeader(CONTENT_RANGE));
+                if (contentRangeStart == null
+                    || contentRangeStart != resumeFrom.getStart()
+                    || isContentEncoded(content)
+                ) {
+                    deleteIfExists(partialFilePath);
+                    deleteIfExists(partialMetadataFilePath);
+                    throw new HttpLoadException(format(
+                        "Failed to resume loading %s : expected unencoded content range to start at %d,"
+                            + " but received: %s (Content-Encoding: %s)",
+                        content.getSource(),
+                        resumeFrom.getStart(),
+                        content.getHeader(CONTENT_RANGE),
+                        content.getHeader(CONTENT_ENCODING)
+                    ));
+                }
+
+            } else {
+                var etag = content.getHeader(ETAG);
+                if (etag != null && !etag.isEmpty() && !etag.startsWith("W/")) {
+                    var partialMetadata = new LinkedHashMap<String, @Nullable String>();
+                    partialMetadata.put("etag", etag);
+                    createParentDirectories(partialMetadataFilePath);
+                    storeProperties(partialMetadata, partialMetadataFilePath);
+                } else {
+                    deleteIfExists(partialMetadataFilePath);
+                }
+            }
+
+            createParentDirectories(partialFilePath);
+            try (
+                var in = content.getInputStream();
+                var out = isResumed
+                    ? newOutputStream(partialFilePath, CREATE, APPEND)
+                    : newOutputStream(partialFilePath)
+            ) {
+                in.transferTo(out);
+            } catch (Throwable e) {
+                if (!deadline.isExpired() && !isTransportFailure(e)) {
+                    // for example, a body decoding error, the partial file can't be trusted
+                    deleteIfExists(partialFilePath);
+                    deleteIfExists(partialMetadataFilePath);
+                }
+                throw e;
+            }
+
+            move(partialFilePath, targetFilePath, REPLACE_EXISTING);
+            deleteIfExists(partialMetadataFilePath);
+
+            return new FileContent(
+                content.getSource(),
+                targetFilePath,
+                content.getCharset()
+            );
+        }
+    }
+
+    /**
+     * A transport failure leaves a valid prefix of the body in the partial file, so the load can be resumed.
+     */
+    private static boolean isTransportFailure(Throwable exception) {
+        return exception instanceof SocketException
+            || exception instanceof InterruptedIOException
+            || exception instanceof ConnectionClosedException;
+    }
+
+    private static boolean isContentEncoded(StreamingContent content) {
+        var contentEncoding = content.getHeader(CONTENT_ENCODING);
+        return contentEncoding != null
+            && !contentEncoding.isBlank()
+            && !contentEncoding.trim().equalsIgnoreCase("identity");
+    }
+
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    /**
+     * Downloads the content as {@link HttpLoadParams#getParallelSegments()} byte ranges in parallel,
+     * writing each range in place into the partial file.
+     *
+     * <p>The server's range support and the total length are probed via {@code Range: bytes=0-0} request.
+     * All ranges are requested with the probe's strong ETag in {@code If-Range} header,
+     * so the segments can't come from different versions of the resource.
+     *
+     * @return {@code null} if segmented download is disabled or not supported for the resource
+     */
+    @Nullable
+    @SneakyThrows
+    @SuppressWarnings("java:S3776")
+    private FileContent loadSegmented(
+        HttpLoadParams params,
+        Path targetFilePath,
+        Path partialFilePath,
+        Path partialMetadataFilePath,
+        LoadDeadline deadline
+    ) {
+        var maxSegments = params.getParallelSegments().getOrElse(1);
+        if (maxSegments <= 1 || getGradle().getStartParameter().isOffline()) {
+            return null;
+        }
+
+        var uri = params.getUri().get();
+        var probe = withPermit(uri, deadline, () -> {
+            try (var content = loadImplCached(params, new RangeRequest(0, 0L, null), deadline)) {
+                if (content.getStatusCode() != SC_PARTIAL_CONTENT || isContentEncoded(content)) {
+                    return null;
+                }
+
+                var totalLength = parseContentRangeTotalLength(content.getHeader(CONTENT_RANGE));
+                if (totalLength == null) {
+                    return null;
+                }
+
+                var etag = Optional.ofNullable(content.getHeader(ETAG))
+                    .filter(not(String::isEmpty))
+                    .filter(it -> !it.startsWith("W/"))
+                    .orElse(null);
+                if (etag == null) {
+                    // without a strong validator, a change of the resource can't be detected between the segments
+                    return null;
+                }
+
+                return new SegmentedProbe(content.getSource(), content.getCharset(), totalLength, etag);
+            }
         });
+        if (probe == null) {
+            return null;
+        }
+
+        var totalLength = probe.getTotalLength();
+        var segments = (int) Math.min(maxSegments, totalLength / MIN_SEGMENT_SIZE);
+        if (segments <= 1) {
+            return null;
+        }
+
+        deleteIfExists(partialMetadataFilePath);
+        createParentDirectories(partialFilePath);
+        try (
+            var channel = FileChannel.open(partialFilePath, CREATE, WRITE, TRUNCATE_EXISTING);
+            var executor = newVirtualThreadPerTaskExecutor()
+        ) {
+            var segmentLength = totalLength / segments;
+            var futures = new ArrayList<Future<?>>(segments);
+            for (var segment = 0; segment < segments; segment++) {
+                var start = segment * segmentLength;
+                var end = segment == segments - 1 ? totalLength - 1 : start + segmentLength - 1;
+                var rangeRequest = new RangeRequest(start, end, probe.getEtag());
+                futures.add(executor.submit(() ->
+                    withPermit(uri, deadline, () -> {
+                        loadSegment(params, rangeRequest, channel, deadline);
+                        return null;
+                    })
+                ));
+            }
+
+            try {
+                for (var future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                futures.forEach(future -> future.cancel(true));
+                throw requireNonNull(e.getCause());
+            }
+
+        } catch (Throwable e) {
+            // a partially written segmented file has holes, so it can't be resumed
+            deleteIfExists(partialFilePath);
+            throw e;
+        }
+
+        move(partialFilePath, targetFilePath, REPLACE_EXISTING);
+
+        return new FileContent(
+            probe.getSource(),
+            targetFilePath,
+            probe.getCharset()
+        );
+    }
+
+    @SneakyThrows
+    private void loadSegment(
+        HttpLoadParams params,
+        RangeRequest rangeRequest,
+        FileChannel channel,
+        LoadDeadline deadline
+    ) {
+        var end = requireNonNull(rangeRequest.getEnd());
+        try (var content = loadImplCached(params, rangeRequest, deadline)) {
+            var contentRangeStart = parseContentRangeStart(content.getHeader(CONTENT_RANGE));
+            if (content.getStatusCode() != SC_PARTIAL_CONTENT
+                || contentRangeStart == null
+                || contentRangeStart != rangeRequest.getStart()
+                || isContentEncoded(content)
+            ) {
+                throw new HttpLoadException(format(
+                    "Failed to load %s : expected unencoded content range %d-%d,"
+                        + " but received status code %d: %s (Content-Encoding: %s)",
+                    content.getSource(),
+                    rangeRequest.getStart(),
+                    end,
+                    content.getStatusCode(),
+                    content.getHeader(CONTENT_RANGE),
+                    content.getHeader(CONTENT_ENCODING)
+                ));
+            }
+
+            var position = rangeRequest.getStart();
+            var buffer = new byte[64 * 1024];
+            try (var in = content.getInputStream()) {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    var byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                    while (byteBuffer.hasRemaining()) {
+                        position += channel.write(byteBuffer, position);
+                    }
+                }
+            }
+
+            if (position != end + 1) {
+                throw new HttpLoadException(format(
+                    "Failed to load %s : range %d-%d ended prematurely at %d",
+                    content.getSource(),
+                    rangeRequest.getStart(),
+                    end,
+                    position
+                ));
+            }
+        }
+    }
+
+    @Value
+    private static class SegmentedProbe {
+        String source;
+        @Nullable Charset charset;
+        long totalLength;
+        String etag;
+    }
+
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes\\s+(\\d+)-\\d+/(\\d+|\\*)");
+
+    @Nullable
+    private static Long parseContentRangeStart(@Nullable String contentRange) {
+        if (contentRange == null) {
+            return null;
+        }
+
+        var matcher = CONTENT_RANGE_PATTERN.matcher(contentRange.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+
+        return Long.parseLong(matcher.group(1));
+    }
+
+    @Nullable
+    private static Long parseContentRangeTotalLength(@Nullable String contentRange) {
+        if (contentRange == null) {
+            return null;
+        }
+
+        var matcher = CONTENT_RANGE_PATTERN.matcher(contentRange.trim());
+        if (!matcher.matches() || "*".equals(matcher.group(2))) {
+            return null;
+        }
+
+        return Long.parseLong(matcher.group(2));
+    }
+
+    @Value
+    private static class RangeRequest {
+        long start;
+        @Nullable Long end;
+        @Nullable String ifRange;
+    }
+
+    @SneakyThrows
+    private Content loadImpl(HttpLoadParams params, boolean isPrefetch, LoadDeadline deadline) {
+        var untypedContent = getOrLoadContent(
+            getContentKey(params),
+            isPrefetch,
+            deadline,
+            () -> loadWithPermit(params, deadline)
+        );
         var content = untypedContent instanceof Content typedContent
             ? typedContent
             : toDynamicInterface(untypedContent, Content.class);
         return content;
     }
 
+    /**
+     * Waits for a load of the same content by another caller not longer than the deadline allows.
+     */
+    @SneakyThrows
+    private Object getOrLoadContent(
+        Map<String, @Nullable Object> key,
+        boolean isPrefetch,
+        LoadDeadline deadline,
+        Callable<?> streamingContentLoader
+    ) {
+        try {
+            return contentBuildCache.getOrLoadContent(key, isPrefetch, deadline.getRemaining(), streamingContentLoader);
+        } catch (Throwable e) {
+            if (e instanceof TimeoutException) {
+                throw deadline.newTimeoutException(e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Loads with the same key share the materialized content,
+     * so the key includes all params that change the result of a load.
+     */
+    private Map<String, @Nullable Object> getContentKey(HttpLoadParams params) {
+        var key = params.toMap();
+        key.put("timeout", params.getTimeout().orElse(getDefaultTimeout()).getOrNull());
+        key.put("forcedCacheDuration", params.getForcedCacheDuration().getOrNull());
+        key.put("negativeCacheDuration", params.getNegativeCacheDuration().getOrNull());
+        key.put("negativeCacheStatusCodes", params.getNegativeCacheStatusCodes().get().stream().sorted().toList());
+        key.put("staleWhileRevalidate", params.getStaleWhileRevalidate().getOrNull());
+        key.put("hedging", params.getHedging().get());
+        key.put("hedgingDelayPercentile", params.getHedgingDelayPercentile().getOrNull());
+        key.put("hedgingMinDelay", params.getHedgingMinDelay().getOrNull());
+        return key;
+    }
+
+    /**
+     * If the host's circuit breaker is open, the content is loaded from the HTTP cache only.
+     */
+    private StreamingContent loadWithPermit(HttpLoadParams params, LoadDeadline deadline) {
+        try {
+            if (params.getHedging().get() && !getGradle().getStartParameter().isOffline()) {
+                return loadHedged(params, deadline);
+            }
+
+            return requireNonNull(withPermit(params.getUri().get(), deadline, () -> loadImplCached(params, deadline)));
+
+        } catch (HostUnavailableException e) {
+            try {
+                return loadImplCached(params, null, true, deadline);
+            } catch (HttpLoadException cacheMiss) {
+                if (cacheMiss.getStatusCode() != SC_GATEWAY_TIMEOUT) {
+                    // a cached error response, for example, a negatively cached 404
+                    throw cacheMiss;
+                }
+                e.addSuppressed(cacheMiss);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Sends a second identical request if the first one doesn't receive response headers within the hedging delay.
+     * The first successful response wins, and the other request is cancelled.
+     */
+    @SneakyThrows
+    private StreamingContent loadHedged(HttpLoadParams params, LoadDeadline deadline) {
+        var uri = params.getUri().get();
+        var winner = new AtomicReference<@Nullable StreamingContent>();
+        Callable<StreamingContent> attempt = () -> {
+            var content = requireNonNull(withPermit(uri, deadline, () -> loadImplCached(params, deadline)));
+            if (!winner.compareAndSet(null, content)) {
+                content.close();
+                throw new CancellationException("Another request has already won");
+            }
+            return content;
+        };
+
+        var executor = newVirtualThreadPerTaskExecutor();
+        try {
+            var completionService = new ExecutorCompletionService<StreamingContent>(executor);
+            var attempts = new ArrayList<Future<StreamingContent>>(2);
+            attempts.add(completionService.submit(attempt));
+
+            var completed = completionService.poll(getHedgingDelay(params).toNanos(), NANOSECONDS);
+            if (completed == null) {
+                attempts.add(completionService.submit(attempt));
+            }
+
+            @Nullable Throwable failure = null;
+            for (var remaining = attempts.size(); remaining > 0; remaining--) {
+                if (completed == null) {
+                    completed = completionService.take();
+                }
+
+                try {
+                    return completed.get();
+                } catch (ExecutionException e) {
+                    var cause = requireNonNull(e.getCause());
+                    if (failure == null) {
+                        failure = cause;
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                }
+                completed = null;
+            }
+
+            throw requireNonNull(failure);
+
+        } finally {
+            // the loser is cancelled, its permit is released as soon as it's interrupted
+            executor.shutdownNow();
+        }
+    }
+
+    private Duration getHedgingDelay(HttpLoadParams params) {
+        var minDelay = params.getHedgingMinDelay().get();
+        var percentile = hostRateLimiter.getLatencyPercentile(
+            params.getUri().get(),
+            params.getHedgingDelayPercentile().get()
+        );
+        if (percentile == null || percentile.compareTo(minDelay) < 0) {
+            return minDelay;
+        }
+        return percentile;
+    }
+
+    /**
+     * Executes the {@code load} within the {@link HttpLoadParams#getTimeout()} deadline.
+     * The deadline is closed after the load returns, so the returned content must not be read lazily.
+     */
+    @SneakyThrows
+    private <T> T withDeadline(HttpLoadParams params, Function<LoadDeadline, T> load) {
+        var timeout = params.getTimeout().orElse(getDefaultTimeout()).getOrNull();
+        try (var deadline = LoadDeadline.start(params.getUriNormalized(), timeout)) {
+            try {
+                return load.apply(deadline);
+            } catch (Throwable e) {
+                if (deadline.isExpired() && !(e instanceof HttpLoadTimeoutException)) {
+                    throw deadline.newTimeoutException(e);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Executes the {@code action} with a host permit, waiting for the permit not longer than the deadline allows.
+     */
+    @Nullable
+    @SneakyThrows
+    private <T> T withPermit(URI uri, LoadDeadline deadline, Callable<@Nullable T> action) {
+        deadline.enterPhase(Phase.PERMIT_WAIT);
+        try {
+            return hostRateLimiter.withPermit(uri, deadline.getRemaining(), action);
+        } catch (Throwable e) {
+            if (e instanceof TimeoutException) {
+                throw deadline.newTimeoutException(e);
+            }
+            throw e;
+        }
+    }
+
+    private StreamingContent loadImplCached(HttpLoadParams params, LoadDeadline deadline) {
+        return loadImplCached(params, null, deadline);
+    }
+
+    private StreamingContent loadImplCached(
+        HttpLoadParams params,
+        @Nullable RangeRequest rangeRequest,
+        LoadDeadline deadline
+    ) {
+        return loadImplCached(params, rangeRequest, false, deadline);
+    }
+
+    private StreamingContent loadImplCached(
+        HttpLoadParams params,
+        @Nullable RangeRequest rangeRequest,
+        boolean onlyIfCached,
+        LoadDeadline deadline
+    ) {
+        return loadImplCached(params, params.getUriNormalized(), rangeRequest, onlyIfCached, deadline);
+    }
+
+    /**
+     * @param uri overrides {@link HttpLoadParams#getUri()}, for example, with a next page URI
+     */
     @SneakyThrows
     @SuppressWarnings("java:S3776")
-    private StreamingContent loadImplCached(HttpLoadParams params) {
+    private StreamingContent loadImplCached(
+        HttpLoadParams params,
+        URI uri,
+        @Nullable RangeRequest rangeRequest,
+        boolean onlyIfCached,
+        LoadDeadline deadline
+    ) {
+        deadline.enterPhase(Phase.REQUEST);
+
         final var ctx = HttpClientContext.create();
 
         var forcedCacheDuration = params.getForcedCacheDuration().getOrNull();
@@ -178,11 +1112,23 @@ public abstract class HttpLoader implements Serializable {
             ctx.setAttribute(FORCE_CACHE_CTX_ATTR, forcedCacheDuration);
         }
 
+        ctx.setAttribute(HOST_RATE_LIMITER_CTX_ATTR, hostRateLimiter);
+        ctx.setAttribute(LOAD_DEADLINE_CTX_ATTR, deadline);
+
 
-        final var uri = params.getUriNormalized();
         final var host = HttpHost.create(uri);
         final var request = new HttpGet(uri);
 
+        var negativeCacheDuration = params.getNegativeCacheDuration().getOrNull();
+        setCachePolicy(
+            request,
+            ctx,
+            negativeCacheDuration != null
+                ? new NegativeCache.Policy(params.getNegativeCacheStatusCodes().get(), negativeCacheDuration)
+                : null,
+            params.getStaleWhileRevalidate().getOrNull()
+        );
+
 
         var username = params.getUsername().getOrNull();
         var token = params.getToken().getOrNull();
@@ -210,25 +1156,81 @@ public abstract class HttpLoader implements Serializable {
         var responseTimeout = params.getResponseTimeout().orElse(getDefaultResponseTimeout()).get();
         request.setConfig(RequestConfig.custom()
             .setResponseTimeout(Timeout.of(responseTimeout))
+            // byte ranges refer to the unencoded representation, so range responses must not be decoded:
+            .setContentCompressionEnabled(rangeRequest == null)
             .build()
         );
 
 
-        if (getGradle().getStartParameter().isOffline()) {
+        if (onlyIfCached || getGradle().getStartParameter().isOffline()) {
             request.addHeader(CACHE_CONTROL, "only-if-cached");
         }
 
 
+        if (rangeRequest != null) {
+            request.removeHeaders(ACCEPT_ENCODING);
+            request.addHeader(ACCEPT_ENCODING, "identity");
+            var rangeEnd = rangeRequest.getEnd();
+            request.addHeader(RANGE, "bytes=" + rangeRequest.getStart() + '-' + (rangeEnd != null ? rangeEnd : ""));
+            if (rangeRequest.getIfRange() != null) {
+                request.addHeader(IF_RANGE, rangeRequest.getIfRange());
+            }
+        }
+
+
+        var isMultiplexedHttp2 = params.getMultiplexedHttp2().orElse(getDefaultMultiplexedHttp2()).get();
+        if (isMultiplexedHttp2) {
+            var asyncRequestBuilder = SimpleRequestBuilder.get(uri);
+            for (var header : request.getHeaders()) {
+                asyncRequestBuilder.addHeader(header);
+            }
+            asyncRequestBuilder.setRequestConfig(request.getConfig());
+
+            var asyncClient = httpClientServiceProvider.get().getAsyncClient();
+            var responseConsumer = new StreamingAsyncResponseConsumer();
+            var exchangeFuture = asyncClient.execute(
+                SimpleRequestProducer.create(asyncRequestBuilder.build()),
+                responseConsumer,
+                null,
+                ctx,
+                responseConsumer.getFutureCallback()
+            );
+            // the exchange is completed when the body is received, so cancelling it aborts the body streaming
+            deadline.onExpired(() -> exchangeFuture.cancel(true));
+            var asyncResponse = responseConsumer.getResponse();
+            return toStreamingContent(
+                request.getMethod(),
+                uri,
+                asyncResponse.getHead(),
+                asyncResponse.getEntity(),
+                deadline,
+                () -> exchangeFuture.cancel(true)
+            );
+        }
+
+        // cancelling the request aborts its connection, including the body streaming
+        deadline.onExpired(request::cancel);
         var client = httpClientServiceProvider.get().getClient();
         var response = client.executeOpen(host, request, ctx);
-        var entity = response.getEntity();
+        return toStreamingContent(request.getMethod(), uri, response, response.getEntity(), deadline, response);
+    }
 
+    @SneakyThrows
+    private static StreamingContent toStreamingContent(
+        String method,
+        URI uri,
+        HttpResponse response,
+        HttpEntity entity,
+        LoadDeadline deadline,
+        Closeable responseCloser
+    ) {
+        var statusCode = response.getCode();
         var contentType = ContentType.parseLenient(entity.getContentType());
         var charset = Optional.ofNullable(contentType)
             .map(ContentType::getCharset)
             .orElse(null);
 
-        if (response.getCode() >= 400) {
+        if (statusCode >= 400) {
             try {
                 var isText = Optional.ofNullable(contentType)
                     .map(ContentType::getMimeType)
@@ -241,18 +1243,18 @@ public abstract class HttpLoader implements Serializable {
 
                 var message = new StringBuilder();
                 message
-                    .append("Failed to load ").append(request.getMethod()).append(' ').append(uri)
-                    .append(" : received status code ").append(response.getCode());
+                    .append("Failed to load ").append(method).append(' ').append(uri)
+                    .append(" : received status code ").append(statusCode);
                 if (isText) {
                     message.append(", response body:\n").append(EntityUtils.toString(entity, UTF_8));
                 } else {
                     message.append(", response body is not textual");
                 }
-                throw new HttpLoadException(message.toString());
+                throw new HttpLoadException(message.toString(), statusCode);
 
             } finally {
                 EntityUtils.consume(entity);
-                response.close();
+                responseCloser.close();
             }
         }
 
@@ -268,6 +1270,7 @@ public abstract class HttpLoader implements Serializable {
             @Override
             @SneakyThrows
             public InputStream getInputStream() {
+                deadline.enterPhase(Phase.BODY);
                 return entity.getContent();
             }
 
@@ -277,10 +1280,30 @@ public abstract class HttpLoader implements Serializable {
                 return charset;
             }
 
+            @Override
+            public int getStatusCode() {
+                return statusCode;
+            }
+
+            @Override
+            @Nullable
+            public String getHeader(String name) {
+                return Optional.ofNullable(response.getLastHeader(name))
+                    .map(Header::getValue)
+                    .orElse(null);
+            }
+
+            @Override
+            public List<String> getHeaders(String name) {
+                return Stream.of(response.getHeaders(name))
+                    .map(Header::getValue)
+                    .toList();
+            }
+
             @Override
             public void close() throws Exception {
                 EntityUtils.consume(entity);
-                response.close();
+                responseCloser.close();
             }
         };
     }
@@ -0,0 +1,198 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.lang.String.format;
+import static java.util.concurrent.CompletableFuture.delayedExecutor;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.joining;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import lombok.CustomLog;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The end-to-end deadline of a single load, covering permit waits, connecting, retries, and reading the body.
+ *
+ * <p>When the deadline passes, all in-flight requests registered via {@link #onExpired(Runnable)} are cancelled.
+ * The time spent in every {@link Phase} is tracked, so the timeout error tells where the time has gone.
+ */
+@CustomLog
+final class LoadDeadline implements AutoCloseable {
+
+    enum Phase {
+        PERMIT_WAIT("waiting for a host permit"),
+        REQUEST("connecting and waiting for the response"),
+        RETRY_DELAY("waiting before a retry"),
+        BODY("reading the response body"),
+        ;
+
+        private final String description;
+
+        Phase(String description) {
+            this.description = description;
+        }
+    }
+
+
+    /**
+     * The expiration is scheduled by the JDK's shared delayer, so no thread is owned by the plugin's classloader.
+     *
+     * @param timeout {@code null} means no deadline, only phases are tracked
+     */
+    public static LoadDeadline start(Object source, @Nullable Duration timeout) {
+        var deadline = new LoadDeadline(source, timeout);
+        if (timeout != null) {
+            deadline.scheduledExpiration = CompletableFuture.runAsync(
+                deadline::expire,
+                delayedExecutor(timeout.toNanos(), NANOSECONDS)
+            );
+        }
+        return deadline;
+    }
+
+
+    private final Object source;
+
+    @Nullable
+    private final Duration timeout;
+
+    private final long startNanos;
+
+    private final Map<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+
+    private final List<Runnable> cancellations = new ArrayList<>();
+
+    @Nullable
+    private Phase currentPhase;
+
+    private long currentPhaseStartNanos;
+
+    @Nullable
+    private Phase expiredPhase;
+
+    @Nullable
+    private CompletableFuture<Void> scheduledExpiration;
+
+    private LoadDeadline(Object source, @Nullable Duration timeout) {
+        this.source = source;
+        this.timeout = timeout;
+        this.startNanos = System.nanoTime();
+        this.currentPhaseStartNanos = startNanos;
+    }
+
+
+    /**
+     * Returns the time left till the deadline, or {@code null} if there is no deadline.
+     */
+    @Nullable
+    public Duration getRemaining() {
+        if (timeout == null) {
+            return null;
+        }
+
+        var remainingNanos = timeout.toNanos() - (System.nanoTime() - startNanos);
+        return Duration.ofNanos(Math.max(remainingNanos, 0));
+    }
+
+    public synchronized boolean isExpired() {
+        return expiredPhase != null;
+    }
+
+    /**
+     * Tracks the time from now on as spent in the {@code phase}.
+     */
+    public synchronized void enterPhase(Phase phase) {
+        if (expiredPhase != null || phase == currentPhase) {
+            return;
+        }
+
+        var now = System.nanoTime();
+        if (currentPhase != null) {
+            phaseNanos.merge(currentPhase, now - currentPhaseStartNanos, Long::sum);
+        }
+        currentPhase = phase;
+        currentPhaseStartNanos = now;
+    }
+
+    /**
+     * Registers a cancellation of an in-flight operation. It's executed immediately if the deadline has passed.
+     */
+    public void onExpired(Runnable cancellation) {
+        synchronized (this) {
+            if (expiredPhase == null) {
+                cancellations.add(cancellation);
+                return;
+            }
+        }
+
+        cancel(cancellation);
+    }
+
+    private void expire() {
+        List<Runnable> currentCancellations;
+        synchronized (this) {
+            if (expiredPhase != null) {
+                return;
+            }
+
+            var phase = currentPhase != null ? currentPhase : Phase.PERMIT_WAIT;
+            phaseNanos.merge(phase, System.nanoTime() - currentPhaseStartNanos, Long::sum);
+            expiredPhase = phase;
+
+            currentCancellations = List.copyOf(cancellations);
+            cancellations.clear();
+        }
+
+        currentCancellations.forEach(LoadDeadline::cancel);
+    }
+
+    private static void cancel(Runnable cancellation) {
+        try {
+            cancellation.run();
+        } catch (Throwable e) {
+            logger.debug(e.toString(), e);
+        }
+    }
+
+    /**
+     * Creates an exception that describes the phase in which the deadline has passed,
+     * and the time spent in every phase.
+     */
+    public synchronized HttpLoadTimeoutException newTimeoutException(Throwable cause) {
+        var phase = expiredPhase;
+        var spentNanos = new EnumMap<>(phaseNanos);
+        if (phase == null) {
+            phase = currentPhase != null ? currentPhase : Phase.PERMIT_WAIT;
+            spentNanos.merge(phase, System.nanoTime() - currentPhaseStartNanos, Long::sum);
+        }
+
+        var spent = spentNanos.entrySet().stream()
+            .map(entry -> entry.getKey().description + ": " + NANOSECONDS.toMillis(entry.getValue()) + "ms")
+            .collect(joining(", "));
+        return new HttpLoadTimeoutException(
+            format(
+                "Failed to load %s : the load didn't complete within %s, the timeout was exceeded while %s (%s)",
+                source,
+                timeout,
+                phase.description,
+                spent
+            ),
+            cause
+        );
+    }
+
+    @Override
+    public synchronized void close() {
+        var currentScheduledExpiration = scheduledExpiration;
+        scheduledExpiration = null;
+        if (currentScheduledExpiration != null) {
+            currentScheduledExpiration.cancel(false);
+        }
+        cancellations.clear();
+    }
+
+}
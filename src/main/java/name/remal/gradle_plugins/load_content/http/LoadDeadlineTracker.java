@@ -0,0 +1,28 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import name.remal.gradle_plugins.load_content.http.LoadDeadline.Phase;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpRequestInterceptor;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Switches the {@link LoadDeadline} stored in {@link #LOAD_DEADLINE_CTX_ATTR} to {@link Phase#REQUEST}
+ * for every network attempt, including retries.
+ */
+enum LoadDeadlineTracker implements HttpRequestInterceptor {
+
+    INSTANCE;
+
+
+    public static final String LOAD_DEADLINE_CTX_ATTR = LoadDeadlineTracker.class.getName();
+
+    @Override
+    public void process(HttpRequest request, @Nullable EntityDetails entity, @Nullable HttpContext context) {
+        if (context != null && context.getAttribute(LOAD_DEADLINE_CTX_ATTR) instanceof LoadDeadline deadline) {
+            deadline.enterPhase(Phase.REQUEST);
+        }
+    }
+
+}
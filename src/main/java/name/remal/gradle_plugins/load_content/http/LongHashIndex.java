@@ -0,0 +1,181 @@
+package name.remal.gradle_plugins.load_content.http;
+
+/**
+ * An open-addressing hash map from non-zero {@code long} keys to non-negative {@code long} values,
+ * stored in two primitive arrays without per-entry objects.
+ *
+ * <p>Collisions are resolved by linear probing, removal shifts the following entries back.
+ */
+final class LongHashIndex {
+
+    public static final long NO_VALUE = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final double MAX_LOAD_FACTOR = 0.6;
+
+
+    private long[] keys;
+
+    private long[] values;
+
+    private int size;
+
+    LongHashIndex() {
+        this(new long[MIN_CAPACITY], new long[MIN_CAPACITY], 0);
+    }
+
+    private LongHashIndex(long[] keys, long[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the value, or {@link #NO_VALUE} if there is no value for the key
+     */
+    public long get(long key) {
+        checkKey(key);
+        var mask = keys.length - 1;
+        for (var slot = slotOf(key, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * @return the previous value, or {@link #NO_VALUE} if there was no value for the key
+     */
+    public long put(long key, long value) {
+        checkKey(key);
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+
+        if (size + 1 > keys.length * MAX_LOAD_FACTOR) {
+            resize(keys.length * 2);
+        }
+
+        var mask = keys.length - 1;
+        var slot = slotOf(key, mask);
+        for (; keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                var previousValue = values[slot];
+                values[slot] = value;
+                return previousValue;
+            }
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return NO_VALUE;
+    }
+
+    /**
+     * @return the removed value, or {@link #NO_VALUE} if there was no value for the key
+     */
+    public long remove(long key) {
+        checkKey(key);
+        var mask = keys.length - 1;
+        var slot = slotOf(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == 0) {
+                return NO_VALUE;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        var removedValue = values[slot];
+        size--;
+
+        // shift back the following entries, which would become unreachable otherwise:
+        var emptySlot = slot;
+        for (var next = (slot + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            var home = slotOf(keys[next], mask);
+            var isReachableWithoutShift = emptySlot <= next
+                ? emptySlot < home && home <= next
+                : emptySlot < home || home <= next;
+            if (!isReachableWithoutShift) {
+                keys[emptySlot] = keys[next];
+                values[emptySlot] = values[next];
+                emptySlot = next;
+            }
+        }
+        keys[emptySlot] = 0;
+        values[emptySlot] = 0;
+
+        return removedValue;
+    }
+
+    public void clear() {
+        keys = new long[MIN_CAPACITY];
+        values = new long[MIN_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Returns an independent copy of this index.
+     */
+    public LongHashIndex copy() {
+        return new LongHashIndex(keys.clone(), values.clone(), size);
+    }
+
+    /**
+     * Returns all values, in no particular order.
+     */
+    public long[] values() {
+        var result = new long[size];
+        var index = 0;
+        for (var slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                result[index++] = values[slot];
+            }
+        }
+        return result;
+    }
+
+
+    private void resize(int capacity) {
+        var oldKeys = keys;
+        var oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+
+        var mask = capacity - 1;
+        for (var oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            var key = oldKeys[oldSlot];
+            if (key != 0) {
+                var slot = slotOf(key, mask);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[oldSlot];
+            }
+        }
+    }
+
+    private static int slotOf(long key, int mask) {
+        var hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static void checkKey(long key) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key must not be 0");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return LongHashIndex.class.getSimpleName() + "[size=" + size + ", capacity=" + keys.length + ']';
+    }
+
+}
@@ -0,0 +1,64 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts lookups in the in-memory tier of the HTTP cache.
+ */
+public class MemoryCacheStatistics {
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    void onHit() {
+        hits.incrementAndGet();
+    }
+
+    void onMiss() {
+        misses.incrementAndGet();
+    }
+
+    void onEviction() {
+        evictions.incrementAndGet();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns a value between 0 and 1, or 0 if there were no lookups.
+     */
+    public double getHitRatio() {
+        var currentHits = getHits();
+        var lookups = currentHits + getMisses();
+        if (lookups <= 0) {
+            return 0;
+        }
+
+        return (double) currentHits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "hits=%d, misses=%d, evictions=%d, hit ratio=%.2f",
+            getHits(),
+            getMisses(),
+            getEvictions(),
+            getHitRatio()
+        );
+    }
+
+}
@@ -0,0 +1,122 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheStorageEntry;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.http.MessageHeaders;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Serves entries from the {@link CacheDirHttpCacheStorage}'s in-memory tier,
+ * skipping file locks, reads, and deserialization.
+ *
+ * <p>Cached entries are shared between callers, the same way as {@link
+ * org.apache.hc.client5.http.impl.cache.BasicHttpCacheStorage} shares them.
+ * Bodies stored as separate files are not kept in memory.
+ */
+class MemoryCachedHttpCacheStorage implements HttpCacheStorage {
+
+    private static final long ENTRY_OVERHEAD_BYTES = 512;
+
+    private static final long HEADER_OVERHEAD_BYTES = 64;
+
+
+    private final CacheDirHttpCacheStorage delegate;
+
+    private final WTinyLfuCache<String, HttpCacheStorageEntry> memoryCache;
+
+    public MemoryCachedHttpCacheStorage(CacheDirHttpCacheStorage delegate) {
+        this.delegate = delegate;
+        this.memoryCache = requireNonNull(delegate.getMemoryCache(), "memory cache is disabled");
+    }
+
+    @Override
+    public void putEntry(String key, HttpCacheEntry entry) throws ResourceIOException {
+        delegate.putEntry(key, entry);
+    }
+
+    @Override
+    @Nullable
+    public HttpCacheEntry getEntry(String key) throws ResourceIOException {
+        var storageKey = delegate.digestToStorageKey(key);
+        var cached = memoryCache.get(storageKey);
+        if (cached != null && key.equals(cached.getKey())) {
+            if (!(cached.getContent().getResource() instanceof CacheDirResource resource)
+                || resource.getFile().exists()
+            ) {
+                return cached.getContent();
+            }
+
+            // the resource file was deleted by the cache cleanup
+            memoryCache.invalidate(storageKey);
+        }
+
+        var invalidationStamp = memoryCache.getInvalidationStamp();
+        var entry = delegate.getEntry(key);
+        if (entry != null) {
+            var storageEntry = new HttpCacheStorageEntry(key, entry);
+            memoryCache.put(storageKey, storageEntry, estimateWeight(entry), invalidationStamp);
+        }
+        return entry;
+    }
+
+    @Override
+    public void removeEntry(String key) throws ResourceIOException {
+        delegate.removeEntry(key);
+    }
+
+    @Override
+    public void updateEntry(
+        String key,
+        HttpCacheCASOperation casOperation
+    ) throws ResourceIOException, HttpCacheUpdateException {
+        delegate.updateEntry(key, casOperation);
+    }
+
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(Collection<String> keys) throws ResourceIOException {
+        var result = new LinkedHashMap<String, HttpCacheEntry>();
+        for (var key : keys) {
+            var entry = getEntry(key);
+            if (entry != null) {
+                result.put(key, entry);
+            }
+        }
+        return result;
+    }
+
+
+    private static long estimateWeight(HttpCacheEntry entry) {
+        var weight = ENTRY_OVERHEAD_BYTES;
+        weight += estimateWeight(entry.requestHeaders());
+        weight += estimateWeight(entry.responseHeaders());
+
+        var resource = entry.getResource();
+        if (resource != null && !(resource instanceof CacheDirResource)) {
+            weight += resource.length();
+        }
+
+        return weight;
+    }
+
+    private static long estimateWeight(MessageHeaders headers) {
+        var weight = 0L;
+        for (var header : headers.getHeaders()) {
+            weight += HEADER_OVERHEAD_BYTES + 2L * header.getName().length();
+            var value = header.getValue();
+            if (value != null) {
+                weight += 2L * value.length();
+            }
+        }
+        return weight;
+    }
+
+}
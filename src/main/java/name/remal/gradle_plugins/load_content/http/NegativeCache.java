@@ -0,0 +1,56 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static org.apache.hc.core5.http.HttpHeaders.CACHE_CONTROL;
+import static org.apache.hc.core5.http.HttpHeaders.EXPIRES;
+import static org.apache.hc.core5.http.HttpHeaders.PRAGMA;
+
+import java.time.Duration;
+import java.util.Set;
+import lombok.Value;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpResponseInterceptor;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Makes responses with {@link Policy#getStatusCodes()} cacheable for {@link Policy#getDuration()},
+ * so repeated loads of an absent resource are served from the HTTP cache.
+ *
+ * @see CachePolicyVariant
+ */
+enum NegativeCache implements HttpResponseInterceptor {
+
+    INSTANCE;
+
+
+    public static final String NEGATIVE_CACHE_CTX_ATTR = NegativeCache.class.getName();
+
+    @Value
+    static class Policy {
+        Set<Integer> statusCodes;
+        Duration duration;
+    }
+
+    @Override
+    public void process(HttpResponse response, @Nullable EntityDetails entity, @Nullable HttpContext context) {
+        if (context == null || !(context.getAttribute(NEGATIVE_CACHE_CTX_ATTR) instanceof Policy policy)) {
+            return;
+        }
+
+        if (!policy.getStatusCodes().contains(response.getCode())) {
+            return;
+        }
+
+        var durationSecs = policy.getDuration().toSeconds();
+        if (durationSecs > 0) {
+            response.removeHeaders(EXPIRES);
+            response.removeHeaders(PRAGMA);
+            response.removeHeaders(CACHE_CONTROL);
+
+            response.setHeader(CACHE_CONTROL, "max-age=" + durationSecs);
+            CachePolicyVariant.addVary(response);
+        }
+    }
+
+}
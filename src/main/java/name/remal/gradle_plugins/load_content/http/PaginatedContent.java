@@ -0,0 +1,292 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static java.util.Objects.requireNonNullElse;
+import static java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor;
+import static name.remal.gradle_plugins.load_content.internal.JsonUtils.JSON_MAPPER;
+import static org.apache.hc.core5.http.HttpHeaders.LINK;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import lombok.SneakyThrows;
+import name.remal.gradle_plugins.load_content.internal.StreamingContent;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.jspecify.annotations.Nullable;
+import tools.jackson.core.JsonPointer;
+import tools.jackson.databind.JsonNode;
+
+/**
+ * Items of all pages merged into a single JSON array.
+ *
+ * <p>Pages are loaded lazily, while the merged stream is being read.
+ * The next page URI is taken from {@code Link: <...>; rel="next"} header,
+ * or from the page body by a JSON pointer.
+ * If the next page URI is known before the current page's body is parsed,
+ * the next page is prefetched in the background.
+ */
+final class PaginatedContent implements StreamingContent {
+
+    @FunctionalInterface
+    interface PageLoader {
+        StreamingContent load(URI uri) throws Exception;
+    }
+
+
+    private final URI firstPageUri;
+
+    private final PageLoader pageLoader;
+
+    @Nullable
+    private final JsonPointer nextPageJsonPointer;
+
+    @Nullable
+    private final JsonPointer itemsJsonPointer;
+
+    private final int maxPages;
+
+    private final boolean prefetch;
+
+    private final ExecutorService executor = newVirtualThreadPerTaskExecutor();
+
+    @Nullable
+    private volatile Future<StreamingContent> prefetchedPage;
+
+    PaginatedContent(
+        URI firstPageUri,
+        PageLoader pageLoader,
+        @Nullable String nextPageJsonPointer,
+        @Nullable String itemsJsonPointer,
+        int maxPages,
+        boolean prefetch
+    ) {
+        this.firstPageUri = firstPageUri;
+        this.pageLoader = pageLoader;
+        this.nextPageJsonPointer = nextPageJsonPointer != null ? JsonPointer.compile(nextPageJsonPointer) : null;
+        this.itemsJsonPointer = itemsJsonPointer != null ? JsonPointer.compile(itemsJsonPointer) : null;
+        this.maxPages = maxPages;
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public String getSource() {
+        return firstPageUri.toString();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new SequenceInputStream(new PagesEnumeration());
+    }
+
+    @Override
+    public Charset getCharset() {
+        return UTF_8;
+    }
+
+    @Override
+    public int getStatusCode() {
+        return 200;
+    }
+
+    @Override
+    @Nullable
+    public String getHeader(String name) {
+        return null;
+    }
+
+    @Override
+    public void close() throws Exception {
+        var currentPrefetchedPage = prefetchedPage;
+        prefetchedPage = null;
+        if (currentPrefetchedPage != null && !currentPrefetchedPage.cancel(true)) {
+            try {
+                currentPrefetchedPage.get().close();
+            } catch (ExecutionException ignored) {
+                // the prefetch failed, there is nothing to close
+            }
+        }
+
+        executor.shutdownNow();
+    }
+
+
+    private class PagesEnumeration implements Enumeration<InputStream> {
+
+        @Nullable
+        private URI nextPageUri = firstPageUri;
+
+        private int loadedPages;
+
+        private boolean hasItems;
+
+        private boolean started;
+
+        private boolean finished;
+
+        @Override
+        public boolean hasMoreElements() {
+            return !finished;
+        }
+
+        @Override
+        @SneakyThrows
+        public InputStream nextElement() {
+            if (finished) {
+                throw new NoSuchElementException();
+            }
+
+            if (!started) {
+                started = true;
+                return new ByteArrayInputStream(new byte[]{'['});
+            }
+
+            var pageUri = nextPageUri;
+            if (pageUri == null) {
+                finished = true;
+                return new ByteArrayInputStream(new byte[]{']'});
+            }
+
+            if (loadedPages >= maxPages) {
+                throw new HttpLoadException(format(
+                    "Failed to load %s : there are more than %d pages",
+                    firstPageUri,
+                    maxPages
+                ));
+            }
+
+            loadedPages++;
+            return new ByteArrayInputStream(loadPage(pageUri));
+        }
+
+        @SneakyThrows
+        private byte[] loadPage(URI pageUri) {
+            var currentPrefetchedPage = prefetchedPage;
+            prefetchedPage = null;
+            StreamingContent page;
+            if (currentPrefetchedPage != null) {
+                try {
+                    page = currentPrefetchedPage.get();
+                } catch (ExecutionException e) {
+                    throw requireNonNull(e.getCause());
+                }
+            } else {
+                page = pageLoader.load(pageUri);
+            }
+
+            JsonNode pageNode;
+            try (page) {
+                nextPageUri = null;
+                if (nextPageJsonPointer == null) {
+                    // several Link headers are equivalent to a single comma-separated one:
+                    nextPageUri = parseNextLink(String.join(", ", page.getHeaders(LINK)), pageUri);
+                    prefetchPage(nextPageUri);
+                }
+
+                var charset = requireNonNullElse(page.getCharset(), UTF_8);
+                try (var reader = new InputStreamReader(page.getInputStream(), charset)) {
+                    pageNode = JSON_MAPPER.readTree(reader);
+                }
+            }
+
+            if (nextPageJsonPointer != null) {
+                var nextPageNode = pageNode.at(nextPageJsonPointer);
+                if (nextPageNode.isString() && !nextPageNode.asString().isEmpty()) {
+                    nextPageUri = pageUri.resolve(nextPageNode.asString());
+                    prefetchPage(nextPageUri);
+                }
+            }
+
+            var itemsNode = itemsJsonPointer != null ? pageNode.at(itemsJsonPointer) : pageNode;
+            var out = new ByteArrayOutputStream();
+            if (itemsNode.isArray()) {
+                for (var item : itemsNode) {
+                    writeItem(out, item);
+                }
+            } else if (!itemsNode.isMissingNode() && !itemsNode.isNull()) {
+                writeItem(out, itemsNode);
+            }
+            return out.toByteArray();
+        }
+
+        @SneakyThrows
+        private void writeItem(ByteArrayOutputStream out, JsonNode item) {
+            if (hasItems) {
+                out.write(',');
+            }
+            hasItems = true;
+            out.write(JSON_MAPPER.writeValueAsBytes(item));
+        }
+
+        private void prefetchPage(@Nullable URI uri) {
+            if (uri != null) {
+                checkSameOrigin(uri);
+            }
+
+            if (uri != null && prefetch && loadedPages < maxPages) {
+                prefetchedPage = executor.submit(() -> pageLoader.load(uri));
+            }
+        }
+
+    }
+
+
+    /**
+     * Credentials are sent with every page request, so pages must not leave the first page's origin.
+     */
+    private void checkSameOrigin(URI uri) {
+        if (!Objects.equals(uri.getScheme(), firstPageUri.getScheme())
+            || !Objects.equals(uri.getRawAuthority(), firstPageUri.getRawAuthority())
+        ) {
+            throw new HttpLoadException(format(
+                "Failed to load %s : the next page URI has a different origin: %s",
+                firstPageUri,
+                uri
+            ));
+        }
+    }
+
+
+    private static final Pattern LINK_PATTERN = Pattern.compile("<([^>]*)>((?:\\s*;\\s*[^;,]+)*)");
+    private static final Pattern REL_PATTERN = Pattern.compile(
+        "(?:^|;)\\s*rel\\s*=\\s*\"?([^\";]+)\"?",
+        Pattern.CASE_INSENSITIVE
+    );
+
+    @Nullable
+    @VisibleForTesting
+    static URI parseNextLink(@Nullable String linkHeader, URI baseUri) {
+        if (linkHeader == null) {
+            return null;
+        }
+
+        var linkMatcher = LINK_PATTERN.matcher(linkHeader);
+        while (linkMatcher.find()) {
+            var relMatcher = REL_PATTERN.matcher(linkMatcher.group(2));
+            while (relMatcher.find()) {
+                var rels = relMatcher.group(1).trim().toLowerCase(Locale.ROOT).split("\\s+");
+                for (var rel : rels) {
+                    if (rel.equals("next")) {
+                        return baseUri.resolve(linkMatcher.group(1).trim());
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,901 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.getLastModifiedTime;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newDirectoryStream;
+import static java.nio.file.Files.size;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.stream.Collectors.toSet;
+import static name.remal.gradle_plugins.load_content.http.CacheDirHttpCacheStorage.DEFAULT_SPOOL_THRESHOLD_BYTES;
+import static name.remal.gradle_plugins.load_content.http.CacheDirHttpCacheStorage.getRootDir;
+import static name.remal.gradle_plugins.load_content.http.CacheDirResourceFactory.RESOURCES_DIR_NAME;
+import static name.remal.gradle_plugins.toolkit.PathUtils.withShortExclusiveLock;
+import static org.apache.hc.client5.http.utils.Hex.encodeHexString;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+import lombok.Builder;
+import lombok.CustomLog;
+import lombok.SneakyThrows;
+import lombok.Value;
+import org.apache.hc.client5.http.cache.ResourceFactory;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.impl.cache.AbstractBinaryCacheStorage;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * An alternative to {@link CacheDirHttpCacheStorage} that packs all entries into a few memory-mapped
+ * append-only segment files, instead of keeping several files per entry.
+ *
+ * <p>Every store, CAS update, and delete appends a new record to the last segment.
+ * An in-memory hash index points to the latest record of every key.
+ * Large bodies are stored as separate files, the same way as by {@link CacheDirHttpCacheStorage}.
+ *
+ * <p>Writers are serialized between processes by a lock file. A record is published by writing its magic number
+ * last, and its checksum is verified when it's indexed. After every change, writers increment a generation counter
+ * in a small memory-mapped file. Readers don't take any lock: they look up an immutable snapshot of the segments
+ * and the index, which is rebuilt only when the generation has changed. Records appended by other processes
+ * are picked up by scanning the segments from the last seen position.
+ *
+ * <p>When superseded records take more than half of the segments,
+ * live records of a snapshot are copied to new segments in the background, without any lock.
+ * The copies are published, and the old segments are deleted, only if nothing was written since the snapshot.
+ * The first new segment is marked as compacted, so all segments before it are ignored.
+ */
+@CustomLog
+public class SegmentedLogHttpCacheStorage
+    extends AbstractBinaryCacheStorage<SegmentedLogHttpCacheStorage.CasValue>
+    implements CleanableHttpCacheStorage {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final int SEGMENT_MAGIC = 0x4C435347;
+    private static final int SEGMENT_FLAG_COMPACTED = 1;
+    private static final int SEGMENT_HEADER_SIZE = 16;
+
+    /*
+     * Record layout, records are aligned to 8 bytes:
+     *   int magic, int CRC32C of the rest of the record,
+     *   int key length, int value length (-1 for a tombstone), long version,
+     *   key bytes, value bytes
+     */
+    private static final int RECORD_MAGIC = 0x4C435243;
+    private static final int RECORD_HEADER_SIZE = 24;
+    private static final int RECORD_ALIGNMENT = 8;
+    private static final int TOMBSTONE = -1;
+
+    private static final int KEY_LENGTH = 32;
+
+    private static final long NO_LOCATION = LongHashIndex.NO_VALUE;
+
+    private static final Pattern SEGMENT_FILE_NAME_PATTERN = Pattern.compile("(\\d{10})\\.segment");
+
+    private static final VarHandle INT_VIEW = MethodHandles.byteBufferViewVarHandle(int[].class, BIG_ENDIAN);
+
+    private static final VarHandle LONG_VIEW = MethodHandles.byteBufferViewVarHandle(long[].class, BIG_ENDIAN);
+
+    private static final long NO_GENERATION = -1;
+
+    private static final int MAX_COMPACTION_ATTEMPTS = 3;
+
+    private static final Duration ABANDONED_TEMP_SEGMENT_AGE = Duration.ofHours(1);
+
+
+    private final Path rootDir;
+
+    private final Path segmentsDir;
+
+    private final Path lockPath;
+
+    private final Path generationPath;
+
+    private final int segmentSize;
+
+    private final CacheDirResourceFactory resourceFactory;
+
+    @Nullable
+    private volatile MappedByteBuffer generationBuffer;
+
+    private volatile Snapshot snapshot = new Snapshot(NO_GENERATION, Map.of(), new LongHashIndex());
+
+    private final AtomicBoolean isCompactionScheduled = new AtomicBoolean();
+
+    /*
+     * The state below is guarded by this.
+     */
+
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+    private final LongHashIndex index = new LongHashIndex();
+
+    private final IndexedSegments liveSegments = new IndexedSegments(segments, index);
+
+    private long refreshedGeneration = NO_GENERATION;
+
+    private int baseSegmentId;
+
+    private int scanSegmentId;
+
+    private int scanOffset;
+
+    private long usedBytes;
+
+    private long deadBytes;
+
+    public SegmentedLogHttpCacheStorage(Path cacheRootDir, int maxUpdateRetries) {
+        this(cacheRootDir, maxUpdateRetries, DEFAULT_SPOOL_THRESHOLD_BYTES, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param spoolThresholdBytes bodies of this size or larger are stored as separate files
+     *     and are not inlined into cache entries
+     * @param segmentSize the size of a segment file, larger records get a segment of their own
+     */
+    public SegmentedLogHttpCacheStorage(
+        Path cacheRootDir,
+        int maxUpdateRetries,
+        long spoolThresholdBytes,
+        int segmentSize
+    ) {
+        super(maxUpdateRetries, new CacheDirHttpCacheEntrySerializer(getRootDir(cacheRootDir)));
+        this.rootDir = getRootDir(cacheRootDir);
+        this.segmentsDir = rootDir.resolve("segments");
+        this.lockPath = segmentsDir.resolve("segments.lock");
+        this.generationPath = segmentsDir.resolve("segments.generation");
+        this.segmentSize = Math.max(segmentSize, SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE + KEY_LENGTH);
+        this.resourceFactory = new CacheDirResourceFactory(rootDir.resolve(RESOURCES_DIR_NAME), spoolThresholdBytes);
+    }
+
+    /**
+     * The resource factory that should be used by HTTP clients storing entries in this storage.
+     */
+    public ResourceFactory getResourceFactory() {
+        return resourceFactory;
+    }
+
+    @Override
+    @SneakyThrows
+    protected String digestToStorageKey(String key) {
+        var md = MessageDigest.getInstance("SHA-256");
+        var digest = md.digest(key.getBytes(UTF_8));
+        return encodeHexString(digest);
+    }
+
+    @Override
+    protected void store(String storageKey, byte[] storageObject) {
+        var key = decodeStorageKey(storageKey);
+        write(() -> {
+            var location = liveSegments.findLocation(key);
+            var version = location != NO_LOCATION ? liveSegments.getVersion(location) + 1 : 1;
+            append(key, version, storageObject);
+            return null;
+        });
+    }
+
+    @Override
+    protected byte @Nullable [] restore(String storageKey) {
+        var key = decodeStorageKey(storageKey);
+        var currentSnapshot = getSnapshot();
+        var location = currentSnapshot.findLocation(key);
+        return location != NO_LOCATION ? currentSnapshot.getValue(location) : null;
+    }
+
+    @Override
+    protected @Nullable CasValue getForUpdateCAS(String storageKey) {
+        var key = decodeStorageKey(storageKey);
+        var currentSnapshot = getSnapshot();
+        var location = currentSnapshot.findLocation(key);
+        if (location == NO_LOCATION) {
+            return null;
+        }
+
+        return CasValue.builder()
+            .version(currentSnapshot.getVersion(location))
+            .bytes(currentSnapshot.getValue(location))
+            .build();
+    }
+
+    @Override
+    protected byte @Nullable [] getStorageObject(@Nullable CasValue cas) {
+        return cas != null ? cas.getBytes() : null;
+    }
+
+    @Override
+    protected boolean updateCAS(String storageKey, @Nullable CasValue cas, byte[] storageObject) {
+        var key = decodeStorageKey(storageKey);
+        return Boolean.TRUE.equals(write(() -> {
+            var location = liveSegments.findLocation(key);
+            if (location == NO_LOCATION || cas == null || cas.getVersion() != liveSegments.getVersion(location)) {
+                return false;
+            }
+
+            append(key, cas.getVersion() + 1, storageObject);
+            return true;
+        }));
+    }
+
+    @Override
+    protected void delete(String storageKey) {
+        var key = decodeStorageKey(storageKey);
+        write(() -> {
+            var location = liveSegments.findLocation(key);
+            if (location != NO_LOCATION) {
+                append(key, liveSegments.getVersion(location) + 1, null);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    protected Map<String, byte[]> bulkRestore(Collection<String> storageKeys) {
+        var result = new LinkedHashMap<String, byte[]>();
+        for (var storageKey : storageKeys) {
+            var bytes = restore(storageKey);
+            if (bytes != null) {
+                result.put(storageKey, bytes);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Reads don't change the segments, so entries are deleted in the order they were written,
+     * instead of the order they were accessed. Entries are deleted only if they weren't changed since the scan.
+     * The size of entries is the size of their records, so the segments are compacted after that.
+     */
+    @Override
+    @SneakyThrows
+    public void cleanup(long maxSizeBytes, Duration minResourceAge) {
+        var serializer = new CacheDirHttpCacheEntrySerializer(rootDir);
+        var source = getSnapshot();
+        var locations = source.index.values();
+        Arrays.sort(locations);
+
+        var resourceFiles = new ArrayList<@Nullable Path>(locations.length);
+        var resourceReferences = new HashMap<Path, Integer>();
+        var resourceSizes = new HashMap<Path, Long>();
+        var totalSize = 0L;
+        for (var location : locations) {
+            totalSize += source.getRecordSizeAt(location);
+
+            @Nullable Path resourceFile = null;
+            try {
+                resourceFile = serializer.getResourceFile(source.getValue(location));
+            } catch (ResourceIOException e) {
+                logger.debug("Can't read HTTP cache entry in {}", segmentsDir, e);
+            }
+            resourceFiles.add(resourceFile);
+            if (resourceFile != null) {
+                resourceReferences.merge(resourceFile, 1, Integer::sum);
+                if (!resourceSizes.containsKey(resourceFile)) {
+                    var resourceSize = exists(resourceFile) ? size(resourceFile) : 0;
+                    resourceSizes.put(resourceFile, resourceSize);
+                    totalSize += resourceSize;
+                }
+            }
+        }
+
+        if (maxSizeBytes > 0 && totalSize > maxSizeBytes) {
+            var scannedSize = totalSize;
+            write(() -> {
+                // a resource file shared by several entries is counted once, and freed with the last of them:
+                var remainingSize = scannedSize;
+                for (var i = 0; i < locations.length && remainingSize > maxSizeBytes; i++) {
+                    var location = locations[i];
+                    var key = source.getKey(location);
+                    if (liveSegments.findLocation(key) != location) {
+                        continue;
+                    }
+
+                    append(key, liveSegments.getVersion(location) + 1, null);
+                    remainingSize -= source.getRecordSizeAt(location);
+                    var resourceFile = resourceFiles.get(i);
+                    if (resourceFile != null && resourceReferences.merge(resourceFile, -1, Integer::sum) <= 0) {
+                        remainingSize -= resourceSizes.getOrDefault(resourceFile, 0L);
+                    }
+                }
+                return null;
+            });
+            compact();
+        }
+
+        var referencedResourceFiles = resourceReferences.entrySet().stream()
+            .filter(reference -> reference.getValue() > 0)
+            .map(Map.Entry::getKey)
+            .collect(toSet());
+        resourceFactory.deleteUnreferencedFiles(referencedResourceFiles, minResourceAge);
+    }
+
+    /**
+     * Copies live records to new segments, and deletes the old segments.
+     */
+    @VisibleForTesting
+    void compact() {
+        for (var attempt = 1; attempt <= MAX_COMPACTION_ATTEMPTS; attempt++) {
+            if (tryCompact()) {
+                return;
+            }
+        }
+        logger.debug("HTTP cache segments were changed during every compaction attempt: {}", segmentsDir);
+    }
+
+    /**
+     * @return {@code false} if something was written while live records were being copied
+     */
+    @SneakyThrows
+    private boolean tryCompact() {
+        var source = getSnapshot();
+        var locations = source.index.values();
+        Arrays.sort(locations);
+
+        var firstSegmentId = getNextSegmentId();
+        var compactedSegments = new ArrayList<Segment>();
+        try {
+            var segment = createSegment(firstSegmentId, true, segmentSize);
+            compactedSegments.add(segment);
+            var offset = SEGMENT_HEADER_SIZE;
+            for (var location : locations) {
+                var sourceSegment = source.getSegment(location);
+                var sourceOffset = getOffset(location);
+                var recordSize = source.getRecordSizeAt(location);
+                if (offset + recordSize > segment.getCapacity()) {
+                    var capacity = Math.max(segmentSize, SEGMENT_HEADER_SIZE + recordSize);
+                    segment = createSegment(segment.id + 1, false, capacity);
+                    compactedSegments.add(segment);
+                    offset = SEGMENT_HEADER_SIZE;
+                }
+                segment.buffer.put(offset, sourceSegment.buffer, sourceOffset, recordSize);
+                offset += recordSize;
+            }
+
+            return Boolean.TRUE.equals(write(() -> {
+                if (readGeneration() != source.generation) {
+                    return false;
+                }
+
+                // the compacted segment is published last, as it makes all previous segments obsolete:
+                for (var i = compactedSegments.size() - 1; i >= 0; i--) {
+                    publishSegment(compactedSegments.get(i));
+                }
+
+                for (var obsoleteSegment : segments.headMap(firstSegmentId).values()) {
+                    try {
+                        deleteIfExists(obsoleteSegment.path);
+                    } catch (IOException e) {
+                        // a mapped file can't be deleted on some OSes, it's ignored until the next compaction
+                        logger.debug("Can't delete obsolete HTTP cache segment: {}", obsoleteSegment.path, e);
+                    }
+                }
+                deleteAbandonedTempSegments();
+
+                incrementGeneration();
+                reset();
+                refresh();
+                return true;
+            }));
+
+        } finally {
+            for (var compactedSegment : compactedSegments) {
+                deleteIfExists(compactedSegment.tempPath);
+            }
+        }
+    }
+
+    /**
+     * Deletes temporary segments left by processes that crashed while creating them.
+     */
+    @SneakyThrows
+    private void deleteAbandonedTempSegments() {
+        var maxLastModified = Instant.now().minus(ABANDONED_TEMP_SEGMENT_AGE);
+        try (var paths = newDirectoryStream(segmentsDir, "*.segment.*.temp")) {
+            for (var path : paths) {
+                try {
+                    if (getLastModifiedTime(path).toInstant().isBefore(maxLastModified)) {
+                        deleteIfExists(path);
+                    }
+                } catch (NoSuchFileException e) {
+                    // deleted concurrently
+                }
+            }
+        }
+    }
+
+    @VisibleForTesting
+    boolean isCompactionScheduled() {
+        return isCompactionScheduled.get();
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        synchronized (this) {
+            if (deadBytes < segmentSize / 2 || deadBytes * 2 < usedBytes) {
+                return;
+            }
+        }
+
+        if (!isCompactionScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        Thread.ofVirtual().name(SegmentedLogHttpCacheStorage.class.getSimpleName() + "-compaction").start(() -> {
+            try {
+                compact();
+            } catch (Throwable e) {
+                logger.warn("Failed to compact HTTP cache segments in " + segmentsDir, e);
+            } finally {
+                isCompactionScheduled.set(false);
+            }
+        });
+    }
+
+
+    @SneakyThrows
+    private <T> @Nullable T write(Callable<@Nullable T> action) {
+        createDirectories(segmentsDir);
+        var result = withShortExclusiveLock(lockPath, () -> {
+            synchronized (this) {
+                refresh();
+                return action.call();
+            }
+        });
+        scheduleCompactionIfNeeded();
+        return result;
+    }
+
+    /**
+     * Returns an immutable snapshot of the segments and the index.
+     * The monitor is taken only if the generation has changed since the current snapshot was taken.
+     */
+    private Snapshot getSnapshot() {
+        var currentSnapshot = snapshot;
+        if (currentSnapshot.generation == readGeneration()) {
+            return currentSnapshot;
+        }
+
+        synchronized (this) {
+            refresh();
+            if (snapshot.generation != refreshedGeneration) {
+                snapshot = new Snapshot(refreshedGeneration, new TreeMap<>(segments), index.copy());
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Indexes records appended since the last refresh, including the ones appended by other processes.
+     * Does nothing, if the generation hasn't changed since the last refresh.
+     */
+    @SneakyThrows
+    private void refresh() {
+        var generation = readGeneration();
+        if (generation == refreshedGeneration) {
+            return;
+        }
+
+        var segmentFiles = listSegmentFiles();
+        if (segments.keySet().stream().anyMatch(id -> !segmentFiles.containsKey(id))) {
+            // segments were deleted by a compaction in another process
+            reset();
+        }
+
+        for (var entry : segmentFiles.tailMap(baseSegmentId).entrySet()) {
+            var segmentId = entry.getKey();
+            if (segments.containsKey(segmentId)) {
+                continue;
+            }
+
+            var segment = openSegment(segmentId, entry.getValue());
+            if (segment == null) {
+                continue;
+            }
+
+            if (segment.compacted && segmentId > baseSegmentId) {
+                baseSegmentId = segmentId;
+                reset();
+            }
+            segments.put(segmentId, segment);
+        }
+
+        for (var segment : segments.tailMap(scanSegmentId).values()) {
+            var offset = segment.id == scanSegmentId ? scanOffset : SEGMENT_HEADER_SIZE;
+            while (true) {
+                var recordSize = getValidRecordSize(segment, offset);
+                if (recordSize <= 0) {
+                    break;
+                }
+                indexRecord(segment, offset, recordSize);
+                offset += recordSize;
+            }
+            scanSegmentId = segment.id;
+            scanOffset = offset;
+        }
+
+        refreshedGeneration = generation;
+    }
+
+    private void reset() {
+        segments.clear();
+        index.clear();
+        refreshedGeneration = NO_GENERATION;
+        scanSegmentId = 0;
+        scanOffset = 0;
+        usedBytes = 0;
+        deadBytes = 0;
+    }
+
+    private void indexRecord(Segment segment, int offset, int recordSize) {
+        usedBytes += recordSize;
+
+        var indexKey = getIndexKey(segment.buffer, offset + RECORD_HEADER_SIZE);
+        var isTombstone = segment.buffer.getInt(offset + 12) == TOMBSTONE;
+        var previousLocation = isTombstone
+            ? index.remove(indexKey)
+            : index.put(indexKey, toLocation(segment.id, offset));
+        if (previousLocation != NO_LOCATION) {
+            var previousSegment = liveSegments.getSegment(previousLocation);
+            deadBytes += getRecordSize(previousSegment.buffer.getInt(getOffset(previousLocation) + 12));
+        }
+        if (isTombstone) {
+            deadBytes += recordSize;
+        }
+    }
+
+    /**
+     * @return the size of a complete record with a valid checksum at the offset, or {@code 0} if there is none
+     */
+    private static int getValidRecordSize(Segment segment, int offset) {
+        var buffer = segment.buffer;
+        if (offset + RECORD_HEADER_SIZE > buffer.capacity()) {
+            return 0;
+        }
+
+        var magic = (int) INT_VIEW.getAcquire(buffer, offset);
+        if (magic == 0) {
+            return 0;
+        }
+
+        var keyLength = buffer.getInt(offset + 8);
+        var valueLength = buffer.getInt(offset + 12);
+        if (magic != RECORD_MAGIC
+            || keyLength != KEY_LENGTH
+            || valueLength < TOMBSTONE
+            || valueLength > buffer.capacity() - offset - RECORD_HEADER_SIZE - KEY_LENGTH
+            || buffer.getInt(offset + 4) != getChecksum(buffer, offset, valueLength)
+        ) {
+            segment.corrupted = true;
+            return 0;
+        }
+
+        return getRecordSize(valueLength);
+    }
+
+    private void append(byte[] key, long version, byte @Nullable [] value) {
+        var recordSize = getRecordSize(value != null ? value.length : TOMBSTONE);
+        var segment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (segment == null
+            || segment.corrupted
+            || segment.id != scanSegmentId
+            || scanOffset + recordSize > segment.getCapacity()
+        ) {
+            segment = createSegment(getNextSegmentId(), false, Math.max(segmentSize, SEGMENT_HEADER_SIZE + recordSize));
+            publishSegment(segment);
+            segments.put(segment.id, segment);
+            scanSegmentId = segment.id;
+            scanOffset = SEGMENT_HEADER_SIZE;
+        }
+
+        var buffer = segment.buffer;
+        var offset = scanOffset;
+        buffer.putInt(offset + 8, key.length);
+        buffer.putInt(offset + 12, value != null ? value.length : TOMBSTONE);
+        buffer.putLong(offset + 16, version);
+        buffer.put(offset + RECORD_HEADER_SIZE, key);
+        if (value != null) {
+            buffer.put(offset + RECORD_HEADER_SIZE + KEY_LENGTH, value);
+        }
+        buffer.putInt(offset + 4, getChecksum(buffer, offset, value != null ? value.length : TOMBSTONE));
+        INT_VIEW.setRelease(buffer, offset, RECORD_MAGIC);
+
+        indexRecord(segment, offset, recordSize);
+        scanOffset += recordSize;
+
+        // the live state was refreshed before this write, so it's still up to date:
+        refreshedGeneration = incrementGeneration();
+    }
+
+    private static int getChecksum(ByteBuffer buffer, int offset, int valueLength) {
+        var crc = new CRC32C();
+        crc.update(buffer.slice(offset + 8, RECORD_HEADER_SIZE - 8 + KEY_LENGTH + Math.max(valueLength, 0)));
+        return (int) crc.getValue();
+    }
+
+    private static int getRecordSize(int valueLength) {
+        var size = RECORD_HEADER_SIZE + KEY_LENGTH + Math.max(valueLength, 0);
+        return (size + RECORD_ALIGNMENT - 1) / RECORD_ALIGNMENT * RECORD_ALIGNMENT;
+    }
+
+
+    private static long toLocation(int segmentId, int offset) {
+        return ((long) segmentId << 32) | offset;
+    }
+
+    private static int getOffset(long location) {
+        return (int) location;
+    }
+
+    private static long getIndexKey(ByteBuffer buffer, int keyOffset) {
+        var indexKey = buffer.getLong(keyOffset);
+        return indexKey != 0 ? indexKey : 1;
+    }
+
+    private static byte[] decodeStorageKey(String storageKey) {
+        var key = HexFormat.of().parseHex(storageKey);
+        if (key.length != KEY_LENGTH) {
+            throw new IllegalArgumentException("Invalid storage key: " + storageKey);
+        }
+        return key;
+    }
+
+
+    @SneakyThrows
+    private MappedByteBuffer getGenerationBuffer() {
+        var buffer = generationBuffer;
+        if (buffer == null) {
+            synchronized (this) {
+                buffer = generationBuffer;
+                if (buffer == null) {
+                    createDirectories(segmentsDir);
+                    try (var channel = FileChannel.open(generationPath, CREATE, READ, WRITE)) {
+                        buffer = channel.map(READ_WRITE, 0, Long.BYTES);
+                    }
+                    generationBuffer = buffer;
+                }
+            }
+        }
+        return buffer;
+    }
+
+    private long readGeneration() {
+        return (long) LONG_VIEW.getAcquire(getGenerationBuffer(), 0);
+    }
+
+    /**
+     * Must be called while holding the lock file.
+     */
+    private long incrementGeneration() {
+        var buffer = getGenerationBuffer();
+        var generation = (long) LONG_VIEW.getAcquire(buffer, 0) + 1;
+        LONG_VIEW.setRelease(buffer, 0, generation);
+        return generation;
+    }
+
+    @SneakyThrows
+    private TreeMap<Integer, Path> listSegmentFiles() {
+        var result = new TreeMap<Integer, Path>();
+        if (!exists(segmentsDir)) {
+            return result;
+        }
+
+        try (var paths = Files.list(segmentsDir)) {
+            paths.forEach(path -> {
+                var matcher = SEGMENT_FILE_NAME_PATTERN.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    result.put(Integer.parseInt(matcher.group(1)), path);
+                }
+            });
+        }
+        return result;
+    }
+
+    private int getNextSegmentId() {
+        var segmentFiles = listSegmentFiles();
+        return segmentFiles.isEmpty() ? 1 : segmentFiles.lastKey() + 1;
+    }
+
+    private Path getSegmentPath(int segmentId) {
+        return segmentsDir.resolve(String.format("%010d.segment", segmentId));
+    }
+
+    /**
+     * Temp paths are unique, as segments can be created by compactions in several processes at the same time.
+     */
+    private Path getTempSegmentPath(int segmentId) {
+        return segmentsDir.resolve(String.format("%010d.segment.%s.temp", segmentId, UUID.randomUUID()));
+    }
+
+    @Nullable
+    @SneakyThrows
+    private static Segment openSegment(int segmentId, Path path) {
+        try (var channel = FileChannel.open(path, READ, WRITE)) {
+            var size = channel.size();
+            if (size < SEGMENT_HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            var buffer = channel.map(READ_WRITE, 0, size);
+            if (buffer.getInt(0) != SEGMENT_MAGIC) {
+                return null;
+            }
+
+            var isCompacted = (buffer.getInt(4) & SEGMENT_FLAG_COMPACTED) != 0;
+            return new Segment(segmentId, path, path, buffer, isCompacted);
+
+        } catch (NoSuchFileException e) {
+            // deleted by a compaction in another process
+            return null;
+        }
+    }
+
+    /**
+     * Creates a segment in a temporary file, which isn't visible to readers until it's published.
+     */
+    @SneakyThrows
+    private Segment createSegment(int segmentId, boolean isCompacted, int capacity) {
+        var path = getSegmentPath(segmentId);
+        var tempPath = getTempSegmentPath(segmentId);
+        try (var channel = FileChannel.open(tempPath, CREATE_NEW, READ, WRITE)) {
+            var buffer = channel.map(READ_WRITE, 0, capacity);
+            buffer.putInt(0, SEGMENT_MAGIC);
+            buffer.putInt(4, isCompacted ? SEGMENT_FLAG_COMPACTED : 0);
+            return new Segment(segmentId, path, tempPath, buffer, isCompacted);
+        }
+    }
+
+    @SneakyThrows
+    private static void publishSegment(Segment segment) {
+        move(segment.tempPath, segment.path, ATOMIC_MOVE);
+    }
+
+
+    /**
+     * Segments by their IDs, and the index of the latest records.
+     */
+    private static class IndexedSegments {
+
+        final Map<Integer, Segment> segments;
+
+        final LongHashIndex index;
+
+        IndexedSegments(Map<Integer, Segment> segments, LongHashIndex index) {
+            this.segments = segments;
+            this.index = index;
+        }
+
+        Segment getSegment(long location) {
+            var segment = segments.get((int) (location >>> 32));
+            if (segment == null) {
+                throw new IllegalStateException("Segment not found for location " + location);
+            }
+            return segment;
+        }
+
+        /**
+         * The index is keyed by the first 8 bytes of the key, so the full key is compared here.
+         */
+        long findLocation(byte[] key) {
+            var location = index.get(getIndexKey(ByteBuffer.wrap(key), 0));
+            if (location == NO_LOCATION) {
+                return NO_LOCATION;
+            }
+
+            var segment = getSegment(location);
+            var keyOffset = getOffset(location) + RECORD_HEADER_SIZE;
+            if (segment.buffer.slice(keyOffset, KEY_LENGTH).mismatch(ByteBuffer.wrap(key)) >= 0) {
+                return NO_LOCATION;
+            }
+            return location;
+        }
+
+        byte[] getKey(long location) {
+            var key = new byte[KEY_LENGTH];
+            getSegment(location).buffer.get(getOffset(location) + RECORD_HEADER_SIZE, key);
+            return key;
+        }
+
+        int getRecordSizeAt(long location) {
+            return getRecordSize(getSegment(location).buffer.getInt(getOffset(location) + 12));
+        }
+
+        long getVersion(long location) {
+            return getSegment(location).buffer.getLong(getOffset(location) + 16);
+        }
+
+        byte[] getValue(long location) {
+            var buffer = getSegment(location).buffer;
+            var offset = getOffset(location);
+            var value = new byte[buffer.getInt(offset + 12)];
+            buffer.get(offset + RECORD_HEADER_SIZE + KEY_LENGTH, value);
+            return value;
+        }
+
+    }
+
+    /**
+     * Records are never changed after they're published, so the snapshot's segments can be read without any lock,
+     * even after they're deleted by a compaction.
+     */
+    private static final class Snapshot extends IndexedSegments {
+
+        final long generation;
+
+        Snapshot(long generation, Map<Integer, Segment> segments, LongHashIndex index) {
+            super(segments, index);
+            this.generation = generation;
+        }
+
+    }
+
+
+    private static final class Segment {
+
+        final int id;
+
+        final Path path;
+
+        /**
+         * The same as {@link #path} for segments that were opened, instead of created.
+         */
+        final Path tempPath;
+
+        final MappedByteBuffer buffer;
+
+        final boolean compacted;
+
+        boolean corrupted;
+
+        Segment(int id, Path path, Path tempPath, MappedByteBuffer buffer, boolean compacted) {
+            this.id = id;
+            this.path = path;
+            this.tempPath = tempPath;
+            this.buffer = buffer;
+            this.compacted = compacted;
+        }
+
+        int getCapacity() {
+            return buffer.capacity();
+        }
+
+    }
+
+    @Value
+    @Builder
+    protected static class CasValue {
+        long version;
+        byte @Nullable [] bytes;
+    }
+
+}
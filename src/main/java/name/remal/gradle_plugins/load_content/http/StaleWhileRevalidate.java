@@ -0,0 +1,51 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static org.apache.hc.core5.http.HttpHeaders.CACHE_CONTROL;
+
+import java.time.Duration;
+import java.util.Locale;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpResponseInterceptor;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Adds {@code stale-while-revalidate} directive to responses, if the server didn't send it.
+ *
+ * <p>Stale cache entries are served for this time, while they are revalidated in the background.
+ *
+ * @see CachePolicyVariant
+ */
+enum StaleWhileRevalidate implements HttpResponseInterceptor {
+
+    INSTANCE;
+
+
+    public static final String STALE_WHILE_REVALIDATE_CTX_ATTR = StaleWhileRevalidate.class.getName();
+
+    @Override
+    public void process(HttpResponse response, @Nullable EntityDetails entity, @Nullable HttpContext context) {
+        if (context == null
+            || !(context.getAttribute(STALE_WHILE_REVALIDATE_CTX_ATTR) instanceof Duration duration)
+        ) {
+            return;
+        }
+
+        var durationSecs = duration.toSeconds();
+        if (durationSecs <= 0) {
+            return;
+        }
+
+        var cacheControlHeaders = response.getHeaders(CACHE_CONTROL);
+        for (var header : cacheControlHeaders) {
+            if (header.getValue().toLowerCase(Locale.ROOT).contains("stale-while-revalidate")) {
+                return;
+            }
+        }
+
+        response.addHeader(CACHE_CONTROL, "stale-while-revalidate=" + durationSecs);
+        CachePolicyVariant.addVary(response);
+    }
+
+}
@@ -0,0 +1,196 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import lombok.SneakyThrows;
+import lombok.Value;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.io.entity.EmptyInputStream;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.support.classic.ContentInputStream;
+import org.apache.hc.core5.http.nio.support.classic.SharedInputBuffer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Exposes the response body of an async exchange as a blocking {@link InputStream},
+ * so the body isn't buffered in memory.
+ *
+ * <p>The body is passed through a buffer of {@link #BUFFER_SIZE} bytes, which is flow-controlled:
+ * the server sends more data only when the reader has consumed the buffered one.
+ *
+ * <p>The result of the exchange is completed when the body has been received,
+ * so cancelling the exchange's future aborts the body streaming.
+ * Pass {@link #getFutureCallback()} to the client, so a cancelled or failed exchange fails the reader.
+ */
+final class StreamingAsyncResponseConsumer implements AsyncResponseConsumer<Void> {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+
+    private final SharedInputBuffer buffer = new SharedInputBuffer(BUFFER_SIZE);
+
+    private final CompletableFuture<Response> response = new CompletableFuture<>();
+
+    @Nullable
+    private volatile FutureCallback<Void> resultCallback;
+
+    @Nullable
+    private volatile Exception failure;
+
+    private volatile boolean isEndOfStream;
+
+    /**
+     * Waits for the response headers.
+     */
+    @SneakyThrows
+    public Response getResponse() {
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    public FutureCallback<Void> getFutureCallback() {
+        return new FutureCallback<>() {
+            @Override
+            public void completed(Void result) {
+                // the body is streamed
+            }
+
+            @Override
+            public void failed(Exception cause) {
+                fail(cause);
+            }
+
+            @Override
+            public void cancelled() {
+                fail(new CancellationException("The request was cancelled"));
+            }
+        };
+    }
+
+    @Override
+    public void consumeResponse(
+        HttpResponse response,
+        @Nullable EntityDetails entityDetails,
+        HttpContext context,
+        FutureCallback<Void> resultCallback
+    ) {
+        if (entityDetails == null) {
+            isEndOfStream = true;
+            this.response.complete(new Response(response, new InputStreamEntity(EmptyInputStream.INSTANCE, null)));
+            resultCallback.completed(null);
+            return;
+        }
+
+        this.resultCallback = resultCallback;
+        var entity = new InputStreamEntity(
+            new BodyInputStream(),
+            entityDetails.getContentLength(),
+            ContentType.parseLenient(entityDetails.getContentType()),
+            entityDetails.getContentEncoding()
+        );
+        this.response.complete(new Response(response, entity));
+    }
+
+    @Override
+    public void informationResponse(HttpResponse response, HttpContext context) {
+        // informational responses don't have a body
+    }
+
+    @Override
+    public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+        buffer.updateCapacity(capacityChannel);
+    }
+
+    @Override
+    public void consume(ByteBuffer src) {
+        buffer.fill(src);
+    }
+
+    @Override
+    public void streamEnd(@Nullable List<? extends Header> trailers) {
+        isEndOfStream = true;
+        buffer.markEndStream();
+        var callback = resultCallback;
+        if (callback != null) {
+            callback.completed(null);
+        }
+    }
+
+    @Override
+    public void failed(Exception cause) {
+        fail(cause);
+    }
+
+    @Override
+    public void releaseResources() {
+        // the buffer is released by the reader
+    }
+
+    private void fail(Exception cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+        buffer.abort();
+        response.completeExceptionally(cause);
+    }
+
+
+    @Value
+    static class Response {
+        HttpResponse head;
+        HttpEntity entity;
+    }
+
+    private final class BodyInputStream extends FilterInputStream {
+
+        BodyInputStream() {
+            super(new ContentInputStream(buffer));
+        }
+
+        @Override
+        public int read() throws IOException {
+            return checkNotFailed(super.read());
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            return checkNotFailed(super.read(bytes, offset, length));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!isEndOfStream) {
+                // don't wait for the rest of the body, the owner of the exchange cancels it:
+                buffer.abort();
+            }
+            super.close();
+        }
+
+        private int checkNotFailed(int result) throws IOException {
+            var cause = failure;
+            if (result < 0 && cause != null) {
+                throw new IOException("The response body was not fully received", cause);
+            }
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,410 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A size-bounded cache with W-TinyLFU admission, weighted by entry size.
+ *
+ * <p>New entries go to a small LRU window. Entries evicted from the window are admitted to the main
+ * segmented LRU only if they were accessed more often than the main's eviction victim.
+ * Access frequencies are approximated by a count-min sketch of 4-bit counters, which are periodically halved.
+ */
+final class WTinyLfuCache<K, V> {
+
+    private static final int WINDOW_PERCENT = 1;
+
+    private static final int PROTECTED_PERCENT = 80;
+
+    private static final int MAX_INVALIDATED_KEYS = 10_000;
+
+
+    private final long maxWeight;
+
+    private final long maxWindowWeight;
+
+    private final long maxMainWeight;
+
+    private final long maxProtectedWeight;
+
+    private final Map<K, Node<K, V>> nodes = new HashMap<>();
+
+    private final NodeQueue<K, V> window = new NodeQueue<>();
+
+    private final NodeQueue<K, V> probation = new NodeQueue<>();
+
+    private final NodeQueue<K, V> protectedQueue = new NodeQueue<>();
+
+    private final FrequencySketch sketch = new FrequencySketch();
+
+    private final MemoryCacheStatistics statistics = new MemoryCacheStatistics();
+
+    private long mainWeight;
+
+    private long invalidations;
+
+    /**
+     * The {@link #invalidations} value of the last invalidation of the key.
+     * Cleared when it gets too large, then {@link #allInvalidatedAt} is used for all keys.
+     */
+    private final Map<K, Long> keyInvalidatedAt = new HashMap<>();
+
+    private long allInvalidatedAt;
+
+    WTinyLfuCache(long maxWeight) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("Max weight must be greater than 0");
+        }
+
+        this.maxWeight = maxWeight;
+        this.maxWindowWeight = Math.max(maxWeight * WINDOW_PERCENT / 100, 1);
+        this.maxMainWeight = maxWeight - maxWindowWeight;
+        this.maxProtectedWeight = maxMainWeight * PROTECTED_PERCENT / 100;
+    }
+
+    public MemoryCacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Nullable
+    public synchronized V get(K key) {
+        sketch.increment(key);
+        var node = nodes.get(key);
+        if (node == null) {
+            statistics.onMiss();
+            return null;
+        }
+
+        statistics.onHit();
+        onAccess(node);
+        return node.value;
+    }
+
+    /**
+     * Pass the returned stamp to {@link #put(Object, Object, long, long)} to not cache a value
+     * that could have been invalidated while it was being loaded.
+     */
+    public synchronized long getInvalidationStamp() {
+        return invalidations;
+    }
+
+    /**
+     * @return {@code false} if the value wasn't cached, because it's heavier than the cache,
+     *     or because the key was invalidated since {@code invalidationStamp} was taken
+     */
+    public synchronized boolean put(K key, V value, long weight, long invalidationStamp) {
+        if (keyInvalidatedAt.getOrDefault(key, allInvalidatedAt) > invalidationStamp) {
+            return false;
+        }
+
+        if (weight > maxWeight) {
+            remove(key);
+            return false;
+        }
+
+        sketch.increment(key);
+        var node = nodes.get(key);
+        if (node != null) {
+            node.value = value;
+            queueOf(node).weight += weight - node.weight;
+            if (node.queue != window) {
+                mainWeight += weight - node.weight;
+            }
+            node.weight = weight;
+            onAccess(node);
+
+        } else {
+            node = new Node<>(key, value, weight);
+            nodes.put(key, node);
+            window.addLast(node);
+            sketch.ensureCapacity(nodes.size());
+        }
+
+        evict();
+        return true;
+    }
+
+    public synchronized void invalidate(K key) {
+        invalidations++;
+        if (keyInvalidatedAt.size() < MAX_INVALIDATED_KEYS) {
+            keyInvalidatedAt.put(key, invalidations);
+        } else {
+            keyInvalidatedAt.clear();
+            allInvalidatedAt = invalidations;
+        }
+        remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations++;
+        keyInvalidatedAt.clear();
+        allInvalidatedAt = invalidations;
+        nodes.values().forEach(node -> queueOf(node).remove(node));
+        nodes.clear();
+        mainWeight = 0;
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    public synchronized long getWeight() {
+        return window.weight + mainWeight;
+    }
+
+    public synchronized boolean contains(K key) {
+        return nodes.containsKey(key);
+    }
+
+
+    private void onAccess(Node<K, V> node) {
+        if (node.queue == probation) {
+            probation.remove(node);
+            protectedQueue.addLast(node);
+            demoteProtected();
+
+        } else {
+            queueOf(node).moveToLast(node);
+        }
+    }
+
+    private void demoteProtected() {
+        while (protectedQueue.weight > maxProtectedWeight && protectedQueue.first != null) {
+            var demoted = protectedQueue.first;
+            protectedQueue.remove(demoted);
+            probation.addLast(demoted);
+        }
+    }
+
+    /**
+     * Moves the window's overflow to main, then restores main's bounds,
+     * which can be exceeded after an entry in main was replaced by a heavier one.
+     */
+    private void evict() {
+        while (window.weight > maxWindowWeight && window.first != null) {
+            var candidate = window.first;
+            window.remove(candidate);
+            admit(candidate);
+        }
+
+        while (mainWeight > maxMainWeight) {
+            var victim = probation.first != null ? probation.first : protectedQueue.first;
+            if (victim == null) {
+                break;
+            }
+
+            queueOf(victim).remove(victim);
+            mainWeight -= victim.weight;
+            nodes.remove(victim.key);
+            statistics.onEviction();
+        }
+
+        demoteProtected();
+    }
+
+    /**
+     * Evicts main's victims that are accessed less often than the candidate until the candidate fits,
+     * otherwise evicts the candidate.
+     */
+    private void admit(Node<K, V> candidate) {
+        var candidateFrequency = sketch.frequency(candidate.key);
+        while (mainWeight + candidate.weight > maxMainWeight) {
+            var victim = probation.first != null ? probation.first : protectedQueue.first;
+            if (victim == null || sketch.frequency(victim.key) >= candidateFrequency) {
+                nodes.remove(candidate.key);
+                statistics.onEviction();
+                return;
+            }
+
+            queueOf(victim).remove(victim);
+            mainWeight -= victim.weight;
+            nodes.remove(victim.key);
+            statistics.onEviction();
+        }
+
+        probation.addLast(candidate);
+        mainWeight += candidate.weight;
+    }
+
+    private void remove(K key) {
+        var node = nodes.remove(key);
+        if (node != null) {
+            if (node.queue != window) {
+                mainWeight -= node.weight;
+            }
+            queueOf(node).remove(node);
+        }
+    }
+
+    private static <K, V> NodeQueue<K, V> queueOf(Node<K, V> node) {
+        return requireNonNull(node.queue, "queue");
+    }
+
+
+    private static final class Node<K, V> {
+
+        final K key;
+
+        V value;
+
+        long weight;
+
+        @Nullable
+        NodeQueue<K, V> queue;
+
+        @Nullable
+        Node<K, V> prev;
+
+        @Nullable
+        Node<K, V> next;
+
+        Node(K key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+
+    }
+
+    /**
+     * A doubly linked LRU queue, the least recently used node is the first one.
+     */
+    private static final class NodeQueue<K, V> {
+
+        @Nullable
+        Node<K, V> first;
+
+        @Nullable
+        Node<K, V> last;
+
+        long weight;
+
+        void addLast(Node<K, V> node) {
+            node.queue = this;
+            node.prev = last;
+            node.next = null;
+            if (last != null) {
+                last.next = node;
+            } else {
+                first = node;
+            }
+            last = node;
+            weight += node.weight;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            } else {
+                first = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            } else {
+                last = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.queue = null;
+            weight -= node.weight;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+    }
+
+    /**
+     * A count-min sketch with 4 rows of 4-bit counters, packed into a single table.
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L,
+            0xb492b66fbe98f273L,
+            0x9ae16a3b2f90404fL,
+            0xcbf29ce484222325L,
+        };
+
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private static final int MAX_TABLE_LENGTH = 1 << 24;
+
+        private long[] table = new long[16];
+
+        private int sampleSize = 10 * 16;
+
+        private int additions;
+
+        void ensureCapacity(int entries) {
+            if (entries <= table.length || table.length >= MAX_TABLE_LENGTH) {
+                return;
+            }
+
+            var length = Math.min(Integer.highestOneBit(entries - 1) << 1, MAX_TABLE_LENGTH);
+            table = new long[length];
+            sampleSize = 10 * length;
+            additions = 0;
+        }
+
+        int frequency(Object key) {
+            var hash = spread(key.hashCode());
+            var frequency = 15;
+            for (var i = 0; i < SEEDS.length; i++) {
+                var index = indexOf(hash, i);
+                var count = (int) ((table[index >>> 4 & (table.length - 1)] >>> ((index & 15) << 2)) & 15);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(Object key) {
+            var hash = spread(key.hashCode());
+            var isAdded = false;
+            for (var i = 0; i < SEEDS.length; i++) {
+                var index = indexOf(hash, i);
+                var slot = index >>> 4 & (table.length - 1);
+                var shift = (index & 15) << 2;
+                if (((table[slot] >>> shift) & 15) < 15) {
+                    table[slot] += 1L << shift;
+                    isAdded = true;
+                }
+            }
+
+            if (isAdded && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        /**
+         * Halves all counters, so old accesses fade out.
+         */
+        private void reset() {
+            for (var i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+
+        private static int indexOf(int hash, int row) {
+            var h = (hash + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return (int) h;
+        }
+
+        private static int spread(int hash) {
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            return (hash >>> 16) ^ hash;
+        }
+
+    }
+
+}
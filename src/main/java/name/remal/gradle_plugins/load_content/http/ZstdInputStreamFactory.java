@@ -0,0 +1,16 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+import java.io.InputStream;
+import org.apache.hc.client5.http.entity.InputStreamFactory;
+
+enum ZstdInputStreamFactory implements InputStreamFactory {
+
+    INSTANCE;
+
+    @Override
+    public InputStream create(InputStream inputStream) {
+        return new ZstdInputStream(inputStream);
+    }
+
+}
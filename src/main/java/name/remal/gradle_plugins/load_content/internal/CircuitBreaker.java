@@ -0,0 +1,114 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.VisibleForTesting;
+
+/**
+ * A circuit breaker that opens after {@code failureThreshold} consecutive failures.
+ *
+ * <p>While open, calls are rejected. After {@code openDuration}, a single probe call is let through.
+ * If the probe succeeds, the circuit is closed. If it fails, the circuit is opened again.
+ */
+@ApiStatus.Internal
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN,
+    }
+
+
+    private final int failureThreshold;
+
+    private final long openDurationNanos;
+
+    private final LongSupplier nanoTime;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openUntilNanos;
+
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    @VisibleForTesting
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoTime) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+
+    /**
+     * @return {@code true} if the call is allowed
+     */
+    public synchronized boolean tryAcquire() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> {
+                if (nanoTime.getAsLong() - openUntilNanos < 0) {
+                    yield false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                yield true;
+            }
+            case HALF_OPEN -> {
+                if (probeInFlight) {
+                    yield false;
+                }
+                probeInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    /**
+     * Must be called after every call allowed by {@link #tryAcquire()}.
+     * If neither {@link #onSuccess()} nor {@link #onFailure()} were called for a probe call
+     * (for example, if the response was served from the cache), the next call becomes a probe.
+     */
+    public synchronized void onCallFinished() {
+        probeInFlight = false;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (failureThreshold > 0 && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openUntilNanos = nanoTime.getAsLong() + openDurationNanos;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Returns the time left till the next probe call is allowed.
+     */
+    public synchronized Duration getRetryIn() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(Math.max(openUntilNanos - nanoTime.getAsLong(), 0));
+    }
+
+}
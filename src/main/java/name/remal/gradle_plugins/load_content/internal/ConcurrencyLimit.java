@@ -0,0 +1,130 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.VisibleForTesting;
+
+/**
+ * A concurrency limit, like {@link java.util.concurrent.Semaphore}, but its limit can be changed.
+ *
+ * <p>In adaptive mode, the limit is adjusted using AIMD algorithm:
+ * <ul>
+ *     <li>it grows by {@code 1 / limit} for every response with latency close to the minimal observed latency,
+ *     which is about +1 per {@code limit} responses
+ *     <li>it shrinks by 10% for every response with latency much higher than the minimal observed latency
+ *     <li>it's halved for every overload response (429, 503, or a response with {@code Retry-After})
+ * </ul>
+ */
+@ApiStatus.Internal
+final class ConcurrencyLimit {
+
+    private static final double OVERLOAD_DECREASE_RATIO = 0.5;
+
+    private static final double LATENCY_DECREASE_RATIO = 0.9;
+
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    /**
+     * The minimal latency slowly drifts up, so a single lucky fast response doesn't define the baseline forever.
+     */
+    private static final double MIN_LATENCY_DRIFT = 1.01;
+
+
+    private final boolean adaptive;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private double limit;
+
+    private int inFlight;
+
+    private double minLatencyNanos = Double.MAX_VALUE;
+
+    public static ConcurrencyLimit fixed(int limit) {
+        return new ConcurrencyLimit(false, limit, limit, limit);
+    }
+
+    public static ConcurrencyLimit adaptive(int initialLimit, int minLimit, int maxLimit) {
+        return new ConcurrencyLimit(true, initialLimit, minLimit, maxLimit);
+    }
+
+    private ConcurrencyLimit(boolean adaptive, int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit <= 0) {
+            throw new IllegalArgumentException("Min limit must be greater than 0");
+        }
+        if (maxLimit < minLimit) {
+            throw new IllegalArgumentException("Max limit must be greater than or equal to min limit");
+        }
+
+        this.adaptive = adaptive;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+    }
+
+
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= getLimit()) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * @return {@code false} if the permit wasn't acquired within the timeout
+     */
+    public synchronized boolean tryAcquire(long timeoutNanos) throws InterruptedException {
+        var deadlineNanos = System.nanoTime() + timeoutNanos;
+        while (inFlight >= getLimit()) {
+            var remainingNanos = deadlineNanos - System.nanoTime();
+            if (remainingNanos <= 0) {
+                return false;
+            }
+            NANOSECONDS.timedWait(this, remainingNanos);
+        }
+        inFlight++;
+        return true;
+    }
+
+    public synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    @VisibleForTesting
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+
+    public synchronized void onResponse(long latencyNanos, boolean isOverloaded) {
+        if (!adaptive) {
+            return;
+        }
+
+        if (isOverloaded) {
+            limit = Math.max(minLimit, limit * OVERLOAD_DECREASE_RATIO);
+            return;
+        }
+
+        if (latencyNanos <= 0) {
+            return;
+        }
+
+        minLatencyNanos = Math.min(latencyNanos, minLatencyNanos * MIN_LATENCY_DRIFT);
+        if (latencyNanos > minLatencyNanos * LATENCY_TOLERANCE) {
+            limit = Math.max(minLimit, limit * LATENCY_DECREASE_RATIO);
+        } else {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+            notifyAll();
+        }
+    }
+
+}
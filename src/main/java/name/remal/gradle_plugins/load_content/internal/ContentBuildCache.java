@@ -0,0 +1,54 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import static name.remal.gradle_plugins.load_content.internal.SharedServices.getBuildService;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.services.BuildServiceParameters;
+import org.jetbrains.annotations.ApiStatus;
+import org.jspecify.annotations.Nullable;
+
+@ApiStatus.Internal
+public interface ContentBuildCache extends ContentLoaderBuildService<BuildServiceParameters.None>, AutoCloseable {
+
+    static ContentBuildCache getContentBuildCacheFor(Gradle gradle) {
+        return getBuildService(gradle, ContentBuildCache.class, ContentBuildCacheImpl.class);
+    }
+
+
+    /**
+     * Returns materialized content for the {@code key}.
+     *
+     * <p>Only one {@code streamingContentLoader} is executed for the same {@code key} at a time.
+     * Concurrent callers wait for the in-flight load. Subsequent callers get the already materialized content.
+     * So, the {@code key} must include everything that changes the result of the load.
+     *
+     * <p>{@code streamingContentLoader} must return a {@link StreamingContent}.
+     * It's declared as {@code Callable<?>}, as the caller can be loaded by a different class loader.
+     *
+     * @return {@link FileContent}
+     */
+    default Object getOrLoadContent(Map<String, @Nullable Object> key, Callable<?> streamingContentLoader) {
+        return getOrLoadContent(key, false, null, streamingContentLoader);
+    }
+
+    /**
+     * @param isPrefetch if {@code true}, and the load fails, callers waiting for it load the content again
+     *     instead of getting the prefetch's error
+     * @param waitTimeout how long to wait for a load started by another caller,
+     *     {@link java.util.concurrent.TimeoutException} is thrown if it's exceeded; {@code null} means no limit
+     * @see #getOrLoadContent(Map, Callable)
+     */
+    Object getOrLoadContent(
+        Map<String, @Nullable Object> key,
+        boolean isPrefetch,
+        @Nullable Duration waitTimeout,
+        Callable<?> streamingContentLoader
+    );
+
+    @Override
+    void close();
+
+}
@@ -0,0 +1,154 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import static java.nio.file.Files.copy;
+import static java.nio.file.Files.createTempDirectory;
+import static java.util.Objects.requireNonNull;
+import static java.util.UUID.randomUUID;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static lombok.AccessLevel.PUBLIC;
+import static name.remal.gradle_plugins.load_content.internal.Constants.PLUGIN_ID;
+import static name.remal.gradle_plugins.load_content.internal.JsonUtils.JSON_MAPPER;
+import static name.remal.gradle_plugins.toolkit.PathUtils.deleteRecursively;
+import static name.remal.gradle_plugins.toolkit.ProxyUtils.toDynamicInterface;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import javax.inject.Inject;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.ApiStatus;
+import org.jspecify.annotations.Nullable;
+
+@ApiStatus.Internal
+@NoArgsConstructor(access = PUBLIC, onConstructor_ = {@Inject})
+public abstract class ContentBuildCacheImpl implements ContentBuildCache {
+
+    private final transient ConcurrentMap<String, ContentLoad> contents = new ConcurrentHashMap<>();
+
+    @Override
+    @SneakyThrows
+    public Object getOrLoadContent(
+        Map<String, @Nullable Object> key,
+        boolean isPrefetch,
+        @Nullable Duration waitTimeout,
+        Callable<?> streamingContentLoader
+    ) {
+        var normalizedKey = normalizeKey(key);
+        var waitDeadlineNanos = waitTimeout != null ? System.nanoTime() + waitTimeout.toNanos() : 0;
+
+        while (true) {
+            var newLoad = new ContentLoad(isPrefetch);
+            var load = contents.putIfAbsent(normalizedKey, newLoad);
+            if (load == null) {
+                load = newLoad;
+                try {
+                    newLoad.future.complete(materialize(streamingContentLoader.call()));
+                } catch (Throwable e) {
+                    contents.remove(normalizedKey, newLoad);
+                    newLoad.future.completeExceptionally(e);
+                }
+            }
+
+            try {
+                if (load == newLoad || waitTimeout == null) {
+                    return load.future.get();
+                }
+                return load.future.get(Math.max(waitDeadlineNanos - System.nanoTime(), 0), NANOSECONDS);
+            } catch (ExecutionException e) {
+                if (load != newLoad && load.isPrefetch && !isPrefetch) {
+                    // the failed prefetch is already removed, load the content in the foreground
+                    continue;
+                }
+                throw requireNonNull(e.getCause());
+            }
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class ContentLoad {
+        final boolean isPrefetch;
+        final CompletableFuture<FileContent> future = new CompletableFuture<>();
+    }
+
+    @SneakyThrows
+    private FileContent materialize(Object untypedStreamingContent) {
+        var streamingContent = untypedStreamingContent instanceof StreamingContent typedStreamingContent
+            ? typedStreamingContent
+            : toDynamicInterface(untypedStreamingContent, StreamingContent.class);
+        try (streamingContent) {
+            var contentFilePath = getTempDir().resolve(randomUUID() + ".content");
+            try (var in = streamingContent.getInputStream()) {
+                copy(in, contentFilePath);
+            }
+            return new FileContent(
+                streamingContent.getSource(),
+                contentFilePath,
+                streamingContent.getCharset()
+            );
+        }
+    }
+
+
+    @Nullable
+    private transient volatile Path tempDir;
+
+    @SneakyThrows
+    private Path getTempDir() {
+        if (tempDir == null) {
+            synchronized (this) {
+                if (tempDir == null) {
+                    tempDir = createTempDirectory(PLUGIN_ID + "-");
+                }
+            }
+        }
+
+        return requireNonNull(tempDir);
+    }
+
+    @Override
+    public synchronized void close() {
+        contents.clear();
+
+        var currentTempDir = tempDir;
+        tempDir = null;
+        if (currentTempDir != null) {
+            deleteRecursively(currentTempDir);
+        }
+    }
+
+
+    /**
+     * Converts the key to a string that doesn't depend on maps' order and on class loaders of the values.
+     */
+    private static String normalizeKey(Map<String, @Nullable Object> key) {
+        return JSON_MAPPER.writeValueAsString(normalizeKeyElement(key));
+    }
+
+    @Nullable
+    private static Object normalizeKeyElement(@Nullable Object value) {
+        return switch (value) {
+            case null -> null;
+            case Map<?, ?> map -> {
+                var result = new TreeMap<String, @Nullable Object>();
+                map.forEach((key, val) -> result.put(String.valueOf(key), normalizeKeyElement(val)));
+                yield result;
+            }
+            case Collection<?> collection -> collection.stream()
+                .map(ContentBuildCacheImpl::normalizeKeyElement)
+                .toList();
+            case Boolean it -> it;
+            case Number it -> it;
+            default -> value.toString();
+        };
+    }
+
+}
@@ -0,0 +1,47 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import static name.remal.gradle_plugins.load_content.internal.SharedServices.getBuildService;
+
+import java.util.concurrent.Callable;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildServiceParameters;
+import org.jetbrains.annotations.ApiStatus;
+
+@ApiStatus.Internal
+public interface ContentPrefetcher extends ContentLoaderBuildService<ContentPrefetcher.Parameters>, AutoCloseable {
+
+    static ContentPrefetcher getContentPrefetcherFor(Gradle gradle) {
+        return getBuildService(gradle, ContentPrefetcher.class, ContentPrefetcherImpl.class);
+    }
+
+
+    abstract class Parameters implements BuildServiceParameters {
+
+        public abstract Property<Integer> getMaxParallelPrefetches();
+
+        {
+            getMaxParallelPrefetches().convention(32);
+        }
+
+    }
+
+
+    /**
+     * Registers a load to be executed by the next {@link #start()}.
+     *
+     * <p>The {@code load} is expected to store its result in {@link ContentBuildCache},
+     * so later loads of the same content wait for the in-flight prefetch instead of loading it again.
+     */
+    void register(Callable<?> load);
+
+    /**
+     * Starts all registered loads in the background. Failed loads are ignored,
+     * as they are executed again when their content is requested.
+     */
+    void start();
+
+    @Override
+    void close();
+
+}
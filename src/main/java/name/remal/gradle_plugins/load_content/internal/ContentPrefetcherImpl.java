@@ -0,0 +1,68 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static lombok.AccessLevel.PUBLIC;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import javax.inject.Inject;
+import lombok.CustomLog;
+import lombok.NoArgsConstructor;
+import org.jetbrains.annotations.ApiStatus;
+import org.jspecify.annotations.Nullable;
+
+@ApiStatus.Internal
+@CustomLog
+@NoArgsConstructor(access = PUBLIC, onConstructor_ = {@Inject})
+public abstract class ContentPrefetcherImpl implements ContentPrefetcher {
+
+    private final transient List<Callable<?>> registeredLoads = new ArrayList<>();
+
+    @Nullable
+    private transient ExecutorService executor;
+
+    @Override
+    public synchronized void register(Callable<?> load) {
+        registeredLoads.add(load);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (registeredLoads.isEmpty()) {
+            return;
+        }
+
+        var currentExecutor = executor;
+        if (currentExecutor == null) {
+            var threadFactory = Thread.ofVirtual().name(ContentPrefetcher.class.getSimpleName() + "-", 0).factory();
+            var threads = Math.max(getParameters().getMaxParallelPrefetches().get(), 1);
+            currentExecutor = newFixedThreadPool(threads, threadFactory);
+            executor = currentExecutor;
+        }
+
+        for (var load : registeredLoads) {
+            currentExecutor.execute(() -> {
+                try {
+                    load.call();
+                } catch (Throwable e) {
+                    logger.debug("Prefetch failed", e);
+                }
+            });
+        }
+        registeredLoads.clear();
+    }
+
+    @Override
+    public synchronized void close() {
+        registeredLoads.clear();
+
+        var currentExecutor = executor;
+        executor = null;
+        if (currentExecutor != null) {
+            currentExecutor.shutdownNow();
+        }
+    }
+
+}
@@ -3,11 +3,13 @@ package name.remal.gradle_plugins.load_content.internal;
 import static name.remal.gradle_plugins.load_content.internal.SharedServices.getBuildService;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.concurrent.Callable;
 import lombok.SneakyThrows;
 import org.apache.hc.client5.http.impl.cache.CacheKeyGenerator;
 import org.apache.hc.core5.http.HttpHost;
 import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.services.BuildServiceParameters;
 import org.jetbrains.annotations.ApiStatus;
@@ -29,18 +31,159 @@ public interface HostRateLimiter extends ContentLoaderBuildService<HostRateLimit
             getMaxParallelRequestPerHost().convention(4);
         }
 
+        /**
+         * If enabled, the per-host limit starts at {@link #getMaxParallelRequestPerHost()},
+         * grows while latency stays flat, and shrinks on rising latency or on 429, 503, or {@code Retry-After}.
+         */
+        public abstract Property<Boolean> getAdaptiveParallelRequestPerHost();
+
+        {
+            getAdaptiveParallelRequestPerHost().convention(false);
+        }
+
+        public abstract Property<Integer> getMinAdaptiveParallelRequestPerHost();
+
+        {
+            getMinAdaptiveParallelRequestPerHost().convention(1);
+        }
+
+        public abstract Property<Integer> getMaxAdaptiveParallelRequestPerHost();
+
+        {
+            getMaxAdaptiveParallelRequestPerHost().convention(64);
+        }
+
+        /**
+         * The host's circuit breaker opens after this number of consecutive connection failures or 5xx responses.
+         * While it's open, requests to the host fail fast with {@link HostUnavailableException}.
+         *
+         * <p>Zero or a negative value disables the circuit breaker.
+         */
+        public abstract Property<Integer> getCircuitBreakerFailureThreshold();
+
+        {
+            getCircuitBreakerFailureThreshold().convention(5);
+        }
+
+        /**
+         * How long the circuit breaker stays open before a single probe request is let through.
+         */
+        public abstract Property<Duration> getCircuitBreakerOpenDuration();
+
+        {
+            getCircuitBreakerOpenDuration().convention(Duration.ofSeconds(30));
+        }
+
+        /**
+         * Retries to a host are limited to this ratio of requests to it. A negative value disables the limit.
+         */
+        public abstract Property<Double> getRetryBudgetRatio();
+
+        {
+            getRetryBudgetRatio().convention(0.1);
+        }
+
+        /**
+         * Number of retries to a host that are allowed regardless of {@link #getRetryBudgetRatio()}.
+         * Unused retries don't accumulate above this number.
+         */
+        public abstract Property<Integer> getRetryBudgetMinRetries();
+
+        {
+            getRetryBudgetMinRetries().convention(10);
+        }
+
+        /**
+         * Max requests per second per host.
+         *
+         * <p>Keys are host patterns, where {@code *} matches any sequence of characters,
+         * for example: {@code api.github.com}, {@code *.example.com}, {@code *}.
+         * An exact host match wins, otherwise the longest matching pattern is used.
+         */
+        public abstract MapProperty<String, Double> getMaxRequestsPerSecondPerHost();
+
+        /**
+         * Max number of requests that can be sent at once after a host was idle.
+         * Keys are host patterns, the same as for {@link #getMaxRequestsPerSecondPerHost()}.
+         *
+         * <p>If there is no matching pattern, the burst equals to the ceiling of requests per second.
+         */
+        public abstract MapProperty<String, Integer> getRequestBurstPerHost();
+
     }
 
 
+    /**
+     * The upper bound of parallel requests per host, taking the adaptive mode into account.
+     */
+    default int getMaxParallelRequestPerHost() {
+        var params = getParameters();
+        if (params.getAdaptiveParallelRequestPerHost().get()) {
+            return Math.max(
+                params.getMaxParallelRequestPerHost().get(),
+                params.getMaxAdaptiveParallelRequestPerHost().get()
+            );
+        }
+        return params.getMaxParallelRequestPerHost().get();
+    }
+
+
+    /**
+     * Executes the {@code action} with a permit for the {@code host}.
+     *
+     * @param permitTimeout max time to wait for the permit, {@code null} means no limit
+     * @throws HostUnavailableException if the host's circuit breaker is open
+     * @throws java.util.concurrent.TimeoutException if the permit wasn't acquired within {@code permitTimeout}
+     */
+    @Nullable
+    <T> T withPermit(String host, @Nullable Duration permitTimeout, Callable<@Nullable T> action);
+
     @Nullable
-    <T> T withPermit(String host, Callable<@Nullable T> action);
+    default <T> T withPermit(String host, Callable<@Nullable T> action) {
+        return withPermit(host, null, action);
+    }
 
     @Nullable
     @SneakyThrows
+    default <T> T withPermit(URI uri, @Nullable Duration permitTimeout, Callable<@Nullable T> action) {
+        uri = CacheKeyGenerator.normalize(uri);
+        var hostName = HttpHost.create(uri).getHostName();
+        return withPermit(hostName, permitTimeout, action);
+    }
+
+    @Nullable
     default <T> T withPermit(URI uri, Callable<@Nullable T> action) {
+        return withPermit(uri, null, action);
+    }
+
+    /**
+     * Withdraws a retry from the host's retry budget.
+     *
+     * @return {@code false} if the retry budget is exhausted, and the request must not be retried
+     */
+    boolean tryAcquireRetry(String host);
+
+    /**
+     * Returns the {@code percentile} (between 0 and 100) of the host's recent response latencies,
+     * or {@code null} if there are not enough samples yet.
+     */
+    @Nullable
+    Duration getLatencyPercentile(String host, double percentile);
+
+    @Nullable
+    @SneakyThrows
+    default Duration getLatencyPercentile(URI uri, double percentile) {
         uri = CacheKeyGenerator.normalize(uri);
         var hostName = HttpHost.create(uri).getHostName();
-        return withPermit(hostName, action);
+        return getLatencyPercentile(hostName, percentile);
     }
 
+    /**
+     * Reports a response received from the host. It's used by the adaptive mode, by the circuit breaker,
+     * and for latency percentiles.
+     *
+     * @param latencyNanos time from sending the request till receiving the response headers
+     */
+    void onResponse(String host, int statusCode, long latencyNanos, boolean hasRetryAfter);
+
 }
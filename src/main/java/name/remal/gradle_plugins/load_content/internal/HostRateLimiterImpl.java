@@ -1,40 +1,243 @@
 package name.remal.gradle_plugins.load_content.internal;
 
+import static java.lang.String.format;
+import static java.util.regex.Pattern.CASE_INSENSITIVE;
+import static java.util.stream.Collectors.joining;
 import static lombok.AccessLevel.PUBLIC;
+import static org.apache.hc.core5.http.HttpStatus.SC_SERVICE_UNAVAILABLE;
+import static org.apache.hc.core5.http.HttpStatus.SC_TOO_MANY_REQUESTS;
 
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 import javax.inject.Inject;
 import lombok.NoArgsConstructor;
 import lombok.SneakyThrows;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.NoHttpResponseException;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.VisibleForTesting;
 import org.jspecify.annotations.Nullable;
 
 @ApiStatus.Internal
 @NoArgsConstructor(access = PUBLIC, onConstructor_ = {@Inject})
 public abstract class HostRateLimiterImpl implements HostRateLimiter {
 
-    private final transient ConcurrentMap<String, Semaphore> semaphores = new ConcurrentHashMap<>();
+    private static final int LATENCY_SAMPLES_WINDOW_SIZE = 256;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+
+    private final transient ConcurrentMap<String, ConcurrencyLimit> concurrencyLimits = new ConcurrentHashMap<>();
+
+    private final transient ConcurrentMap<String, Optional<TokenBucket>> tokenBuckets = new ConcurrentHashMap<>();
+
+    private final transient ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    private final transient ConcurrentMap<String, LatencySamples> latencySamples = new ConcurrentHashMap<>();
+
+    private final transient ConcurrentMap<String, RetryBudget> retryBudgets = new ConcurrentHashMap<>();
 
     @Override
     @Nullable
     @SneakyThrows
-    public <T> T withPermit(String host, Callable<@Nullable T> action) {
-        var semaphore = semaphores.computeIfAbsent(host, __ -> {
-            int maxParallelRequestPerHost = getParameters().getMaxParallelRequestPerHost().get();
+    public <T> T withPermit(String host, @Nullable Duration permitTimeout, Callable<@Nullable T> action) {
+        var permitDeadlineNanos = permitTimeout != null ? System.nanoTime() + permitTimeout.toNanos() : 0;
+        var circuitBreaker = getCircuitBreaker(host);
+        if (!circuitBreaker.tryAcquire()) {
+            throw new HostUnavailableException(format(
+                "Host %s is unavailable after %d consecutive failures, the next attempt is allowed in %s",
+                host,
+                circuitBreaker.getConsecutiveFailures(),
+                circuitBreaker.getRetryIn()
+            ));
+        }
+
+        getRetryBudget(host).onRequest();
+
+        try {
+            var concurrencyLimit = getConcurrencyLimit(host);
+            if (permitTimeout == null) {
+                concurrencyLimit.acquire();
+            } else if (!concurrencyLimit.tryAcquire(permitDeadlineNanos - System.nanoTime())) {
+                throw newPermitTimeoutException(host, permitTimeout);
+            }
+            try {
+                var tokenBucket = tokenBuckets.computeIfAbsent(host, this::createTokenBucket);
+                if (tokenBucket.isPresent()) {
+                    if (permitTimeout == null) {
+                        tokenBucket.get().acquire();
+                    } else if (!tokenBucket.get().tryAcquire(permitDeadlineNanos - System.nanoTime())) {
+                        throw newPermitTimeoutException(host, permitTimeout);
+                    }
+                }
+
+                return action.call();
+
+            } catch (Throwable e) {
+                if (isConnectionFailure(e)) {
+                    circuitBreaker.onFailure();
+                }
+                throw e;
+
+            } finally {
+                concurrencyLimit.release();
+            }
+
+        } finally {
+            circuitBreaker.onCallFinished();
+        }
+    }
+
+    private static TimeoutException newPermitTimeoutException(String host, Duration permitTimeout) {
+        return new TimeoutException(format(
+            "A permit for host %s wasn't acquired within %s",
+            host,
+            permitTimeout
+        ));
+    }
+
+    /**
+     * Only transport failures thrown by the action itself are counted.
+     * Exceptions wrapping I/O errors, like failures to write a local file, are not related to the host.
+     * 5xx responses are counted by {@link #onResponse(String, int, long, boolean)}.
+     */
+    @VisibleForTesting
+    static boolean isConnectionFailure(Throwable exception) {
+        if (Thread.currentThread().isInterrupted()) {
+            // the call was cancelled, for example, a hedged request lost
+            return false;
+        }
+
+        return exception instanceof ConnectException
+            || exception instanceof ConnectTimeoutException
+            || exception instanceof NoRouteToHostException
+            || exception instanceof UnknownHostException
+            || exception instanceof SocketTimeoutException
+            || exception instanceof NoHttpResponseException;
+    }
+
+    @Override
+    public boolean tryAcquireRetry(String host) {
+        return getRetryBudget(host).tryAcquireRetry();
+    }
+
+    private RetryBudget getRetryBudget(String host) {
+        return retryBudgets.computeIfAbsent(host, __ -> new RetryBudget(
+            getParameters().getRetryBudgetRatio().get(),
+            getParameters().getRetryBudgetMinRetries().get()
+        ));
+    }
+
+    private CircuitBreaker getCircuitBreaker(String host) {
+        return circuitBreakers.computeIfAbsent(host, __ -> new CircuitBreaker(
+            getParameters().getCircuitBreakerFailureThreshold().get(),
+            getParameters().getCircuitBreakerOpenDuration().get()
+        ));
+    }
+
+    private ConcurrencyLimit getConcurrencyLimit(String host) {
+        return concurrencyLimits.computeIfAbsent(host, __ -> {
+            var params = getParameters();
+            int maxParallelRequestPerHost = params.getMaxParallelRequestPerHost().get();
             if (maxParallelRequestPerHost <= 0) {
                 throw new IllegalArgumentException("Max parallel requests per host must be greater than 0");
             }
-            return new Semaphore(maxParallelRequestPerHost);
+
+            if (params.getAdaptiveParallelRequestPerHost().get()) {
+                return ConcurrencyLimit.adaptive(
+                    maxParallelRequestPerHost,
+                    params.getMinAdaptiveParallelRequestPerHost().get(),
+                    params.getMaxAdaptiveParallelRequestPerHost().get()
+                );
+            }
+
+            return ConcurrencyLimit.fixed(maxParallelRequestPerHost);
         });
-        semaphore.acquire();
-        try {
-            return action.call();
-        } finally {
-            semaphore.release();
+    }
+
+    @Override
+    @Nullable
+    public Duration getLatencyPercentile(String host, double percentile) {
+        var samples = latencySamples.get(host);
+        if (samples == null || samples.getCount() < MIN_LATENCY_SAMPLES) {
+            return null;
+        }
+        return Duration.ofNanos(samples.getPercentile(percentile));
+    }
+
+    @Override
+    public void onResponse(String host, int statusCode, long latencyNanos, boolean hasRetryAfter) {
+        latencySamples.computeIfAbsent(host, __ -> new LatencySamples(LATENCY_SAMPLES_WINDOW_SIZE)).add(latencyNanos);
+
+        var circuitBreaker = circuitBreakers.get(host);
+        if (circuitBreaker != null) {
+            if (statusCode >= 500) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+        }
+
+        var concurrencyLimit = concurrencyLimits.get(host);
+        if (concurrencyLimit != null) {
+            var isOverloaded = statusCode == SC_TOO_MANY_REQUESTS
+                || statusCode == SC_SERVICE_UNAVAILABLE
+                || hasRetryAfter;
+            concurrencyLimit.onResponse(latencyNanos, isOverloaded);
+        }
+    }
+
+    private Optional<TokenBucket> createTokenBucket(String host) {
+        var maxRequestsPerSecond = findForHost(getParameters().getMaxRequestsPerSecondPerHost().get(), host);
+        if (maxRequestsPerSecond == null) {
+            return Optional.empty();
+        }
+
+        var burst = findForHost(getParameters().getRequestBurstPerHost().get(), host);
+        if (burst == null) {
+            burst = (int) Math.ceil(maxRequestsPerSecond);
+        }
+
+        return Optional.of(new TokenBucket(maxRequestsPerSecond, burst));
+    }
+
+    @Nullable
+    @VisibleForTesting
+    static <V> V findForHost(Map<String, V> valuesByHostPattern, String host) {
+        var exactValue = valuesByHostPattern.get(host);
+        if (exactValue != null) {
+            return exactValue;
+        }
+
+        @Nullable String matchedPattern = null;
+        @Nullable V matchedValue = null;
+        for (var entry : valuesByHostPattern.entrySet()) {
+            var pattern = entry.getKey();
+            if (matchesHostPattern(pattern, host)
+                && (matchedPattern == null || pattern.length() > matchedPattern.length())
+            ) {
+                matchedPattern = pattern;
+                matchedValue = entry.getValue();
+            }
         }
+        return matchedValue;
+    }
+
+    private static boolean matchesHostPattern(String pattern, String host) {
+        var regex = Stream.of(pattern.split("\\*", -1))
+            .map(Pattern::quote)
+            .collect(joining(".*"));
+        return Pattern.compile(regex, CASE_INSENSITIVE).matcher(host).matches();
     }
 
 }
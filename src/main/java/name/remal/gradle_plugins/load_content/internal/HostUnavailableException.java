@@ -0,0 +1,15 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Thrown by {@link HostRateLimiter} if the host's circuit breaker is open.
+ */
+@ApiStatus.Internal
+public class HostUnavailableException extends RuntimeException {
+
+    HostUnavailableException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,52 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import java.util.Arrays;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * A sliding window of the most recent latency samples.
+ */
+@ApiStatus.Internal
+final class LatencySamples {
+
+    private final long[] samples;
+
+    private int count;
+
+    private int next;
+
+    public LatencySamples(int windowSize) {
+        this.samples = new long[windowSize];
+    }
+
+    public synchronized void add(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @param percentile a value between 0 and 100
+     * @return the nearest-rank percentile of the samples, or {@code -1} if there are no samples
+     */
+    public long getPercentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count == 0) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+
+        Arrays.sort(sorted);
+        var rank = (int) Math.ceil(Math.clamp(percentile, 0.0, 100.0) / 100 * sorted.length);
+        return sorted[Math.clamp(rank - 1, 0, sorted.length - 1)];
+    }
+
+}
@@ -0,0 +1,44 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Limits retries to a ratio of requests.
+ *
+ * <p>Every request deposits {@code ratio} to the balance, and every retry withdraws 1.
+ * The balance starts at {@code minRetries} and can't exceed it,
+ * so a short burst of retries is always allowed, but a long outage can't be amplified by retries.
+ */
+@ApiStatus.Internal
+final class RetryBudget {
+
+    private final double ratio;
+
+    private final double maxBalance;
+
+    private double balance;
+
+    public RetryBudget(double ratio, int minRetries) {
+        this.ratio = ratio;
+        this.maxBalance = Math.max(minRetries, 1);
+        this.balance = this.maxBalance;
+    }
+
+    public synchronized void onRequest() {
+        balance = Math.min(balance + ratio, maxBalance);
+    }
+
+    public synchronized boolean tryAcquireRetry() {
+        if (ratio < 0) {
+            return true;
+        }
+
+        if (balance < 1) {
+            return false;
+        }
+
+        balance -= 1;
+        return true;
+    }
+
+}
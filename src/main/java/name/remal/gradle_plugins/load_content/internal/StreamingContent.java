@@ -2,6 +2,7 @@ package name.remal.gradle_plugins.load_content.internal;
 
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.List;
 import org.jetbrains.annotations.ApiStatus;
 import org.jspecify.annotations.Nullable;
 
@@ -16,4 +17,17 @@ public interface StreamingContent extends AutoCloseable {
     @Nullable
     Charset getCharset();
 
+    int getStatusCode();
+
+    @Nullable
+    String getHeader(String name);
+
+    /**
+     * Returns values of all headers with the name, in the order they were received.
+     */
+    default List<String> getHeaders(String name) {
+        var value = getHeader(name);
+        return value != null ? List.of(value) : List.of();
+    }
+
 }
@@ -0,0 +1,98 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.function.LongSupplier;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.VisibleForTesting;
+
+/**
+ * A token bucket that refills with {@code permitsPerSecond} rate, up to {@code burst} tokens.
+ *
+ * <p>Tokens can be borrowed, so the waiting callers are served in order of {@link #reserve()} calls.
+ */
+@ApiStatus.Internal
+final class TokenBucket {
+
+    private final double nanosPerPermit;
+
+    private final double burst;
+
+    private final LongSupplier nanoTime;
+
+    private double tokens;
+
+    private long lastRefillNanos;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    @VisibleForTesting
+    TokenBucket(double permitsPerSecond, int burst, LongSupplier nanoTime) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Permits per second must be greater than 0");
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("Burst must be greater than 0");
+        }
+
+        this.nanosPerPermit = SECONDS.toNanos(1) / permitsPerSecond;
+        this.burst = burst;
+        this.nanoTime = nanoTime;
+        this.tokens = burst;
+        this.lastRefillNanos = nanoTime.getAsLong();
+    }
+
+    /**
+     * Takes a token.
+     *
+     * @return nanos to wait before the token can be used
+     */
+    public long reserve() {
+        return tryReserve(Long.MAX_VALUE);
+    }
+
+    /**
+     * Takes a token, if it can be used within {@code maxWaitNanos}.
+     *
+     * @return nanos to wait before the token can be used, or {@code -1} if no token was taken
+     */
+    public synchronized long tryReserve(long maxWaitNanos) {
+        var now = nanoTime.getAsLong();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) / nanosPerPermit);
+        lastRefillNanos = now;
+
+        var remainingTokens = tokens - 1;
+        var waitNanos = remainingTokens >= 0 ? 0 : (long) Math.ceil(-remainingTokens * nanosPerPermit);
+        if (waitNanos > maxWaitNanos) {
+            return -1;
+        }
+
+        tokens = remainingTokens;
+        return waitNanos;
+    }
+
+    public void acquire() throws InterruptedException {
+        var waitNanos = reserve();
+        if (waitNanos > 0) {
+            NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * @return {@code false} if the token can't be used within the timeout, no token is taken in this case
+     */
+    public boolean tryAcquire(long timeoutNanos) throws InterruptedException {
+        var waitNanos = tryReserve(timeoutNanos);
+        if (waitNanos < 0) {
+            return false;
+        }
+        if (waitNanos > 0) {
+            NANOSECONDS.sleep(waitNanos);
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,59 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import java.io.File;
+import java.util.Random;
+import name.remal.gradle_plugins.load_content.LoadContentPlugin;
+import org.gradle.api.Project;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+
+abstract class AbstractHttpLoaderTest {
+
+    protected final Project project;
+
+    protected AbstractHttpLoaderTest(Project project) {
+        this.project = project;
+    }
+
+
+    protected WireMockServer server;
+
+    protected HttpLoader loader;
+
+    @BeforeEach
+    void beforeEachHttpLoaderTest() {
+        server = new WireMockServer(wireMockConfig().dynamicPort());
+        server.start();
+
+        loader = project.getObjects().newInstance(HttpLoader.class);
+    }
+
+    @AfterEach
+    void afterEachHttpLoaderTest() throws Throwable {
+        for (var registration : project.getGradle().getSharedServices().getRegistrations()) {
+            if (registration.getName().contains(LoadContentPlugin.class.getPackageName())) {
+                var service = registration.getService().get();
+                if (service instanceof AutoCloseable autoCloseable) {
+                    autoCloseable.close();
+                }
+            }
+        }
+
+        server.stop();
+    }
+
+
+    protected File buildFile(String relativePath) {
+        return project.getLayout().getBuildDirectory().file(relativePath).get().getAsFile();
+    }
+
+    protected static byte[] randomBytes(int length) {
+        var bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+}
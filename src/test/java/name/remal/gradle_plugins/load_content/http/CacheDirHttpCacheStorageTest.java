@@ -1,27 +1,67 @@
 package name.remal.gradle_plugins.load_content.http;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static java.lang.System.nanoTime;
+import static java.lang.management.ManagementFactory.getThreadMXBean;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.setLastModifiedTime;
+import static java.nio.file.Files.walk;
+import static java.nio.file.Files.writeString;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static name.remal.gradle_plugins.load_content.http.CacheDirHttpCacheEntrySerializer.RESOURCE_LENGTH_HEADER;
+import static name.remal.gradle_plugins.load_content.http.CacheDirHttpCacheEntrySerializer.RESOURCE_PATH_HEADER;
+import static name.remal.gradle_plugins.toolkit.PathUtils.withShortExclusiveLock;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import com.github.tomakehurst.wiremock.WireMockServer;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheStorageEntry;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.impl.cache.CacheConfig;
+import org.apache.hc.client5.http.impl.cache.CachingHttpClients;
+import org.apache.hc.client5.http.impl.cache.HeapResource;
+import org.apache.hc.client5.http.impl.cache.HttpByteArrayCacheEntrySerializer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.message.HeaderGroup;
 import org.jspecify.annotations.Nullable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
 import org.junit.jupiter.api.io.CleanupMode;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -63,6 +103,22 @@ class CacheDirHttpCacheStorageTest {
         assertNull(storage.restore(key1));
     }
 
+    @Test
+    void storeAfterDeleteDoesntReuseVersion() {
+        storage.store(key1, longToBytes(1));
+        var cas = storage.getForUpdateCAS(key1);
+        assertNotNull(cas);
+
+        storage.delete(key1);
+        storage.store(key1, longToBytes(2));
+
+        var newCas = storage.getForUpdateCAS(key1);
+        assertNotNull(newCas);
+        assertTrue(newCas.getVersion() > cas.getVersion(), "version was reused");
+        assertFalse(storage.updateCAS(key1, cas, longToBytes(3)));
+        assertEquals(2, bytesToLong(storage.restore(key1)));
+    }
+
     @Test
     void casUpdateSuccessIncrementsVersion() {
         storage.store(key1, "v1".getBytes(UTF_8));
@@ -154,6 +210,485 @@ class CacheDirHttpCacheStorageTest {
         assertEquals(expected, bytesToLong(finalBytes));
     }
 
+    @Test
+    void readsDontWaitForLockedWriter(@TempDir(cleanup = CleanupMode.ALWAYS) Path root) throws Exception {
+        var lockingStorage = new CacheDirHttpCacheStorage(root, 3);
+        var key = lockingStorage.digestToStorageKey("key");
+        lockingStorage.store(key, "value".getBytes(UTF_8));
+
+        var lockPath = getLockPath(root, key);
+        var isLocked = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        try (var pool = newFixedThreadPool(2)) {
+            var lockFuture = pool.submit(() -> withShortExclusiveLock(lockPath, () -> {
+                isLocked.countDown();
+                release.await();
+                return null;
+            }));
+            try {
+                assertTrue(isLocked.await(5, SECONDS));
+
+                var readFuture = pool.submit(() -> lockingStorage.restore(key));
+                assertArrayEquals("value".getBytes(UTF_8), readFuture.get(5, SECONDS));
+
+            } finally {
+                release.countDown();
+            }
+            lockFuture.get(5, SECONDS);
+        }
+    }
+
+    @Test
+    void concurrentReadersSeeConsistentEntries() throws Exception {
+        storage.store(key1, longToBytes(0));
+
+        var readers = 32;
+        var updates = 200;
+        var start = new CyclicBarrier(readers + 1);
+        var isWriterDone = new AtomicBoolean();
+
+        try (var pool = newFixedThreadPool(readers + 1)) {
+            var futures = new ArrayList<Future<?>>(readers + 1);
+            futures.add(pool.submit((Callable<Void>) () -> {
+                start.await();
+                try {
+                    for (var i = 0; i < updates; i++) {
+                        var cas = storage.getForUpdateCAS(key1);
+                        assertNotNull(cas);
+                        assertTrue(storage.updateCAS(key1, cas, longToBytes(bytesToLong(cas.getBytes()) + 1)));
+                    }
+                } finally {
+                    isWriterDone.set(true);
+                }
+                return null;
+            }));
+
+            for (var r = 0; r < readers; r++) {
+                futures.add(pool.submit((Callable<Void>) () -> {
+                    start.await();
+
+                    var lastValue = 0L;
+                    while (!isWriterDone.get()) {
+                        var cas = storage.getForUpdateCAS(key1);
+                        assertNotNull(cas);
+
+                        // the only writer keeps the value equal to the version minus one:
+                        var value = bytesToLong(cas.getBytes());
+                        assertTrue(value >= cas.getVersion() - 1, "value is older than version");
+                        assertTrue(value >= lastValue, "value went back");
+                        lastValue = value;
+                    }
+                    return null;
+                }));
+            }
+
+            for (var future : futures) {
+                future.get(60, SECONDS);
+            }
+        }
+
+        assertEquals(updates, bytesToLong(storage.restore(key1)));
+    }
+
+    @Test
+    void optimisticReadsScaleBetterThanLockedReads(@TempDir(cleanup = CleanupMode.ALWAYS) Path root) throws Exception {
+        var readStorage = new CacheDirHttpCacheStorage(root, 3);
+        var key = readStorage.digestToStorageKey("key");
+        readStorage.store(key, longToBytes(1));
+        var lockPath = getLockPath(root, key);
+
+        var readers = 32;
+        var reads = 200;
+        var optimisticNanos = measureConcurrentReads(readers, reads, () -> readStorage.restore(key));
+        var lockedNanos = measureConcurrentReads(readers, reads, () ->
+            withShortExclusiveLock(lockPath, () -> readStorage.restore(key))
+        );
+
+        assertTrue(
+            optimisticNanos < lockedNanos,
+            String.format(
+                "%d readers: optimistic reads took %d ms, locked reads took %d ms",
+                readers,
+                optimisticNanos / 1_000_000,
+                lockedNanos / 1_000_000
+            )
+        );
+    }
+
+    private static long measureConcurrentReads(
+        int readers,
+        int reads,
+        Callable<byte @Nullable []> read
+    ) throws Exception {
+        var start = new CyclicBarrier(readers + 1);
+        try (var pool = newFixedThreadPool(readers)) {
+            var futures = new ArrayList<Future<?>>(readers);
+            for (var r = 0; r < readers; r++) {
+                futures.add(pool.submit((Callable<Void>) () -> {
+                    start.await();
+                    for (var i = 0; i < reads; i++) {
+                        assertEquals(1, bytesToLong(read.call()));
+                    }
+                    return null;
+                }));
+            }
+
+            start.await();
+            var startNanos = nanoTime();
+            for (var future : futures) {
+                future.get(60, SECONDS);
+            }
+            return nanoTime() - startNanos;
+        }
+    }
+
+    @Test
+    void largeResourcesAreStoredAsSeparateFiles(@TempDir(cleanup = CleanupMode.ALWAYS) Path root) throws Exception {
+        var spoolingStorage = new CacheDirHttpCacheStorage(root, 3, 4);
+
+        var resourceFactory = spoolingStorage.getResourceFactory();
+        assertInstanceOf(HeapResource.class, resourceFactory.generate("small", "abc".getBytes(UTF_8)));
+
+        var resource = resourceFactory.generate("large", "hello world".getBytes(UTF_8));
+        assertInstanceOf(CacheDirResource.class, resource);
+
+        var now = Instant.now();
+        var entry = new HttpCacheEntry(
+            now,
+            now,
+            "GET",
+            "https://example.com/",
+            new HeaderGroup(),
+            200,
+            new HeaderGroup(),
+            resource,
+            Set.of()
+        );
+        spoolingStorage.putEntry("key", entry);
+
+        var restoredEntry = spoolingStorage.getEntry("key");
+        assertNotNull(restoredEntry);
+        var restoredResource = restoredEntry.getResource();
+        assertInstanceOf(CacheDirResource.class, restoredResource);
+        assertEquals(11, restoredResource.length());
+        assertArrayEquals("hello world".getBytes(UTF_8), restoredResource.get());
+        assertNull(restoredEntry.getFirstHeader("X-Load-Content-Resource-Path"));
+    }
+
+    @Test
+    void readsThroughCacheBufferAtMostMaxObjectSize(@TempDir(cleanup = CleanupMode.ALWAYS) Path root) throws Throwable {
+        assumeTrue(getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        var threadMXBean = (com.sun.management.ThreadMXBean) getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        var maxObjectSize = 256 * 1024;
+        var smallBody = new byte[maxObjectSize / 2];
+        var largeBody = new byte[32 * maxObjectSize];
+        var random = new Random(1);
+        random.nextBytes(smallBody);
+        random.nextBytes(largeBody);
+
+        var server = new WireMockServer(wireMockConfig().dynamicPort());
+        server.start();
+        try {
+            server.stubFor(get("/small").willReturn(
+                ok().withHeader("Cache-Control", "max-age=3600").withBody(smallBody)
+            ));
+            server.stubFor(get("/large").willReturn(
+                ok().withHeader("Cache-Control", "max-age=3600").withBody(largeBody)
+            ));
+
+            var spoolingStorage = new CacheDirHttpCacheStorage(root, 3, 1024);
+            var cacheConfig = CacheConfig.custom()
+                .setSharedCache(false)
+                .setMaxObjectSize(maxObjectSize)
+                .build();
+            try (var client = CachingHttpClients.custom()
+                .setCacheConfig(cacheConfig)
+                .setHttpCacheStorage(spoolingStorage)
+                .setResourceFactory(spoolingStorage.getResourceFactory())
+                .build()
+            ) {
+                readBody(client, server.url("/small"));
+
+                var cacheHitAllocated = getAllocatedBytes(threadMXBean, () -> readBody(client, server.url("/small")));
+                assertTrue(
+                    cacheHitAllocated < 4L * maxObjectSize,
+                    "Allocated on cache hit: " + cacheHitAllocated
+                );
+                server.verify(1, getRequestedFor(urlEqualTo("/small")));
+
+                for (var i = 0; i < 2; i++) {
+                    var allocated = getAllocatedBytes(threadMXBean, () -> readBody(client, server.url("/large")));
+                    assertTrue(
+                        allocated < largeBody.length / 4,
+                        "Allocated on reading a response larger than max object size: " + allocated
+                    );
+                }
+                server.verify(2, getRequestedFor(urlEqualTo("/large")));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static long getAllocatedBytes(com.sun.management.ThreadMXBean threadMXBean, Executable action)
+        throws Throwable {
+        var threadId = Thread.currentThread().threadId();
+        var before = threadMXBean.getThreadAllocatedBytes(threadId);
+        action.execute();
+        return threadMXBean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private static void readBody(CloseableHttpClient client, String url) throws Exception {
+        client.execute(new HttpGet(url), response -> {
+            assertEquals(200, response.getCode());
+            try (var in = response.getEntity().getContent()) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return null;
+        });
+    }
+
+    @Test
+    void resourceReferenceHeadersSentByServerAreIgnored(@TempDir(cleanup = CleanupMode.ALWAYS) Path root)
+        throws Exception {
+        var secretFile = root.resolve("secret.txt");
+        writeString(secretFile, "secret");
+
+        var cacheStorage = new CacheDirHttpCacheStorage(root, 3);
+        var rootDir = CacheDirHttpCacheStorage.getRootDir(root);
+        var responseHeaders = new HeaderGroup();
+        responseHeaders.addHeader(new BasicHeader(RESOURCE_PATH_HEADER, rootDir.relativize(secretFile).toString()));
+        responseHeaders.addHeader(new BasicHeader(RESOURCE_LENGTH_HEADER, "6"));
+        cacheStorage.putEntry("key", newEntry(new HeapResource("body".getBytes(UTF_8)), responseHeaders));
+
+        var entry = cacheStorage.getEntry("key");
+        assertNotNull(entry);
+        assertFalse(entry.containsHeader(RESOURCE_PATH_HEADER));
+        assertFalse(entry.containsHeader(RESOURCE_LENGTH_HEADER));
+        assertArrayEquals("body".getBytes(UTF_8), getEntryBody(cacheStorage, "key"));
+
+        // entries stored before the headers were removed:
+        var serialized = HttpByteArrayCacheEntrySerializer.INSTANCE.serialize(new HttpCacheStorageEntry(
+            "key",
+            newEntry(new HeapResource("body".getBytes(UTF_8)), responseHeaders)
+        ));
+        var serializer = new CacheDirHttpCacheEntrySerializer(rootDir);
+        assertThrows(ResourceIOException.class, () -> serializer.deserialize(serialized));
+    }
+
+    @Test
+    void memoryCacheIsInvalidatedByWrites(@TempDir(cleanup = CleanupMode.ALWAYS) Path root) throws Exception {
+        var cachedStorage = new CacheDirHttpCacheStorage(root, 3, 1024, 1024 * 1024);
+        var memoryCachedStorage = new MemoryCachedHttpCacheStorage(cachedStorage);
+        var statistics = cachedStorage.getMemoryCacheStatistics();
+        assertNotNull(statistics);
+
+        memoryCachedStorage.putEntry("key", newEntry("v1"));
+        assertArrayEquals("v1".getBytes(UTF_8), getEntryBody(memoryCachedStorage, "key"));
+        assertArrayEquals("v1".getBytes(UTF_8), getEntryBody(memoryCachedStorage, "key"));
+        assertEquals(1, statistics.getHits());
+
+        memoryCachedStorage.putEntry("key", newEntry("v2"));
+        assertArrayEquals("v2".getBytes(UTF_8), getEntryBody(memoryCachedStorage, "key"));
+
+        memoryCachedStorage.updateEntry("key", existing -> newEntry("v3"));
+        assertArrayEquals("v3".getBytes(UTF_8), getEntryBody(memoryCachedStorage, "key"));
+
+        memoryCachedStorage.removeEntry("key");
+        assertNull(memoryCachedStorage.getEntry("key"));
+    }
+
+    @Test
+    void cleanupDeletesLeastRecentlyAccessedEntriesAndOrphanResources(
+        @TempDir(cleanup = CleanupMode.ALWAYS) Path root
+    ) throws Exception {
+        var spoolingStorage = new CacheDirHttpCacheStorage(root, 3, 4);
+        var resourceFactory = spoolingStorage.getResourceFactory();
+        var keys = List.of("a", "b", "c");
+        for (var i = 0; i < keys.size(); i++) {
+            var key = keys.get(i);
+            var resource = resourceFactory.generate(key, ("body of " + key).getBytes(UTF_8));
+            spoolingStorage.putEntry(key, newEntry(resource));
+
+            // reads touch the access time only if it's older than its resolution:
+            var accessTime = Instant.now().minus(Duration.ofDays(1)).plus(Duration.ofMinutes(i));
+            var lockPath = getLockPath(root, spoolingStorage.digestToStorageKey(key));
+            setLastModifiedTime(lockPath, FileTime.from(accessTime));
+        }
+        assertNotNull(spoolingStorage.getEntry("a"));
+
+        var orphanResource = (CacheDirResource) resourceFactory.generate("orphan", "orphan".getBytes(UTF_8));
+        var orphanPath = orphanResource.getFile().toPath();
+        setLastModifiedTime(orphanPath, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+
+        long totalSize;
+        try (var paths = walk(root)) {
+            totalSize = paths
+                .filter(path -> path.toString().endsWith(".bin") || path.toString().endsWith(".body"))
+                .filter(path -> !path.equals(orphanPath))
+                .mapToLong(path -> path.toFile().length())
+                .sum();
+        }
+
+        spoolingStorage.cleanup(totalSize - 1, Duration.ofHours(1));
+
+        assertNull(spoolingStorage.getEntry("b"));
+        assertNotNull(spoolingStorage.getEntry("a"));
+        assertNotNull(spoolingStorage.getEntry("c"));
+        assertFalse(exists(orphanPath));
+    }
+
+    @Test
+    void cleanupLeavesNoOrphanFiles(@TempDir(cleanup = CleanupMode.ALWAYS) Path root) throws Exception {
+        var cleanupStorage = new CacheDirHttpCacheStorage(root, 3);
+        var keptKey = cleanupStorage.digestToStorageKey("kept");
+        var deletedKey = cleanupStorage.digestToStorageKey("deleted");
+        var recentlyDeletedKey = cleanupStorage.digestToStorageKey("recently-deleted");
+        for (var key : List.of(keptKey, deletedKey, recentlyDeletedKey)) {
+            cleanupStorage.store(key, "value".getBytes(UTF_8));
+        }
+        cleanupStorage.delete(deletedKey);
+        cleanupStorage.delete(recentlyDeletedKey);
+
+        var deletedAt = FileTime.from(Instant.now().minus(Duration.ofDays(1)));
+        try (var paths = walk(CacheDirHttpCacheStorage.getRootDir(root))) {
+            for (var path : paths.filter(path -> path.getFileName().toString().startsWith(deletedKey)).toList()) {
+                setLastModifiedTime(path, deletedAt);
+            }
+        }
+
+        cleanupStorage.cleanup(0, Duration.ZERO);
+
+        List<String> fileNames;
+        try (var paths = walk(CacheDirHttpCacheStorage.getRootDir(root))) {
+            fileNames = paths
+                .filter(Files::isRegularFile)
+                .map(path -> path.getFileName().toString())
+                .sorted()
+                .toList();
+        }
+        assertEquals(
+            List.of(
+                keptKey + ".bin",
+                keptKey + ".lock",
+                keptKey + ".version",
+                recentlyDeletedKey + ".lock",
+                recentlyDeletedKey + ".version"
+            ).stream().sorted().toList(),
+            fileNames
+        );
+
+        cleanupStorage.store(deletedKey, "new value".getBytes(UTF_8));
+        assertArrayEquals("new value".getBytes(UTF_8), cleanupStorage.restore(deletedKey));
+    }
+
+    @Test
+    void identicalBodiesAreStoredOnce(@TempDir(cleanup = CleanupMode.ALWAYS) Path root) throws Exception {
+        var spoolingStorage = new CacheDirHttpCacheStorage(root, 3, 4);
+        var resourceFactory = spoolingStorage.getResourceFactory();
+        var resource1 = (CacheDirResource) resourceFactory.generate("1", "same body".getBytes(UTF_8));
+        var resource2 = (CacheDirResource) resourceFactory.generate("2", "same body".getBytes(UTF_8));
+        assertEquals(resource1.getFile(), resource2.getFile());
+
+        spoolingStorage.putEntry("a", newEntry(resource1));
+        spoolingStorage.putEntry("b", newEntry(resource2));
+        spoolingStorage.removeEntry("a");
+        spoolingStorage.cleanup(0, Duration.ZERO);
+
+        var entry = spoolingStorage.getEntry("b");
+        assertNotNull(entry);
+        var resource = entry.getResource();
+        assertNotNull(resource);
+        assertArrayEquals("same body".getBytes(UTF_8), resource.get());
+
+        spoolingStorage.removeEntry("b");
+        Thread.sleep(10);
+        spoolingStorage.cleanup(0, Duration.ZERO);
+        assertFalse(resource1.getFile().exists());
+    }
+
+    @Test
+    void cleanupDeletesLeftoversOfCrashedWritesAndInterruptedCleanups(
+        @TempDir(cleanup = CleanupMode.ALWAYS) Path root
+    ) throws Exception {
+        var spoolingStorage = new CacheDirHttpCacheStorage(root, 3, 4);
+        var resourceFactory = spoolingStorage.getResourceFactory();
+        var resource = (CacheDirResource) resourceFactory.generate("a", "body of a".getBytes(UTF_8));
+        spoolingStorage.putEntry("a", newEntry(resource));
+        var resourcePath = resource.getFile().toPath();
+        var resourceDir = resourcePath.getParent();
+
+        var oldTime = FileTime.from(Instant.now().minus(Duration.ofDays(1)));
+        var oldTempPath = resourceDir.resolve("old.uuid.temp");
+        var oldDeletedPath = resourceDir.resolve("old.body.deleted");
+        var recentTempPath = resourceDir.resolve("recent.uuid.temp");
+        for (var path : List.of(oldTempPath, oldDeletedPath, recentTempPath)) {
+            writeString(path, "leftover");
+        }
+        setLastModifiedTime(oldTempPath, oldTime);
+        setLastModifiedTime(oldDeletedPath, oldTime);
+
+        // a cleanup was interrupted after it had moved away a file that was reused concurrently:
+        var movedResourcePath = resourceDir.resolve(resourcePath.getFileName() + ".deleted");
+        Files.move(resourcePath, movedResourcePath);
+        setLastModifiedTime(movedResourcePath, oldTime);
+
+        spoolingStorage.cleanup(0, Duration.ofHours(1));
+
+        assertFalse(exists(oldTempPath));
+        assertFalse(exists(oldDeletedPath));
+        assertTrue(exists(recentTempPath));
+        assertFalse(exists(movedResourcePath));
+        assertTrue(exists(resourcePath));
+
+        var entry = spoolingStorage.getEntry("a");
+        assertNotNull(entry);
+        var storedResource = entry.getResource();
+        assertNotNull(storedResource);
+        assertArrayEquals("body of a".getBytes(UTF_8), storedResource.get());
+    }
+
+    private static Path getLockPath(Path root, String storageKey) {
+        return CacheDirHttpCacheStorage.getRootDir(root)
+            .resolve(storageKey.substring(0, 2))
+            .resolve(storageKey.substring(2, 4))
+            .resolve(storageKey + ".lock");
+    }
+
+    private static HttpCacheEntry newEntry(String body) {
+        return newEntry(new HeapResource(body.getBytes(UTF_8)));
+    }
+
+    private static HttpCacheEntry newEntry(Resource resource) {
+        return newEntry(resource, new HeaderGroup());
+    }
+
+    private static HttpCacheEntry newEntry(Resource resource, HeaderGroup responseHeaders) {
+        var now = Instant.now();
+        return new HttpCacheEntry(
+            now,
+            now,
+            "GET",
+            "https://example.com/",
+            new HeaderGroup(),
+            200,
+            responseHeaders,
+            resource,
+            Set.of()
+        );
+    }
+
+    private static byte @Nullable [] getEntryBody(HttpCacheStorage storage, String key) throws Exception {
+        var entry = storage.getEntry(key);
+        assertNotNull(entry);
+        var resource = entry.getResource();
+        assertNotNull(resource);
+        return resource.get();
+    }
+
     private static byte[] longToBytes(long v) {
         return ByteBuffer.allocate(Long.BYTES).putLong(v).array();
     }
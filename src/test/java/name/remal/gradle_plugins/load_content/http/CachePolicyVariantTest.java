@@ -0,0 +1,106 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.notFound;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static name.remal.gradle_plugins.load_content.http.CachePolicyVariant.setCachePolicy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import java.time.Duration;
+import java.util.Set;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.impl.cache.BasicHttpCacheStorage;
+import org.apache.hc.client5.http.impl.cache.CacheConfig;
+import org.apache.hc.client5.http.impl.cache.CachingHttpClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CachePolicyVariantTest {
+
+    WireMockServer server;
+
+    CloseableHttpClient client;
+
+    @BeforeEach
+    void beforeEach() {
+        server = new WireMockServer(wireMockConfig().dynamicPort());
+        server.start();
+
+        var cacheConfig = CacheConfig.custom()
+            .setSharedCache(false)
+            .setHeuristicCachingEnabled(false)
+            .setAsynchronousWorkers(1)
+            .build();
+        client = CachingHttpClients.custom()
+            .setCacheConfig(cacheConfig)
+            .setHttpCacheStorage(new BasicHttpCacheStorage(cacheConfig))
+            .addResponseInterceptorLast(NegativeCache.INSTANCE)
+            .addResponseInterceptorLast(StaleWhileRevalidate.INSTANCE)
+            .build();
+    }
+
+    @AfterEach
+    void afterEach() throws Exception {
+        client.close();
+        server.stop();
+    }
+
+
+    @Test
+    void negativeResponsesAreServedFromCacheOnlyToLoadersWithTheSamePolicy() throws Exception {
+        server.stubFor(get("/absent").willReturn(notFound()));
+        var hourPolicy = new NegativeCache.Policy(Set.of(404, 410), Duration.ofHours(1));
+        var dayPolicy = new NegativeCache.Policy(Set.of(404, 410), Duration.ofDays(1));
+
+        assertEquals(404, execute("/absent", hourPolicy, null));
+        assertEquals(404, execute("/absent", hourPolicy, null));
+        server.verify(1, getRequestedFor(urlEqualTo("/absent")));
+
+        assertEquals(404, execute("/absent", null, null));
+        assertEquals(404, execute("/absent", null, null));
+        server.verify(3, getRequestedFor(urlEqualTo("/absent")));
+
+        assertEquals(404, execute("/absent", dayPolicy, null));
+        assertEquals(404, execute("/absent", dayPolicy, null));
+        assertEquals(404, execute("/absent", hourPolicy, null));
+        server.verify(4, getRequestedFor(urlEqualTo("/absent")));
+    }
+
+    @Test
+    void staleResponsesAreServedOnlyToLoadersWithStaleWhileRevalidate() throws Exception {
+        server.stubFor(get("/resource").willReturn(ok("content").withHeader("Cache-Control", "max-age=1")));
+
+        assertEquals(200, execute("/resource", null, Duration.ofHours(1)));
+        server.verify(1, getRequestedFor(urlEqualTo("/resource")));
+
+        // let the cached response become stale:
+        Thread.sleep(2_000);
+
+        assertEquals(200, execute("/resource", null, null));
+        server.verify(2, getRequestedFor(urlEqualTo("/resource")));
+    }
+
+    private int execute(
+        String path,
+        NegativeCache.@Nullable Policy negativeCache,
+        @Nullable Duration staleWhileRevalidate
+    ) throws Exception {
+        var request = new HttpGet(server.url(path));
+        var context = HttpClientContext.create();
+        setCachePolicy(request, context, negativeCache, staleWhileRevalidate);
+        return client.execute(request, context, response -> {
+            EntityUtils.consume(response.getEntity());
+            return response.getCode();
+        });
+    }
+
+}
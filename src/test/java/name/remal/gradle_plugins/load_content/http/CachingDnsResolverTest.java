@@ -0,0 +1,74 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.SneakyThrows;
+import org.apache.hc.client5.http.DnsResolver;
+import org.junit.jupiter.api.Test;
+
+class CachingDnsResolverTest {
+
+    final AtomicLong nanoTime = new AtomicLong();
+
+    final AtomicInteger resolutions = new AtomicInteger();
+
+    final DnsResolver delegate = new DnsResolver() {
+        @Override
+        @SneakyThrows
+        public InetAddress[] resolve(String host) {
+            var resolution = resolutions.incrementAndGet();
+            return new InetAddress[]{InetAddress.getByAddress(host, new byte[]{10, 0, 0, (byte) resolution})};
+        }
+
+        @Override
+        public String resolveCanonicalHostname(String host) {
+            return host;
+        }
+    };
+
+    @Test
+    @SneakyThrows
+    void addressesAreResolvedAgainAfterTtl() {
+        var resolver = new CachingDnsResolver(delegate, Duration.ofSeconds(30), nanoTime::get);
+
+        var first = resolver.resolve("example.com");
+        assertArrayEquals(first, resolver.resolve("EXAMPLE.com"));
+        assertEquals(1, resolutions.get());
+
+        nanoTime.addAndGet(Duration.ofSeconds(29).toNanos());
+        assertArrayEquals(first, resolver.resolve("example.com"));
+        assertEquals(1, resolutions.get());
+
+        nanoTime.addAndGet(Duration.ofSeconds(1).toNanos());
+        var second = resolver.resolve("example.com");
+        assertEquals(2, resolutions.get());
+        assertEquals(2, second[0].getAddress()[3]);
+    }
+
+    @Test
+    @SneakyThrows
+    void zeroTtlDisablesCaching() {
+        var resolver = new CachingDnsResolver(delegate, Duration.ZERO, nanoTime::get);
+
+        resolver.resolve("example.com");
+        resolver.resolve("example.com");
+        assertEquals(2, resolutions.get());
+    }
+
+    @Test
+    @SneakyThrows
+    void noTtlCachesForever() {
+        var resolver = new CachingDnsResolver(delegate, null, nanoTime::get);
+
+        resolver.resolve("example.com");
+        nanoTime.addAndGet(Duration.ofDays(365).toNanos());
+        resolver.resolve("example.com");
+        assertEquals(1, resolutions.get());
+    }
+
+}
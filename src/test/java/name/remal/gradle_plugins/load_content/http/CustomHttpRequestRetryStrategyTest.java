@@ -0,0 +1,44 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static org.apache.hc.core5.http.HttpHeaders.RETRY_AFTER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.Test;
+
+class CustomHttpRequestRetryStrategyTest {
+
+    final CustomHttpRequestRetryStrategy strategy = new CustomHttpRequestRetryStrategy(
+        5,
+        Duration.ofMillis(100),
+        Duration.ofMillis(500)
+    );
+
+    @Test
+    void backoffIsJitteredAndGrowsExponentially() {
+        for (var i = 0; i < 1_000; i++) {
+            assertInRange(strategy.getBackoffInterval(1).toMilliseconds(), 100);
+            assertInRange(strategy.getBackoffInterval(2).toMilliseconds(), 200);
+            assertInRange(strategy.getBackoffInterval(3).toMilliseconds(), 400);
+            assertInRange(strategy.getBackoffInterval(4).toMilliseconds(), 500);
+            assertInRange(strategy.getBackoffInterval(100).toMilliseconds(), 500);
+        }
+    }
+
+    @Test
+    void retryAfterIsHonoredAndCapped() {
+        var response = new BasicHttpResponse(503);
+        response.setHeader(RETRY_AFTER, "0");
+        assertEquals(0, strategy.getRetryInterval(response, 1, null).toMilliseconds());
+
+        response.setHeader(RETRY_AFTER, "3600");
+        assertEquals(500, strategy.getRetryInterval(response, 1, null).toMilliseconds());
+    }
+
+    private static void assertInRange(long value, long max) {
+        assertTrue(value >= 0 && value <= max, () -> value + " is not in [0, " + max + "]");
+    }
+
+}
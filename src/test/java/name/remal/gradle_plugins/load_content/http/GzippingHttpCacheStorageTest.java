@@ -0,0 +1,78 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.hc.core5.http.HttpHeaders.CONTENT_ENCODING;
+import static org.apache.hc.core5.http.HttpHeaders.CONTENT_TYPE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.Set;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.impl.cache.BasicHttpCacheStorage;
+import org.apache.hc.client5.http.impl.cache.CacheConfig;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.message.HeaderGroup;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+class GzippingHttpCacheStorageTest {
+
+    final GzippingHttpCacheStorage storage = new GzippingHttpCacheStorage(
+        new BasicHttpCacheStorage(CacheConfig.DEFAULT)
+    );
+
+    @Test
+    void uncompressedContentIsGzipped() throws Exception {
+        assertTrue(store("text", null, "text/plain").isGzipped());
+        assertTrue(store("svg", null, "image/svg+xml").isGzipped());
+        assertTrue(store("unknown", "identity", null).isGzipped());
+    }
+
+    @Test
+    void compressedContentIsStoredAsIs() throws Exception {
+        assertFalse(store("brotli", "br", "text/plain").isGzipped());
+        assertFalse(store("zip", null, "application/zip").isGzipped());
+        assertFalse(store("png", null, "image/png").isGzipped());
+        assertFalse(store("epub", null, "application/epub+zip").isGzipped());
+    }
+
+    private GzippedHeapResource store(
+        String key,
+        @Nullable String contentEncoding,
+        @Nullable String contentType
+    ) throws Exception {
+        var headers = new HeaderGroup();
+        if (contentEncoding != null) {
+            headers.addHeader(new BasicHeader(CONTENT_ENCODING, contentEncoding));
+        }
+        if (contentType != null) {
+            headers.addHeader(new BasicHeader(CONTENT_TYPE, contentType));
+        }
+
+        var content = ("content of " + key).getBytes(UTF_8);
+        var resource = (GzippedHeapResource) GzippedHeapResourceFactory.INSTANCE.generate(key, content);
+        var now = Instant.now();
+        storage.putEntry(key, new HttpCacheEntry(
+            now,
+            now,
+            "GET",
+            "https://example.com/" + key,
+            new HeaderGroup(),
+            200,
+            headers,
+            resource,
+            Set.of()
+        ));
+
+        var entry = storage.getEntry(key);
+        assertNotNull(entry);
+        var storedResource = entry.getResource();
+        assertNotNull(storedResource);
+        assertArrayEquals(content, storedResource.get());
+        return resource;
+    }
+
+}
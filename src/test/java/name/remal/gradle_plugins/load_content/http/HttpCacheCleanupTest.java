@@ -0,0 +1,57 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.setLastModifiedTime;
+import static java.nio.file.Files.write;
+import static name.remal.gradle_plugins.load_content.http.CacheDirHttpCacheStorage.getRootDir;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.CleanupMode;
+import org.junit.jupiter.api.io.TempDir;
+
+class HttpCacheCleanupTest {
+
+    @TempDir(cleanup = CleanupMode.ALWAYS)
+    Path root;
+
+    @Test
+    void cleanupRunsAtMostOncePerInterval() {
+        assertTrue(HttpCacheCleanup.cleanupIfNeeded(root, null, 0));
+        assertFalse(HttpCacheCleanup.cleanupIfNeeded(root, null, 0));
+    }
+
+    @Test
+    void unusedDirsOfPreviousVersionsAreDeleted() throws Exception {
+        var oldVersionDir = createDirectories(root.resolve("old-version").resolve("ab"));
+        var oldLastModified = FileTime.from(
+            Instant.now().minus(HttpCacheCleanup.OLD_VERSION_RETENTION).minusSeconds(60)
+        );
+        setLastModifiedTime(oldVersionDir, oldLastModified);
+        setLastModifiedTime(oldVersionDir.getParent(), oldLastModified);
+        var recentVersionDir = createDirectories(root.resolve("recent-version"));
+
+        var usedVersionDir = createDirectories(root.resolve("used-version").resolve("cd"));
+        var usedVersionFile = write(usedVersionDir.resolve("entry.bin"), new byte[0]);
+        setLastModifiedTime(usedVersionDir, oldLastModified);
+        setLastModifiedTime(usedVersionDir.getParent(), oldLastModified);
+
+        var currentVersionDir = createDirectories(getRootDir(root));
+        setLastModifiedTime(currentVersionDir, FileTime.from(
+            Instant.now().minus(HttpCacheCleanup.OLD_VERSION_RETENTION).minusSeconds(60)
+        ));
+
+        assertTrue(HttpCacheCleanup.cleanupIfNeeded(root, null, 0));
+
+        assertFalse(exists(oldVersionDir.getParent()));
+        assertTrue(exists(recentVersionDir));
+        assertTrue(exists(usedVersionFile));
+        assertTrue(exists(currentVersionDir));
+    }
+
+}
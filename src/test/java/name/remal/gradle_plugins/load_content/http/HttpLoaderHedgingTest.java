@@ -0,0 +1,101 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.notFound;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
+import static name.remal.gradle_plugins.load_content.internal.HostRateLimiter.getHostRateLimiterFor;
+import static org.apache.hc.core5.http.HttpHeaders.CACHE_CONTROL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.time.Duration;
+import name.remal.gradle_plugins.load_content.internal.HostRateLimiter;
+import org.gradle.api.Project;
+import org.junit.jupiter.api.Test;
+
+class HttpLoaderHedgingTest extends AbstractHttpLoaderTest {
+
+    static final Duration SLOW_RESPONSE_DELAY = Duration.ofSeconds(5);
+
+    HttpLoaderHedgingTest(Project project) {
+        super(project);
+    }
+
+
+    @Test
+    void fasterHedgedResponseWins() {
+        stubSlowThenFast();
+
+        var startNanos = System.nanoTime();
+        var content = load(Duration.ofMillis(200));
+        var elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+
+        assertEquals("fast", content);
+        assertTrue(elapsed.compareTo(SLOW_RESPONSE_DELAY) < 0, "elapsed: " + elapsed);
+        server.verify(2, getRequestedFor(urlPathEqualTo("/content")));
+    }
+
+    @Test
+    void slowerRequestIsCancelledAndReleasesItsPermit() {
+        stubSlowThenFast();
+
+        assertEquals("fast", load(Duration.ofMillis(200)));
+
+        var hostRateLimiter = getHostRateLimiterFor(project.getGradle());
+        withAllPermits(hostRateLimiter, URI.create(server.url("/")), hostRateLimiter.getMaxParallelRequestPerHost());
+    }
+
+    @Test
+    void fastFailureIsNotHedged() {
+        server.stubFor(get("/content").willReturn(notFound()));
+
+        var exception = assertThrows(HttpLoadException.class, () -> load(Duration.ofSeconds(1)));
+
+        assertEquals(404, exception.getStatusCode());
+        server.verify(1, getRequestedFor(urlPathEqualTo("/content")));
+    }
+
+
+    private String load(Duration hedgingMinDelay) {
+        return loader.load(params -> {
+            params.uri(server.url("/content"));
+            params.getHedging().set(true);
+            params.getHedgingMinDelay().set(hedgingMinDelay);
+        }).get().asString();
+    }
+
+    private void stubSlowThenFast() {
+        server.stubFor(get("/content").inScenario("hedging")
+            .whenScenarioStateIs(STARTED)
+            .willReturn(ok("slow")
+                .withHeader(CACHE_CONTROL, "no-store")
+                .withFixedDelay((int) SLOW_RESPONSE_DELAY.toMillis())
+            )
+            .willSetStateTo("hedged")
+        );
+        server.stubFor(get("/content").inScenario("hedging")
+            .whenScenarioStateIs("hedged")
+            .willReturn(ok("fast").withHeader(CACHE_CONTROL, "no-store"))
+        );
+    }
+
+    /**
+     * Fails with a timeout if a permit of the cancelled request is still held.
+     */
+    private static void withAllPermits(HostRateLimiter hostRateLimiter, URI uri, int permits) {
+        if (permits <= 0) {
+            return;
+        }
+
+        hostRateLimiter.withPermit(uri, Duration.ofSeconds(2), () -> {
+            withAllPermits(hostRateLimiter, uri, permits - 1);
+            return null;
+        });
+    }
+
+}
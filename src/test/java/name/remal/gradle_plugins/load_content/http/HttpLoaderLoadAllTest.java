@@ -0,0 +1,93 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.notFound;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.apache.hc.core5.http.HttpHeaders.CACHE_CONTROL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.gradle.api.Action;
+import org.gradle.api.Project;
+import org.junit.jupiter.api.Test;
+
+class HttpLoaderLoadAllTest extends AbstractHttpLoaderTest {
+
+    static final Duration RESPONSE_DELAY = Duration.ofSeconds(1);
+
+    HttpLoaderLoadAllTest(Project project) {
+        super(project);
+    }
+
+
+    @Test
+    void parallelLoadsAreBounded() {
+        var paths = List.of("/a", "/b", "/c", "/d");
+        paths.forEach(path -> stubSlow(path, path));
+        loader.getMaxParallelLoads().set(2);
+
+        var paramsConfigurers = new LinkedHashMap<String, Action<HttpLoadParams>>();
+        paths.forEach(path -> paramsConfigurers.put(path, params -> params.uri(server.url(path))));
+
+        var startNanos = System.nanoTime();
+        var contents = loader.loadAll(paramsConfigurers).get();
+        var elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+
+        assertEquals(paths, List.copyOf(contents.keySet()));
+        paths.forEach(path -> assertEquals(path, contents.get(path).asString()));
+        assertTrue(elapsed.compareTo(RESPONSE_DELAY.multipliedBy(2)) >= 0, "elapsed: " + elapsed);
+        assertTrue(elapsed.compareTo(RESPONSE_DELAY.multipliedBy(paths.size())) < 0, "elapsed: " + elapsed);
+    }
+
+    @Test
+    void identicalParamsAreLoadedOnce() {
+        stubSlow("/content", "content");
+
+        Action<HttpLoadParams> paramsConfigurer = params -> params.uri(server.url("/content"));
+        var contents = loader.loadAll(Map.of(
+            "first", paramsConfigurer,
+            "second", paramsConfigurer
+        )).get();
+
+        assertEquals("content", contents.get("first").asString());
+        assertEquals("content", contents.get("second").asString());
+        server.verify(1, getRequestedFor(urlPathEqualTo("/content")));
+    }
+
+    @Test
+    void remainingLoadsAreCancelledAfterFirstFailure() {
+        server.stubFor(get("/failing").willReturn(notFound()));
+        stubSlow("/slow", "slow");
+        stubSlow("/queued", "queued");
+        loader.getMaxParallelLoads().set(1);
+
+        var paramsConfigurers = new LinkedHashMap<String, Action<HttpLoadParams>>();
+        paramsConfigurers.put("failing", params -> params.uri(server.url("/failing")));
+        paramsConfigurers.put("slow", params -> params.uri(server.url("/slow")));
+        paramsConfigurers.put("queued", params -> params.uri(server.url("/queued")));
+
+        var startNanos = System.nanoTime();
+        var exception = assertThrows(HttpLoadException.class, () -> loader.loadAll(paramsConfigurers).get());
+        var elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+
+        assertEquals(404, exception.getStatusCode());
+        assertTrue(elapsed.compareTo(RESPONSE_DELAY) < 0, "elapsed: " + elapsed);
+        server.verify(0, getRequestedFor(urlPathEqualTo("/queued")));
+    }
+
+
+    private void stubSlow(String path, String body) {
+        server.stubFor(get(path).willReturn(ok(body)
+            .withHeader(CACHE_CONTROL, "no-store")
+            .withFixedDelay((int) RESPONSE_DELAY.toMillis())
+        ));
+    }
+
+}
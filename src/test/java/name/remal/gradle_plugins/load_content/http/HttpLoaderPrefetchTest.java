@@ -0,0 +1,80 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import java.time.Duration;
+import lombok.RequiredArgsConstructor;
+import name.remal.gradle_plugins.load_content.LoadContentPlugin;
+import org.gradle.api.Project;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+@RequiredArgsConstructor
+class HttpLoaderPrefetchTest {
+
+    final Project project;
+
+    WireMockServer server;
+
+    HttpLoader loader;
+
+    @BeforeEach
+    void beforeEach() {
+        server = new WireMockServer(wireMockConfig().dynamicPort());
+        server.start();
+        server.stubFor(get("/content").willReturn(ok("content")));
+
+        loader = project.getObjects().newInstance(HttpLoader.class);
+    }
+
+    @AfterEach
+    void afterEach() throws Throwable {
+        for (var registration : project.getGradle().getSharedServices().getRegistrations()) {
+            if (registration.getName().contains(LoadContentPlugin.class.getPackageName())) {
+                var service = registration.getService().get();
+                if (service instanceof AutoCloseable autoCloseable) {
+                    autoCloseable.close();
+                }
+            }
+        }
+
+        server.stop();
+    }
+
+
+    @Test
+    void prefetchEnabledAfterLoadIsHonored() throws Exception {
+        loader.load(params -> params.uri(server.url("/content")));
+        loader.getPrefetch().set(true);
+
+        loader.startPrefetch();
+
+        var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (server.findAll(getRequestedFor(urlPathEqualTo("/content"))).isEmpty()) {
+            assertTrue(System.nanoTime() < deadline, "The content was not prefetched");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void loadsAfterPrefetchStartAreNotRegistered() {
+        loader.getPrefetch().set(true);
+        loader.startPrefetch();
+
+        loader.load(params -> params.uri(server.url("/content")));
+        loader.loadPages(params -> params.uri(server.url("/content")));
+        loader.loadIfExists(params -> params.uri(server.url("/content")));
+
+        assertEquals(0, loader.getRegisteredPrefetchesCount());
+        assertEquals(0, server.getAllServeEvents().size());
+    }
+
+}
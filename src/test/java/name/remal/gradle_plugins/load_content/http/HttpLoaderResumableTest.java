@@ -0,0 +1,184 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.absent;
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.size;
+import static java.nio.file.Files.write;
+import static java.nio.file.Files.writeString;
+import static name.remal.gradle_plugins.toolkit.PropertiesUtils.loadProperties;
+import static org.apache.hc.core5.http.HttpHeaders.CACHE_CONTROL;
+import static org.apache.hc.core5.http.HttpHeaders.CONTENT_RANGE;
+import static org.apache.hc.core5.http.HttpHeaders.ETAG;
+import static org.apache.hc.core5.http.HttpHeaders.IF_RANGE;
+import static org.apache.hc.core5.http.HttpHeaders.RANGE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import org.gradle.api.Project;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HttpLoaderResumableTest extends AbstractHttpLoaderTest {
+
+    static final byte[] BODY = randomBytes(64 * 1024);
+
+    HttpLoaderResumableTest(Project project) {
+        super(project);
+    }
+
+
+    File targetFile;
+
+    Path partialFile;
+
+    Path partialMetadataFile;
+
+    @BeforeEach
+    void beforeEach() {
+        targetFile = buildFile("file.bin");
+        partialFile = targetFile.toPath().resolveSibling("file.bin.partial");
+        partialMetadataFile = targetFile.toPath().resolveSibling("file.bin.partial.properties");
+    }
+
+
+    @Test
+    void loadCutMidBodyIsResumed() throws Exception {
+        server.stubFor(get("/file").willReturn(ok()
+            .withHeader(ETAG, "\"v1\"")
+            .withHeader(CACHE_CONTROL, "no-store")
+            .withBody(BODY)
+            .withChunkedDribbleDelay(10, 5_000)
+        ));
+
+        assertThrows(HttpLoadTimeoutException.class, () -> load(Duration.ofSeconds(2)));
+
+        var received = (int) size(partialFile);
+        assertTrue(received > 0 && received < BODY.length, "received: " + received);
+        assertEquals("\"v1\"", loadProperties(partialMetadataFile).getProperty("etag"));
+
+        server.resetMappings();
+        server.stubFor(get("/file")
+            .withHeader(RANGE, equalTo("bytes=" + received + "-"))
+            .withHeader(IF_RANGE, equalTo("\"v1\""))
+            .willReturn(rangeResponse(received, "\"v1\""))
+        );
+
+        load(null);
+
+        assertArrayEquals(BODY, readAllBytes(targetFile.toPath()));
+        assertFalse(exists(partialFile));
+        assertFalse(exists(partialMetadataFile));
+    }
+
+    @Test
+    void partialFileIsReplacedIfServerRespondsWithFullContent() throws Exception {
+        writePartialFile("stale".getBytes(UTF_8), "\"v1\"");
+        server.stubFor(get("/file").willReturn(ok()
+            .withHeader(ETAG, "\"v2\"")
+            .withHeader(CACHE_CONTROL, "no-store")
+            .withBody(BODY)
+        ));
+
+        load(null);
+
+        assertArrayEquals(BODY, readAllBytes(targetFile.toPath()));
+        assertFalse(exists(partialFile));
+        assertFalse(exists(partialMetadataFile));
+        server.verify(1, getRequestedFor(urlPathEqualTo("/file")).withHeader(RANGE, equalTo("bytes=5-")));
+    }
+
+    @Test
+    void mismatchedContentRangeRestartsLoad() throws Exception {
+        var half = BODY.length / 2;
+        writePartialFile(Arrays.copyOf(BODY, half), "\"v1\"");
+        server.stubFor(get("/file")
+            .withHeader(RANGE, equalTo("bytes=" + half + "-"))
+            .willReturn(rangeResponse(0, "\"v1\""))
+        );
+        server.stubFor(get("/file")
+            .withHeader(RANGE, absent())
+            .willReturn(ok()
+                .withHeader(ETAG, "\"v1\"")
+                .withHeader(CACHE_CONTROL, "no-store")
+                .withBody(BODY)
+            )
+        );
+
+        load(null);
+
+        assertArrayEquals(BODY, readAllBytes(targetFile.toPath()));
+        assertFalse(exists(partialFile));
+        assertFalse(exists(partialMetadataFile));
+        server.verify(1, getRequestedFor(urlPathEqualTo("/file")).withHeader(RANGE, absent()));
+    }
+
+    @Test
+    void loadWithWeakEtagIsNotResumable() throws Exception {
+        server.stubFor(get("/file").willReturn(ok()
+            .withHeader(ETAG, "W/\"v1\"")
+            .withHeader(CACHE_CONTROL, "no-store")
+            .withBody(BODY)
+            .withChunkedDribbleDelay(10, 5_000)
+        ));
+
+        assertThrows(HttpLoadTimeoutException.class, () -> load(Duration.ofSeconds(2)));
+
+        assertFalse(exists(partialMetadataFile));
+
+        server.resetMappings();
+        server.stubFor(get("/file").willReturn(ok()
+            .withHeader(ETAG, "W/\"v1\"")
+            .withHeader(CACHE_CONTROL, "no-store")
+            .withBody(BODY)
+        ));
+
+        load(null);
+
+        assertArrayEquals(BODY, readAllBytes(targetFile.toPath()));
+        server.verify(2, getRequestedFor(urlPathEqualTo("/file")));
+        server.verify(2, getRequestedFor(urlPathEqualTo("/file")).withHeader(RANGE, absent()));
+    }
+
+
+    private void load(@Nullable Duration timeout) {
+        loader.load(params -> {
+            params.uri(server.url("/file"));
+            params.getBuildCacheFile().set(targetFile);
+            params.getTimeout().set(timeout);
+        }).get();
+    }
+
+    private void writePartialFile(byte[] content, String etag) throws Exception {
+        createDirectories(partialFile.getParent());
+        write(partialFile, content);
+        writeString(partialMetadataFile, "etag=" + etag + "\n", UTF_8);
+    }
+
+    private static ResponseDefinitionBuilder rangeResponse(int start, String etag) {
+        return aResponse()
+            .withStatus(206)
+            .withHeader(CONTENT_RANGE, "bytes " + start + "-" + (BODY.length - 1) + "/" + BODY.length)
+            .withHeader(ETAG, etag)
+            .withHeader(CACHE_CONTROL, "no-store")
+            .withBody(Arrays.copyOfRange(BODY, start, BODY.length));
+    }
+
+}
@@ -0,0 +1,163 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.absent;
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.readAllBytes;
+import static org.apache.hc.core5.http.HttpHeaders.CACHE_CONTROL;
+import static org.apache.hc.core5.http.HttpHeaders.CONTENT_RANGE;
+import static org.apache.hc.core5.http.HttpHeaders.ETAG;
+import static org.apache.hc.core5.http.HttpHeaders.IF_RANGE;
+import static org.apache.hc.core5.http.HttpHeaders.RANGE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import java.io.File;
+import java.util.Arrays;
+import org.gradle.api.Project;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HttpLoaderSegmentedTest extends AbstractHttpLoaderTest {
+
+    static final int SEGMENTS = 3;
+
+    static final byte[] BODY = randomBytes(SEGMENTS * 1024 * 1024 + 123);
+
+    HttpLoaderSegmentedTest(Project project) {
+        super(project);
+    }
+
+
+    File targetFile;
+
+    @BeforeEach
+    void beforeEach() {
+        targetFile = buildFile("file.bin");
+
+        server.stubFor(get("/file")
+            .withHeader(RANGE, absent())
+            .willReturn(ok()
+                .withHeader(ETAG, "\"v1\"")
+                .withHeader(CACHE_CONTROL, "no-store")
+                .withBody(BODY)
+            )
+        );
+    }
+
+
+    @Test
+    void segmentsAreStitchedTogether() throws Exception {
+        stubProbe("\"v1\"");
+        for (var segment = 0; segment < SEGMENTS; segment++) {
+            stubSegment(segment, rangeResponse(getSegmentStart(segment), getSegmentEnd(segment)));
+        }
+
+        load();
+
+        assertArrayEquals(BODY, readAllBytes(targetFile.toPath()));
+        server.verify(SEGMENTS + 1, getRequestedFor(urlPathEqualTo("/file")));
+        server.verify(SEGMENTS, getRequestedFor(urlPathEqualTo("/file")).withHeader(IF_RANGE, equalTo("\"v1\"")));
+    }
+
+    @Test
+    void shortSegmentIsRejected() {
+        stubProbe("\"v1\"");
+        for (var segment = 0; segment < SEGMENTS; segment++) {
+            var start = getSegmentStart(segment);
+            var end = getSegmentEnd(segment);
+            var response = rangeResponse(start, end);
+            if (segment == 1) {
+                response.withBody(Arrays.copyOfRange(BODY, (int) start, (int) end - 10));
+            }
+            stubSegment(segment, response);
+        }
+
+        assertThrows(HttpLoadException.class, this::load);
+
+        assertFalse(exists(targetFile.toPath()));
+        assertFalse(exists(targetFile.toPath().resolveSibling("file.bin.partial")));
+    }
+
+    @Test
+    void fullLoadIsUsedIfProbeReceivesFullContent() throws Exception {
+        server.stubFor(get("/file")
+            .withHeader(RANGE, equalTo("bytes=0-0"))
+            .willReturn(ok()
+                .withHeader(ETAG, "\"v1\"")
+                .withHeader(CACHE_CONTROL, "no-store")
+                .withBody(BODY)
+            )
+        );
+
+        load();
+
+        assertArrayEquals(BODY, readAllBytes(targetFile.toPath()));
+        server.verify(2, getRequestedFor(urlPathEqualTo("/file")));
+        server.verify(1, getRequestedFor(urlPathEqualTo("/file")).withHeader(RANGE, absent()));
+    }
+
+    @Test
+    void fullLoadIsUsedIfProbeReceivesWeakEtag() throws Exception {
+        stubProbe("W/\"v1\"");
+
+        load();
+
+        assertArrayEquals(BODY, readAllBytes(targetFile.toPath()));
+        server.verify(2, getRequestedFor(urlPathEqualTo("/file")));
+        server.verify(1, getRequestedFor(urlPathEqualTo("/file")).withHeader(RANGE, absent()));
+    }
+
+
+    private void load() {
+        loader.load(params -> {
+            params.uri(server.url("/file"));
+            params.getBuildCacheFile().set(targetFile);
+            params.getParallelSegments().set(SEGMENTS);
+        }).get();
+    }
+
+    private void stubProbe(String etag) {
+        server.stubFor(get("/file")
+            .withHeader(RANGE, equalTo("bytes=0-0"))
+            .willReturn(rangeResponse(0, 0, etag))
+        );
+    }
+
+    private void stubSegment(int segment, ResponseDefinitionBuilder response) {
+        server.stubFor(get("/file")
+            .withHeader(RANGE, equalTo("bytes=" + getSegmentStart(segment) + "-" + getSegmentEnd(segment)))
+            .withHeader(IF_RANGE, equalTo("\"v1\""))
+            .willReturn(response)
+        );
+    }
+
+    private static long getSegmentStart(int segment) {
+        return segment * (long) (BODY.length / SEGMENTS);
+    }
+
+    private static long getSegmentEnd(int segment) {
+        return segment == SEGMENTS - 1 ? BODY.length - 1 : getSegmentStart(segment + 1) - 1;
+    }
+
+    private static ResponseDefinitionBuilder rangeResponse(long start, long end) {
+        return rangeResponse(start, end, "\"v1\"");
+    }
+
+    private static ResponseDefinitionBuilder rangeResponse(long start, long end, String etag) {
+        return aResponse()
+            .withStatus(206)
+            .withHeader(CONTENT_RANGE, "bytes " + start + "-" + end + "/" + BODY.length)
+            .withHeader(ETAG, etag)
+            .withHeader(CACHE_CONTROL, "no-store")
+            .withBody(Arrays.copyOfRange(BODY, (int) start, (int) end + 1));
+    }
+
+}
@@ -0,0 +1,68 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import name.remal.gradle_plugins.load_content.http.LoadDeadline.Phase;
+import org.junit.jupiter.api.Test;
+
+class LoadDeadlineTest {
+
+    static final URI SOURCE = URI.create("https://example.com/resource");
+
+    @Test
+    void withoutTimeout() {
+        try (var deadline = LoadDeadline.start(SOURCE, null)) {
+            assertNull(deadline.getRemaining());
+            assertFalse(deadline.isExpired());
+        }
+    }
+
+    @Test
+    void expiredDeadlineCancelsRegisteredOperations() throws Exception {
+        try (var deadline = LoadDeadline.start(SOURCE, Duration.ofMillis(10))) {
+            var cancelled = new CountDownLatch(1);
+            deadline.onExpired(cancelled::countDown);
+            deadline.enterPhase(Phase.BODY);
+
+            assertTrue(cancelled.await(10, SECONDS));
+            assertTrue(deadline.isExpired());
+            assertEquals(Duration.ZERO, deadline.getRemaining());
+
+            var cancelledAfterExpiration = new AtomicBoolean();
+            deadline.onExpired(() -> cancelledAfterExpiration.set(true));
+            assertTrue(cancelledAfterExpiration.get());
+
+            deadline.enterPhase(Phase.REQUEST);
+            var cause = new IOException("aborted");
+            var exception = deadline.newTimeoutException(cause);
+            assertSame(cause, exception.getCause());
+            assertTrue(
+                exception.getMessage().contains("exceeded while reading the response body"),
+                exception::getMessage
+            );
+            assertTrue(exception.getMessage().contains(SOURCE.toString()), exception::getMessage);
+        }
+    }
+
+    @Test
+    void closedDeadlineDoesNotExpire() throws Exception {
+        var cancelled = new AtomicBoolean();
+        try (var deadline = LoadDeadline.start(SOURCE, Duration.ofMillis(10))) {
+            deadline.onExpired(() -> cancelled.set(true));
+        }
+
+        Thread.sleep(100);
+        assertFalse(cancelled.get());
+    }
+
+}
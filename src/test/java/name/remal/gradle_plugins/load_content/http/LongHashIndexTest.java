@@ -0,0 +1,66 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static name.remal.gradle_plugins.load_content.http.LongHashIndex.NO_VALUE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class LongHashIndexTest {
+
+    @Test
+    void putGetRemove() {
+        var index = new LongHashIndex();
+        assertEquals(NO_VALUE, index.put(1, 10));
+        assertEquals(10, index.put(1, 11));
+        assertEquals(11, index.get(1));
+        assertEquals(NO_VALUE, index.get(2));
+
+        assertEquals(11, index.remove(1));
+        assertEquals(NO_VALUE, index.remove(1));
+        assertEquals(NO_VALUE, index.get(1));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void copyIsIndependent() {
+        var index = new LongHashIndex();
+        index.put(1, 10);
+        index.put(2, 20);
+
+        var copy = index.copy();
+        index.put(1, 11);
+        index.remove(2);
+        copy.put(3, 30);
+
+        assertEquals(10, copy.get(1));
+        assertEquals(20, copy.get(2));
+        assertEquals(3, copy.size());
+        assertEquals(NO_VALUE, index.get(3));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void behavesLikeHashMap() {
+        var index = new LongHashIndex();
+        var expected = new HashMap<Long, Long>();
+        var random = new Random(42);
+        for (var i = 0; i < 100_000; i++) {
+            // a small key range makes collisions and removals of shifted entries frequent:
+            var key = 1 + random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.getOrDefault((long) key, NO_VALUE), index.remove(key));
+                expected.remove((long) key);
+            } else {
+                var value = random.nextInt(Integer.MAX_VALUE);
+                assertEquals(expected.getOrDefault((long) key, NO_VALUE), index.put(key, value));
+                expected.put((long) key, (long) value);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        expected.forEach((key, value) -> assertEquals(value, index.get(key)));
+    }
+
+}
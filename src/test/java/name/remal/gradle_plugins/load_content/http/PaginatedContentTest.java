@@ -0,0 +1,173 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.hc.core5.http.HttpHeaders.LINK;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import name.remal.gradle_plugins.load_content.internal.StreamingContent;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+class PaginatedContentTest {
+
+    final List<URI> loadedUris = new CopyOnWriteArrayList<>();
+
+    @Test
+    void followsNextLinks() throws Exception {
+        var pages = Map.of(
+            "https://example.com/items", page("[1, 2]", "</items?page=2>; rel=\\"next\\""),
+            "https://example.com/items?page=2", page("[3]", "<https://example.com/items?page=3>; rel=next"),
+            "https://example.com/items?page=3", page("[]", null)
+        );
+
+        try (var content = paginatedContent(pages, null, null, true)) {
+            assertEquals("[1,2,3]", read(content));
+        }
+        assertEquals(3, loadedUris.size());
+    }
+
+    @Test
+    void followsNextLinkAmongSeveralLinkHeaders() throws Exception {
+        var pages = Map.of(
+            "https://example.com/items", page("[1]", List.of(
+                "</items?page=2>; rel=\"next\"",
+                "</items?page=3>; rel=\"last\""
+            )),
+            "https://example.com/items?page=2", page("[2]", List.of(
+                "</items?page=1>; rel=\"prev\"",
+                "</items?page=3>; rel=\"next\"",
+                "</items?page=3>; rel=\"last\""
+            )),
+            "https://example.com/items?page=3", page("[3]", List.of(
+                "</items?page=2>; rel=\"prev\""
+            ))
+        );
+
+        try (var content = paginatedContent(pages, null, null, false)) {
+            assertEquals("[1,2,3]", read(content));
+        }
+        assertEquals(3, loadedUris.size());
+    }
+
+    @Test
+    void followsJsonPointer() throws Exception {
+        var pages = Map.of(
+            "https://example.com/items", page("{\\"items\\": [{\\"a\\": 1}], \\"next\\": \\"/items?page=2\\"}", null),
+            "https://example.com/items?page=2", page("{\\"items\\": [{\\"a\\": 2}], \\"next\\": null}", null)
+        );
+
+        try (var content = paginatedContent(pages, "/next", "/items", false)) {
+            assertEquals("[{\\"a\\":1},{\\"a\\":2}]", read(content));
+        }
+    }
+
+    @Test
+    void differentOriginIsRejected() throws Exception {
+        var pages = Map.of(
+            "https://example.com/items", page("[1]", "<https://other.example.com/items?page=2>; rel=\\"next\\"")
+        );
+
+        try (var content = paginatedContent(pages, null, null, true)) {
+            assertThrows(HttpLoadException.class, () -> read(content));
+        }
+    }
+
+    @Test
+    void parseNextLink() {
+        var baseUri = URI.create("https://example.com/items?page=1");
+        assertEquals(
+            URI.create("https://example.com/items?page=2"),
+            PaginatedContent.parseNextLink(
+                "<https://example.com/items?page=1>; rel=\\"prev first\\", </items?page=2>; title=x; rel=\\"next\\"",
+                baseUri
+            )
+        );
+        assertNull(PaginatedContent.parseNextLink("</items?page=1>; rel=\\"prev\\"", baseUri));
+        assertNull(PaginatedContent.parseNextLink(null, baseUri));
+    }
+
+
+    private PaginatedContent paginatedContent(
+        Map<String, StreamingContent> pages,
+        @Nullable String nextPageJsonPointer,
+        @Nullable String itemsJsonPointer,
+        boolean prefetch
+    ) {
+        return new PaginatedContent(
+            URI.create("https://example.com/items"),
+            uri -> {
+                loadedUris.add(uri);
+                var page = pages.get(uri.toString());
+                if (page == null) {
+                    throw new HttpLoadException("Unexpected page: " + uri, 404);
+                }
+                return page;
+            },
+            nextPageJsonPointer,
+            itemsJsonPointer,
+            10,
+            prefetch
+        );
+    }
+
+    private static String read(StreamingContent content) throws Exception {
+        try (var in = content.getInputStream()) {
+            return new String(in.readAllBytes(), UTF_8);
+        }
+    }
+
+    private static StreamingContent page(String body, @Nullable String link) {
+        return page(body, link != null ? List.of(link) : List.of());
+    }
+
+    private static StreamingContent page(String body, List<String> links) {
+        return new StreamingContent() {
+            @Override
+            public String getSource() {
+                return "page";
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                return new ByteArrayInputStream(body.getBytes(UTF_8));
+            }
+
+            @Override
+            public Charset getCharset() {
+                return UTF_8;
+            }
+
+            @Override
+            public int getStatusCode() {
+                return 200;
+            }
+
+            @Override
+            @Nullable
+            public String getHeader(String name) {
+                var headers = getHeaders(name);
+                return headers.isEmpty() ? null : headers.get(headers.size() - 1);
+            }
+
+            @Override
+            public List<String> getHeaders(String name) {
+                return LINK.equalsIgnoreCase(name) ? links : List.of();
+            }
+
+            @Override
+            public void close() {
+                // nothing to close
+            }
+        };
+    }
+
+}
@@ -0,0 +1,330 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static java.lang.System.nanoTime;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Future;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.http.message.HeaderGroup;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.CleanupMode;
+import org.junit.jupiter.api.io.TempDir;
+
+class SegmentedLogHttpCacheStorageTest {
+
+    static final int SEGMENT_SIZE = 4096;
+
+    Path root;
+
+    final List<SegmentedLogHttpCacheStorage> storages = new ArrayList<>();
+
+    SegmentedLogHttpCacheStorage storage;
+
+    String key1;
+    String key2;
+    String key3;
+
+    @BeforeEach
+    void beforeEach(@TempDir(cleanup = CleanupMode.ALWAYS) Path root) {
+        this.root = root;
+        storage = newStorage();
+
+        key1 = storage.digestToStorageKey("k1");
+        key2 = storage.digestToStorageKey("k2");
+        key3 = storage.digestToStorageKey("k3");
+    }
+
+    SegmentedLogHttpCacheStorage newStorage() {
+        var newStorage = new SegmentedLogHttpCacheStorage(root, 3, 1024, SEGMENT_SIZE);
+        storages.add(newStorage);
+        return newStorage;
+    }
+
+    @AfterEach
+    void afterEach() throws Exception {
+        // a background compaction must not run while the temp dir is being deleted:
+        awaitBackgroundCompactions();
+    }
+
+
+    @Test
+    void restoreMissing() {
+        assertNull(storage.restore(storage.digestToStorageKey("missing")));
+    }
+
+    @Test
+    void storeThenRestore() {
+        storage.store(key1, "hello".getBytes(UTF_8));
+        assertArrayEquals("hello".getBytes(UTF_8), storage.restore(key1));
+    }
+
+    @Test
+    void deleteRemovesEntry() {
+        storage.store(key1, "x".getBytes(UTF_8));
+        assertNotNull(storage.restore(key1));
+
+        storage.delete(key1);
+        assertNull(storage.restore(key1));
+    }
+
+    @Test
+    void casUpdateSuccessIncrementsVersion() {
+        storage.store(key1, "v1".getBytes(UTF_8));
+
+        var cas1 = storage.getForUpdateCAS(key1);
+        assertNotNull(cas1);
+        assertEquals(1L, cas1.getVersion());
+        assertArrayEquals("v1".getBytes(UTF_8), cas1.getBytes());
+
+        assertTrue(storage.updateCAS(key1, cas1, "v2".getBytes(UTF_8)));
+        assertArrayEquals("v2".getBytes(UTF_8), storage.restore(key1));
+
+        var cas2 = storage.getForUpdateCAS(key1);
+        assertNotNull(cas2);
+        assertEquals(2L, cas2.getVersion());
+    }
+
+    @Test
+    void casUpdateFailsOnStaleCas() {
+        storage.store(key1, "v1".getBytes(UTF_8));
+
+        var cas1 = storage.getForUpdateCAS(key1);
+        assertNotNull(cas1);
+
+        assertTrue(storage.updateCAS(key1, cas1, "v2".getBytes(UTF_8)));
+        assertFalse(storage.updateCAS(key1, cas1, "v3".getBytes(UTF_8)));
+
+        assertArrayEquals("v2".getBytes(UTF_8), storage.restore(key1));
+    }
+
+    @Test
+    void bulkRestoreReturnsOnlyExistingKeys() {
+        storage.store(key1, "a".getBytes(UTF_8));
+        storage.store(key2, "b".getBytes(UTF_8));
+
+        var map = storage.bulkRestore(List.of(key1, key2, key3));
+        assertEquals(2, map.size());
+        assertArrayEquals("a".getBytes(UTF_8), map.get(key1));
+        assertArrayEquals("b".getBytes(UTF_8), map.get(key2));
+        assertNull(map.get(key3));
+    }
+
+    @Test
+    void recordsWrittenByAnotherInstanceAreVisible() {
+        var otherStorage = newStorage();
+        storage.store(key1, "a".getBytes(UTF_8));
+        assertArrayEquals("a".getBytes(UTF_8), otherStorage.restore(key1));
+
+        otherStorage.store(key1, "b".getBytes(UTF_8));
+        otherStorage.store(key2, "c".getBytes(UTF_8));
+        assertArrayEquals("b".getBytes(UTF_8), storage.restore(key1));
+        assertArrayEquals("c".getBytes(UTF_8), storage.restore(key2));
+
+        otherStorage.delete(key2);
+        assertNull(storage.restore(key2));
+    }
+
+    @Test
+    void readsDontTakeMonitorIfNothingChanged() throws Exception {
+        storage.store(key1, "a".getBytes(UTF_8));
+        assertArrayEquals("a".getBytes(UTF_8), storage.restore(key1));
+
+        var isLocked = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var lockHolder = new Thread(() -> {
+            synchronized (storage) {
+                isLocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        lockHolder.start();
+        try {
+            assertTrue(isLocked.await(10, SECONDS));
+            var restored = CompletableFuture.supplyAsync(() -> storage.restore(key1));
+            assertArrayEquals("a".getBytes(UTF_8), restored.get(10, SECONDS));
+        } finally {
+            release.countDown();
+            lockHolder.join();
+        }
+    }
+
+    @Test
+    void recordsLargerThanSegmentGetSegmentOfTheirOwn() {
+        var large = new byte[SEGMENT_SIZE * 2];
+        large[large.length - 1] = 1;
+        storage.store(key1, "a".getBytes(UTF_8));
+        storage.store(key2, large);
+        storage.store(key3, "c".getBytes(UTF_8));
+
+        var reopenedStorage = newStorage();
+        assertArrayEquals("a".getBytes(UTF_8), reopenedStorage.restore(key1));
+        assertArrayEquals(large, reopenedStorage.restore(key2));
+        assertArrayEquals("c".getBytes(UTF_8), reopenedStorage.restore(key3));
+    }
+
+    @Test
+    void compactionKeepsLiveEntriesOnly() throws Exception {
+        var otherStorage = newStorage();
+        storage.store(key2, "b".getBytes(UTF_8));
+        storage.store(key3, "c".getBytes(UTF_8));
+        for (var i = 0; i < 200; i++) {
+            storage.store(key1, longToBytes(i));
+        }
+        storage.delete(key3);
+        assertArrayEquals(longToBytes(199), otherStorage.restore(key1));
+
+        awaitBackgroundCompactions();
+        storage.compact();
+
+        assertEquals(1, countSegmentFiles());
+        assertArrayEquals(longToBytes(199), storage.restore(key1));
+        assertArrayEquals("b".getBytes(UTF_8), storage.restore(key2));
+        assertNull(storage.restore(key3));
+
+        var cas = storage.getForUpdateCAS(key1);
+        assertNotNull(cas);
+        assertTrue(storage.updateCAS(key1, cas, longToBytes(200)));
+
+        assertArrayEquals(longToBytes(200), otherStorage.restore(key1));
+        assertArrayEquals("b".getBytes(UTF_8), otherStorage.restore(key2));
+        assertNull(otherStorage.restore(key3));
+    }
+
+    @Test
+    void cleanupDeletesOldestWrittenEntriesAndOrphanResources() throws Exception {
+        var resourceFactory = storage.getResourceFactory();
+        var bodyFiles = new ArrayList<Path>();
+        for (var key : List.of("a", "b", "c")) {
+            var resource = (CacheDirResource) resourceFactory.generate(key, key.repeat(10_000).getBytes(UTF_8));
+            bodyFiles.add(resource.getFile().toPath());
+            storage.putEntry(key, newEntry(resource));
+        }
+        assertNotNull(storage.getEntry("a"));
+
+        var orphanResource = (CacheDirResource) resourceFactory.generate("orphan", "o".repeat(10_000).getBytes(UTF_8));
+        var orphanPath = orphanResource.getFile().toPath();
+        Thread.sleep(10);
+
+        // the bodies of two entries and all records fit:
+        storage.cleanup(25_000, Duration.ZERO);
+
+        assertNull(storage.getEntry("a"));
+        assertNotNull(storage.getEntry("b"));
+        assertNotNull(storage.getEntry("c"));
+        assertFalse(Files.exists(bodyFiles.get(0)));
+        assertTrue(Files.exists(bodyFiles.get(1)));
+        assertTrue(Files.exists(bodyFiles.get(2)));
+        assertFalse(Files.exists(orphanPath));
+    }
+
+    @Test
+    void concurrentUpdatesSameKeyAreSerializedAndNoLostUpdates() throws Exception {
+        var otherStorage = newStorage();
+        storage.store(key1, longToBytes(0));
+
+        var threads = 8;
+        var itersPerThread = 100;
+        var start = new CyclicBarrier(threads);
+
+        try (var pool = newFixedThreadPool(threads)) {
+            var futures = new ArrayList<Future<?>>(threads);
+            for (var t = 0; t < threads; t++) {
+                var threadStorage = t % 2 == 0 ? storage : otherStorage;
+                futures.add(pool.submit((Callable<Void>) () -> {
+                    start.await();
+
+                    for (var i = 0; i < itersPerThread; i++) {
+                        while (true) {
+                            var cas = threadStorage.getForUpdateCAS(key1);
+                            assertNotNull(cas);
+
+                            var next = bytesToLong(cas.getBytes()) + 1;
+                            if (threadStorage.updateCAS(key1, cas, longToBytes(next))) {
+                                break;
+                            }
+                        }
+                    }
+
+                    return null;
+                }));
+            }
+
+            for (var future : futures) {
+                future.get(30, SECONDS);
+            }
+        }
+
+        var finalBytes = storage.restore(key1);
+        assertNotNull(finalBytes);
+        assertEquals((long) threads * itersPerThread, bytesToLong(finalBytes));
+    }
+
+    private void awaitBackgroundCompactions() throws Exception {
+        var deadline = nanoTime() + SECONDS.toNanos(10);
+        for (var currentStorage : storages) {
+            while (currentStorage.isCompactionScheduled() && nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private long countSegmentFiles() throws Exception {
+        var segmentsDir = CacheDirHttpCacheStorage.getRootDir(root).resolve("segments");
+        try (var paths = Files.list(segmentsDir)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(".segment")).count();
+        }
+    }
+
+    private static HttpCacheEntry newEntry(Resource resource) {
+        var now = Instant.now();
+        return new HttpCacheEntry(
+            now,
+            now,
+            "GET",
+            "https://example.com/",
+            new HeaderGroup(),
+            200,
+            new HeaderGroup(),
+            resource,
+            Set.of()
+        );
+    }
+
+    private static byte[] longToBytes(long v) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(v).array();
+    }
+
+    private static long bytesToLong(byte @Nullable [] b) {
+        assertNotNull(b);
+        return ByteBuffer.wrap(b).getLong();
+    }
+
+}
@@ -0,0 +1,91 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Future;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StreamingAsyncResponseConsumerTest {
+
+    WireMockServer server;
+
+    CloseableHttpAsyncClient client;
+
+    @BeforeEach
+    void beforeEach() {
+        server = new WireMockServer(wireMockConfig().dynamicPort());
+        server.start();
+
+        client = HttpAsyncClients.createDefault();
+        client.start();
+    }
+
+    @AfterEach
+    void afterEach() throws Exception {
+        client.close();
+        server.stop();
+    }
+
+
+    @Test
+    void bodyIsStreamedThroughBoundedBuffer() throws Exception {
+        var body = new byte[8 * 1024 * 1024];
+        new Random(1).nextBytes(body);
+        server.stubFor(get("/large").willReturn(ok().withBody(body)));
+
+        var consumer = new StreamingAsyncResponseConsumer();
+        var exchange = execute("/large", consumer);
+        var response = consumer.getResponse();
+        assertEquals(200, response.getHead().getCode());
+
+        try (var in = response.getEntity().getContent()) {
+            assertArrayEquals(body, in.readAllBytes());
+        }
+        exchange.get(5, SECONDS);
+    }
+
+    @Test
+    void cancelledExchangeFailsReader() throws Exception {
+        var body = new byte[8 * 1024 * 1024];
+        server.stubFor(get("/large").willReturn(ok().withBody(body)));
+
+        var consumer = new StreamingAsyncResponseConsumer();
+        var exchange = execute("/large", consumer);
+        var response = consumer.getResponse();
+
+        try (var in = response.getEntity().getContent()) {
+            assertTrue(in.read(new byte[1024]) > 0);
+
+            exchange.cancel(true);
+            assertThrows(IOException.class, in::readAllBytes);
+        }
+    }
+
+    private Future<Void> execute(String path, StreamingAsyncResponseConsumer consumer) {
+        return client.execute(
+            SimpleRequestProducer.create(SimpleRequestBuilder.get(server.url(path)).build()),
+            consumer,
+            null,
+            HttpClientContext.create(),
+            consumer.getFutureCallback()
+        );
+    }
+
+}
@@ -0,0 +1,125 @@
+package name.remal.gradle_plugins.load_content.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class WTinyLfuCacheTest {
+
+    @Test
+    void getAndPut() {
+        var cache = new WTinyLfuCache<String, String>(1000);
+        assertNull(cache.get("a"));
+        assertTrue(cache.put("a", "1", 10, cache.getInvalidationStamp()));
+        assertEquals("1", cache.get("a"));
+
+        var statistics = cache.getStatistics();
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+    }
+
+    @Test
+    void totalWeightIsBounded() {
+        var cache = new WTinyLfuCache<Integer, String>(1000);
+        for (var i = 0; i < 1000; i++) {
+            cache.put(i, "value", 10 + i % 7, cache.getInvalidationStamp());
+            assertTrue(cache.getWeight() <= 1000, "weight: " + cache.getWeight());
+        }
+        assertTrue(cache.getStatistics().getEvictions() > 0);
+    }
+
+    @Test
+    void totalWeightIsBoundedAfterEntryInMainGetsHeavier() {
+        var cache = new WTinyLfuCache<Integer, String>(1000);
+        for (var i = 0; i < 99; i++) {
+            cache.put(i, "value", 10, cache.getInvalidationStamp());
+        }
+        for (var i = 0; i < 50; i++) {
+            cache.get(i);
+        }
+        assertEquals(990, cache.getWeight());
+
+        assertTrue(cache.put(0, "heavier value", 500, cache.getInvalidationStamp()));
+        assertTrue(cache.getWeight() <= 1000, "weight: " + cache.getWeight());
+    }
+
+    @Test
+    void frequentlyUsedEntriesSurviveScan() {
+        var cache = new WTinyLfuCache<String, String>(1000);
+        for (var round = 0; round < 5; round++) {
+            for (var i = 0; i < 10; i++) {
+                var key = "hot" + i;
+                if (cache.get(key) == null) {
+                    cache.put(key, key, 50, cache.getInvalidationStamp());
+                }
+            }
+        }
+
+        for (var i = 0; i < 1000; i++) {
+            var key = "cold" + i;
+            cache.get(key);
+            cache.put(key, key, 50, cache.getInvalidationStamp());
+        }
+
+        for (var i = 0; i < 10; i++) {
+            assertTrue(cache.contains("hot" + i), "hot" + i);
+        }
+    }
+
+    @Test
+    void entriesHeavierThanCacheAreNotCached() {
+        var cache = new WTinyLfuCache<String, String>(1000);
+        assertFalse(cache.put("a", "1", 1001, cache.getInvalidationStamp()));
+        assertFalse(cache.contains("a"));
+    }
+
+    @Test
+    void putIsIgnoredAfterInvalidation() {
+        var cache = new WTinyLfuCache<String, String>(1000);
+        cache.put("a", "1", 10, cache.getInvalidationStamp());
+
+        var invalidationStamp = cache.getInvalidationStamp();
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+
+        assertFalse(cache.put("a", "1", 10, invalidationStamp));
+        assertFalse(cache.contains("a"));
+    }
+
+    @Test
+    void putIsNotIgnoredAfterInvalidationOfOtherKey() {
+        var cache = new WTinyLfuCache<String, String>(1000);
+
+        var invalidationStamp = cache.getInvalidationStamp();
+        cache.invalidate("b");
+
+        assertTrue(cache.put("a", "1", 10, invalidationStamp));
+        assertTrue(cache.contains("a"));
+    }
+
+    @Test
+    void putIsIgnoredAfterInvalidateAll() {
+        var cache = new WTinyLfuCache<String, String>(1000);
+
+        var invalidationStamp = cache.getInvalidationStamp();
+        cache.invalidateAll();
+
+        assertFalse(cache.put("a", "1", 10, invalidationStamp));
+        assertFalse(cache.contains("a"));
+    }
+
+    @Test
+    void invalidateAll() {
+        var cache = new WTinyLfuCache<String, String>(1000);
+        cache.put("a", "1", 10, cache.getInvalidationStamp());
+        cache.put("b", "2", 10, cache.getInvalidationStamp());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+}
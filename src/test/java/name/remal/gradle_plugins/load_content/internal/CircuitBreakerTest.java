@@ -0,0 +1,84 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import static name.remal.gradle_plugins.load_content.internal.CircuitBreaker.State.CLOSED;
+import static name.remal.gradle_plugins.load_content.internal.CircuitBreaker.State.HALF_OPEN;
+import static name.remal.gradle_plugins.load_content.internal.CircuitBreaker.State.OPEN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+    final AtomicLong now = new AtomicLong();
+
+    final CircuitBreaker circuitBreaker = new CircuitBreaker(3, Duration.ofNanos(1_000), now::get);
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertEquals(CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquire());
+
+        circuitBreaker.onFailure();
+        assertEquals(OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+        assertEquals(Duration.ofNanos(1_000), circuitBreaker.getRetryIn());
+    }
+
+    @Test
+    void letsSingleProbeThroughAndClosesOnSuccess() {
+        openCircuit();
+
+        now.addAndGet(1_000);
+        assertTrue(circuitBreaker.tryAcquire());
+        assertEquals(HALF_OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+
+        circuitBreaker.onSuccess();
+        circuitBreaker.onCallFinished();
+        assertEquals(CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquire());
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void reopensIfProbeFails() {
+        openCircuit();
+
+        now.addAndGet(1_000);
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onFailure();
+        circuitBreaker.onCallFinished();
+        assertEquals(OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+
+        now.addAndGet(1_000);
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void nonPositiveThresholdDisablesCircuitBreaker() {
+        var disabled = new CircuitBreaker(0, Duration.ofNanos(1_000), now::get);
+        for (var i = 0; i < 100; i++) {
+            disabled.onFailure();
+        }
+        assertEquals(CLOSED, disabled.getState());
+        assertTrue(disabled.tryAcquire());
+    }
+
+    private void openCircuit() {
+        for (var i = 0; i < 3; i++) {
+            circuitBreaker.onFailure();
+        }
+        assertEquals(OPEN, circuitBreaker.getState());
+    }
+
+}
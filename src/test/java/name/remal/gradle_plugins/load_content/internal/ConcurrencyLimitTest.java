@@ -0,0 +1,77 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ConcurrencyLimitTest {
+
+    static final long LATENCY = MILLISECONDS.toNanos(100);
+
+    @Test
+    void fixedLimitIsNotAdjusted() {
+        var limit = ConcurrencyLimit.fixed(4);
+
+        limit.onResponse(LATENCY, true);
+        assertEquals(4, limit.getLimit());
+
+        for (var i = 0; i < 100; i++) {
+            limit.onResponse(LATENCY, false);
+        }
+        assertEquals(4, limit.getLimit());
+    }
+
+    @Test
+    void adaptiveLimitGrowsWhileLatencyIsFlat() {
+        var limit = ConcurrencyLimit.adaptive(4, 1, 16);
+
+        for (var i = 0; i < 100; i++) {
+            limit.onResponse(LATENCY, false);
+        }
+        assertTrue(limit.getLimit() > 4, () -> "limit=" + limit.getLimit());
+
+        for (var i = 0; i < 1_000; i++) {
+            limit.onResponse(LATENCY, false);
+        }
+        assertEquals(16, limit.getLimit());
+    }
+
+    @Test
+    void adaptiveLimitIsHalvedOnOverload() {
+        var limit = ConcurrencyLimit.adaptive(8, 1, 16);
+
+        limit.onResponse(LATENCY, true);
+        assertEquals(4, limit.getLimit());
+
+        for (var i = 0; i < 10; i++) {
+            limit.onResponse(LATENCY, true);
+        }
+        assertEquals(1, limit.getLimit());
+    }
+
+    @Test
+    void adaptiveLimitShrinksOnRisingLatency() {
+        var limit = ConcurrencyLimit.adaptive(8, 1, 16);
+
+        limit.onResponse(LATENCY, false);
+        var limitBefore = limit.getLimit();
+
+        limit.onResponse(LATENCY * 10, false);
+        assertTrue(limit.getLimit() < limitBefore, () -> "limit=" + limit.getLimit());
+    }
+
+    @Test
+    void acquireAndRelease() throws Exception {
+        var limit = ConcurrencyLimit.fixed(2);
+
+        limit.acquire();
+        limit.acquire();
+        assertEquals(2, limit.getInFlight());
+
+        limit.release();
+        assertEquals(1, limit.getInFlight());
+    }
+
+}
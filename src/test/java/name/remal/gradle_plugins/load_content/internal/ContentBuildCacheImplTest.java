@@ -0,0 +1,176 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.readString;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.gradle.api.services.BuildServiceParameters;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ContentBuildCacheImplTest {
+
+    static final Map<String, @Nullable Object> KEY = Map.of("uri", "https://example.com/content");
+
+    final ContentBuildCacheImpl cache = new ContentBuildCacheImpl() {
+        @Override
+        public BuildServiceParameters.None getParameters() {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void afterEach() {
+        executor.shutdownNow();
+        cache.close();
+    }
+
+
+    @Test
+    void concurrentCallersShareSingleLoad() throws Exception {
+        var loads = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        Callable<?> loader = () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            assertTrue(release.await(10, SECONDS));
+            return content("content");
+        };
+
+        var first = executor.submit(() -> cache.getOrLoadContent(KEY, loader));
+        assertTrue(started.await(10, SECONDS));
+        var second = executor.submit(() -> cache.getOrLoadContent(KEY, loader));
+        release.countDown();
+
+        var firstContent = (FileContent) first.get(10, SECONDS);
+        assertSame(firstContent, second.get(10, SECONDS));
+        assertSame(firstContent, cache.getOrLoadContent(KEY, loader));
+        assertEquals("content", readString(firstContent.getContentFilePath(), UTF_8));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void differentKeysAreLoadedSeparately() throws Exception {
+        var first = (FileContent) cache.getOrLoadContent(KEY, () -> content("first"));
+        var second = (FileContent) cache.getOrLoadContent(
+            Map.of("uri", "https://example.com/content", "timeout", "PT1S"),
+            () -> content("second")
+        );
+
+        assertEquals("first", readString(first.getContentFilePath(), UTF_8));
+        assertEquals("second", readString(second.getContentFilePath(), UTF_8));
+    }
+
+    @Test
+    void failedLoadIsRemoved() throws Exception {
+        assertThrows(IOException.class, () -> cache.getOrLoadContent(KEY, () -> {
+            throw new IOException("failed");
+        }));
+
+        var content = (FileContent) cache.getOrLoadContent(KEY, () -> content("content"));
+        assertEquals("content", readString(content.getContentFilePath(), UTF_8));
+    }
+
+    @Test
+    void failedPrefetchIsRetriedByWaiter() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var prefetch = executor.submit(() -> cache.getOrLoadContent(KEY, true, null, () -> {
+            started.countDown();
+            assertTrue(release.await(10, SECONDS));
+            throw new IOException("prefetch failed");
+        }));
+        assertTrue(started.await(10, SECONDS));
+
+        var waiter = executor.submit(() -> cache.getOrLoadContent(KEY, () -> content("content")));
+        Thread.sleep(100);
+        release.countDown();
+
+        var prefetchError = assertThrows(ExecutionException.class, () -> prefetch.get(10, SECONDS));
+        assertEquals(IOException.class, prefetchError.getCause().getClass());
+
+        var content = (FileContent) waiter.get(10, SECONDS);
+        assertEquals("content", readString(content.getContentFilePath(), UTF_8));
+    }
+
+    @Test
+    void waiterHonorsItsTimeout() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var first = executor.submit(() -> cache.getOrLoadContent(KEY, () -> {
+            started.countDown();
+            assertTrue(release.await(10, SECONDS));
+            return content("content");
+        }));
+        assertTrue(started.await(10, SECONDS));
+
+        try {
+            assertThrows(TimeoutException.class, () ->
+                cache.getOrLoadContent(KEY, false, Duration.ofMillis(100), () -> content("other"))
+            );
+        } finally {
+            release.countDown();
+        }
+
+        var content = (FileContent) first.get(10, SECONDS);
+        assertEquals("content", readString(content.getContentFilePath(), UTF_8));
+    }
+
+
+    private static StreamingContent content(String text) {
+        return new StreamingContent() {
+            @Override
+            public String getSource() {
+                return "source";
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                return new ByteArrayInputStream(text.getBytes(UTF_8));
+            }
+
+            @Override
+            public Charset getCharset() {
+                return UTF_8;
+            }
+
+            @Override
+            public int getStatusCode() {
+                return 200;
+            }
+
+            @Override
+            @Nullable
+            public String getHeader(String name) {
+                return null;
+            }
+
+            @Override
+            public void close() {
+                // nothing to close
+            }
+        };
+    }
+
+}
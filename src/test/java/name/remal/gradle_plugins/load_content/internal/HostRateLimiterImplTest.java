@@ -0,0 +1,56 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import static name.remal.gradle_plugins.load_content.internal.HostRateLimiterImpl.findForHost;
+import static name.remal.gradle_plugins.load_content.internal.HostRateLimiterImpl.isConnectionFailure;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.file.AccessDeniedException;
+import java.util.LinkedHashMap;
+import org.apache.hc.core5.http.NoHttpResponseException;
+import org.junit.jupiter.api.Test;
+
+class HostRateLimiterImplTest {
+
+    @Test
+    void findForHostPrefersExactThenLongestPattern() {
+        var values = new LinkedHashMap<String, Integer>();
+        values.put("*", 1);
+        values.put("*.example.com", 2);
+        values.put("api.example.com", 3);
+
+        assertEquals(3, findForHost(values, "api.example.com"));
+        assertEquals(2, findForHost(values, "cdn.example.com"));
+        assertEquals(2, findForHost(values, "CDN.Example.com"));
+        assertEquals(1, findForHost(values, "example.org"));
+    }
+
+    @Test
+    void findForHostWithoutMatch() {
+        var values = new LinkedHashMap<String, Integer>();
+        values.put("*.example.com", 2);
+
+        assertNull(findForHost(values, "example.org"));
+    }
+
+    @Test
+    void onlyTransportFailuresAreConnectionFailures() {
+        assertTrue(isConnectionFailure(new ConnectException()));
+        assertTrue(isConnectionFailure(new UnknownHostException()));
+        assertTrue(isConnectionFailure(new SocketTimeoutException()));
+        assertTrue(isConnectionFailure(new NoHttpResponseException("no response")));
+
+        assertFalse(isConnectionFailure(new AccessDeniedException("target.bin")));
+        assertFalse(isConnectionFailure(new IOException("Content-Length mismatch")));
+        assertFalse(isConnectionFailure(new UncheckedIOException(new ConnectException())));
+        assertFalse(isConnectionFailure(new IllegalStateException(new SocketTimeoutException())));
+    }
+
+}
@@ -0,0 +1,41 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class LatencySamplesTest {
+
+    @Test
+    void noSamples() {
+        var samples = new LatencySamples(10);
+        assertEquals(0, samples.getCount());
+        assertEquals(-1, samples.getPercentile(95));
+    }
+
+    @Test
+    void nearestRankPercentile() {
+        var samples = new LatencySamples(100);
+        for (var i = 100; i >= 1; i--) {
+            samples.add(i);
+        }
+
+        assertEquals(1, samples.getPercentile(0));
+        assertEquals(50, samples.getPercentile(50));
+        assertEquals(95, samples.getPercentile(95));
+        assertEquals(100, samples.getPercentile(100));
+    }
+
+    @Test
+    void oldSamplesAreEvicted() {
+        var samples = new LatencySamples(3);
+        samples.add(1_000);
+        samples.add(1);
+        samples.add(2);
+        samples.add(3);
+
+        assertEquals(3, samples.getCount());
+        assertEquals(3, samples.getPercentile(100));
+    }
+
+}
@@ -0,0 +1,54 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class RetryBudgetTest {
+
+    @Test
+    void minRetriesAreAllowedWithoutRequests() {
+        var budget = new RetryBudget(0.1, 3);
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+    }
+
+    @Test
+    void retriesAreLimitedToRatioOfRequests() {
+        var budget = new RetryBudget(0.25, 1);
+        assertTrue(budget.tryAcquireRetry());
+
+        for (var i = 0; i < 3; i++) {
+            budget.onRequest();
+            assertFalse(budget.tryAcquireRetry());
+        }
+
+        budget.onRequest();
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+    }
+
+    @Test
+    void balanceIsCapped() {
+        var budget = new RetryBudget(0.5, 2);
+        for (var i = 0; i < 100; i++) {
+            budget.onRequest();
+        }
+
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+    }
+
+    @Test
+    void negativeRatioDisablesBudget() {
+        var budget = new RetryBudget(-1, 1);
+        for (var i = 0; i < 100; i++) {
+            assertTrue(budget.tryAcquireRetry());
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package name.remal.gradle_plugins.load_content.internal;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+    final AtomicLong nanoTime = new AtomicLong();
+
+    @Test
+    void burstIsServedImmediately() {
+        var bucket = new TokenBucket(10, 3, nanoTime::get);
+
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+        assertEquals(MILLISECONDS.toNanos(100), bucket.reserve());
+        assertEquals(MILLISECONDS.toNanos(200), bucket.reserve());
+    }
+
+    @Test
+    void tokensAreRefilledUpToBurst() {
+        var bucket = new TokenBucket(10, 2, nanoTime::get);
+
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+
+        nanoTime.addAndGet(MILLISECONDS.toNanos(100));
+        assertEquals(0, bucket.reserve());
+        assertEquals(MILLISECONDS.toNanos(100), bucket.reserve());
+
+        nanoTime.addAndGet(MILLISECONDS.toNanos(10_000));
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+        assertEquals(MILLISECONDS.toNanos(100), bucket.reserve());
+    }
+
+    @Test
+    void tryReserveDoesNotTakeTokenIfWaitIsTooLong() {
+        var bucket = new TokenBucket(10, 1, nanoTime::get);
+
+        assertEquals(0, bucket.tryReserve(0));
+        assertEquals(-1, bucket.tryReserve(MILLISECONDS.toNanos(50)));
+        assertEquals(MILLISECONDS.toNanos(100), bucket.tryReserve(MILLISECONDS.toNanos(100)));
+        assertEquals(MILLISECONDS.toNanos(200), bucket.reserve());
+    }
+
+}